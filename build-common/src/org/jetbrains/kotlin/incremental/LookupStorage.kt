@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.incremental
 import com.intellij.util.containers.MultiMap
 import com.intellij.util.containers.StringInterner
 import org.jetbrains.annotations.TestOnly
+import org.jetbrains.kotlin.config.IncrementalCompilation
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.incremental.components.Position
 import org.jetbrains.kotlin.incremental.components.ScopeKind
@@ -40,6 +41,7 @@ open class LookupStorage(targetDataDir: File) : BasicMapsOwner(targetDataDir) {
     private val idToFile = registerMap(IdToFileMap("id-to-file".storageFile))
     private val fileToId = registerMap(FileToIdMap("file-to-id".storageFile))
     private val lookupMap = registerMap(LookupMap("lookups".storageFile))
+    private val lookupIndex: LookupIndex? = if (IncrementalCompilation.isInMemoryLookupIndexEnabled()) LookupIndex() else null
 
     @Volatile
     private var size: Int = 0
@@ -63,6 +65,16 @@ open class LookupStorage(targetDataDir: File) : BasicMapsOwner(targetDataDir) {
     @Synchronized
     fun get(lookupSymbol: LookupSymbol): Collection<String> {
         val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
+
+        val index = getLoadedIndex()
+        if (index != null) {
+            val fileIds = index[key] ?: return emptySet()
+            return fileIds.mapNotNull {
+                // null means it's outdated
+                idToFile[it]?.path
+            }
+        }
+
         val fileIds = lookupMap[key] ?: return emptySet()
 
         return fileIds.mapNotNull {
@@ -75,6 +87,20 @@ open class LookupStorage(targetDataDir: File) : BasicMapsOwner(targetDataDir) {
     fun addAll(lookups: Set<Map.Entry<LookupSymbol, Collection<String>>>, allPaths: Set<String>) {
         val pathToId = allPaths.keysToMap { addFileIfNeeded(File(it)) }
 
+        val index = getLoadedIndex()
+        if (index != null) {
+            for ((lookupSymbol, paths) in lookups) {
+                val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
+                val fileIds = IntArray(paths.size)
+                var i = 0
+                for (path in paths) {
+                    fileIds[i++] = pathToId[path]!!
+                }
+                index.add(key, fileIds)
+            }
+            return
+        }
+
         for ((lookupSymbol, paths) in lookups) {
             val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
             val fileIds = paths.mapTo(HashSet<Int>()) { pathToId[it]!! }
@@ -101,6 +127,7 @@ open class LookupStorage(targetDataDir: File) : BasicMapsOwner(targetDataDir) {
 
         size = 0
         deletedCount = 0
+        lookupIndex?.clear()
 
         super.clean()
     }
@@ -108,6 +135,7 @@ open class LookupStorage(targetDataDir: File) : BasicMapsOwner(targetDataDir) {
     @Synchronized
     override fun flush(memoryCachesOnly: Boolean) {
         try {
+            lookupIndex?.flushTo(lookupMap)
             removeGarbageIfNeeded()
 
             if (size > 0) {
@@ -124,6 +152,14 @@ open class LookupStorage(targetDataDir: File) : BasicMapsOwner(targetDataDir) {
         }
     }
 
+    private fun getLoadedIndex(): LookupIndex? {
+        val index = lookupIndex ?: return null
+        if (!index.isLoaded) {
+            index.load(lookupMap)
+        }
+        return index
+    }
+
     private fun addFileIfNeeded(file: File): Int {
         val existing = fileToId[file]
         if (existing != null) return existing
@@ -141,6 +177,10 @@ open class LookupStorage(targetDataDir: File) : BasicMapsOwner(targetDataDir) {
     }
 
     private fun doRemoveGarbage() {
+        // Garbage collection renumbers file ids, so the index is reloaded from the updated map on next access
+        lookupIndex?.flushTo(lookupMap)
+        lookupIndex?.clear()
+
         for (hash in lookupMap.keys) {
             lookupMap[hash] = lookupMap[hash]!!.filter { it in idToFile }.toSet()
         }
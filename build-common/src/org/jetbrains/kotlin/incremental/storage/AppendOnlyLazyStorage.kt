@@ -0,0 +1,313 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.IOUtil
+import com.intellij.util.io.KeyDescriptor
+import gnu.trove.THashMap
+import gnu.trove.TObjectHashingStrategy
+import java.io.*
+
+/**
+ * Storage that keeps all entries in memory and persists them as a single append-only log of operations.
+ *
+ * The log is read with one sequential read when the storage is accessed for the first time,
+ * writes only append records to the end of the log, and the log is compacted on [flush]/[close]
+ * when most of it is occupied by overwritten or removed records.
+ *
+ * Like [PersistentHashMapLazyStorage], the log file is created only on write.
+ */
+class AppendOnlyLazyStorage<K, V>(
+        storageFile: File,
+        private val keyDescriptor: KeyDescriptor<K>,
+        private val valueExternalizer: DataExternalizer<V>
+) : LazyStorage<K, V> {
+    private val logFile = File(storageFile.parentFile, storageFile.nameWithoutExtension + "." + LOG_EXTENSION)
+
+    private var entries: THashMap<K, Entry>? = null
+    private var output: DataOutputStream? = null
+    private var logSize = 0L
+    private var liveSize = 0L
+
+    private class Entry(val keyBytes: ByteArray, var valueBytes: ByteArray)
+
+    val exists: Boolean
+        get() = logFile.exists()
+
+    override val keys: Collection<K>
+        @Synchronized get() = getEntries().keys.toList()
+
+    @Synchronized
+    override operator fun contains(key: K): Boolean =
+            getEntries().containsKey(key)
+
+    @Synchronized
+    override operator fun get(key: K): V? {
+        val entry = getEntries()[key] ?: return null
+        return valueExternalizer.read(DataInputStream(ByteArrayInputStream(entry.valueBytes)))
+    }
+
+    @Synchronized
+    override operator fun set(key: K, value: V) {
+        val valueBytes = toBytes { valueExternalizer.save(it, value) }
+        val entries = getEntries()
+        val entry = entries[key]
+
+        if (entry != null) {
+            liveSize -= entry.valueBytes.size
+            entry.valueBytes = valueBytes
+            liveSize += valueBytes.size
+            writeRecord(PUT, entry.keyBytes, valueBytes)
+        }
+        else {
+            val newEntry = Entry(toBytes { keyDescriptor.save(it, key) }, valueBytes)
+            entries[key] = newEntry
+            liveSize += recordSize(newEntry.keyBytes, newEntry.valueBytes)
+            writeRecord(PUT, newEntry.keyBytes, valueBytes)
+        }
+    }
+
+    @Synchronized
+    override fun remove(key: K) {
+        if (!exists) return
+
+        val entry = getEntries().remove(key) ?: return
+        liveSize -= recordSize(entry.keyBytes, entry.valueBytes)
+        writeRecord(REMOVE, entry.keyBytes, null)
+    }
+
+    override fun append(key: K, value: String) {
+        append(key, toBytes { IOUtil.writeUTF(it, value) })
+    }
+
+    override fun append(key: K, value: Int) {
+        append(key, toBytes { it.writeInt(value) })
+    }
+
+    @Synchronized
+    override fun clean() {
+        try {
+            output?.close()
+        }
+        catch (ignored: Throwable) {
+        }
+
+        output = null
+        entries = null
+        logSize = 0
+        liveSize = 0
+        FileUtil.delete(logFile)
+        FileUtil.delete(compactedLogFile())
+    }
+
+    @Synchronized
+    override fun flush(memoryCachesOnly: Boolean) {
+        // All data is kept in memory, so there are no memory caches to drop
+        if (memoryCachesOnly) return
+
+        if (shouldCompact()) {
+            compact()
+        }
+        else {
+            output?.flush()
+        }
+    }
+
+    @Synchronized
+    override fun close() {
+        if (shouldCompact()) {
+            compact()
+        }
+
+        output?.close()
+        output = null
+    }
+
+    @Synchronized
+    private fun append(key: K, appendedBytes: ByteArray) {
+        val entries = getEntries()
+        val entry = entries[key]
+
+        if (entry != null) {
+            entry.valueBytes += appendedBytes
+            liveSize += appendedBytes.size
+            writeRecord(APPEND, entry.keyBytes, appendedBytes)
+        }
+        else {
+            val newEntry = Entry(toBytes { keyDescriptor.save(it, key) }, appendedBytes)
+            entries[key] = newEntry
+            liveSize += recordSize(newEntry.keyBytes, appendedBytes)
+            writeRecord(PUT, newEntry.keyBytes, appendedBytes)
+        }
+    }
+
+    private fun getEntries(): THashMap<K, Entry> {
+        entries?.let { return it }
+
+        val newEntries = THashMap<K, Entry>(KeyDescriptorHashingStrategy(keyDescriptor))
+        entries = newEntries
+        if (logFile.exists()) {
+            load(newEntries)
+        }
+        return newEntries
+    }
+
+    private fun load(entries: THashMap<K, Entry>) {
+        val bytes = logFile.readBytes()
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        var validSize = 0L
+
+        try {
+            if (bytes.size < HEADER_SIZE || input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw IOException("Unknown format of $logFile")
+            }
+            validSize = HEADER_SIZE.toLong()
+
+            while (input.available() > 0) {
+                val operation = input.readByte()
+                val keyBytes = input.readByteArray()
+                val key = keyDescriptor.read(DataInputStream(ByteArrayInputStream(keyBytes)))
+
+                when (operation) {
+                    PUT -> entries[key] = Entry(keyBytes, input.readByteArray())
+                    APPEND -> {
+                        val appendedBytes = input.readByteArray()
+                        val entry = entries[key]
+                        if (entry != null) {
+                            entry.valueBytes += appendedBytes
+                        }
+                        else {
+                            entries[key] = Entry(keyBytes, appendedBytes)
+                        }
+                    }
+                    REMOVE -> entries.remove(key)
+                    else -> throw IOException("Unknown operation $operation in $logFile")
+                }
+
+                validSize = bytes.size.toLong() - input.available()
+            }
+        }
+        catch (e: IOException) {
+            // The last record could have been written partially if the previous build was interrupted,
+            // everything before it is consistent
+            if (validSize == 0L) {
+                entries.clear()
+                FileUtil.delete(logFile)
+                return
+            }
+            RandomAccessFile(logFile, "rw").use { it.setLength(validSize) }
+        }
+
+        logSize = validSize
+        liveSize = HEADER_SIZE.toLong() + entries.values.sumByLong { recordSize(it.keyBytes, it.valueBytes) }
+    }
+
+    private fun writeRecord(operation: Byte, keyBytes: ByteArray, valueBytes: ByteArray?) {
+        val out = getOutput()
+        out.writeByte(operation.toInt())
+        out.writeByteArray(keyBytes)
+        if (valueBytes != null) {
+            out.writeByteArray(valueBytes)
+        }
+        logSize += 1 + 4 + keyBytes.size + if (valueBytes != null) 4 + valueBytes.size else 0
+    }
+
+    private fun getOutput(): DataOutputStream {
+        output?.let { return it }
+
+        val isNew = !logFile.exists()
+        if (isNew) {
+            FileUtil.createParentDirs(logFile)
+        }
+
+        val newOutput = DataOutputStream(BufferedOutputStream(FileOutputStream(logFile, true)))
+        if (isNew) {
+            newOutput.writeInt(MAGIC)
+            newOutput.writeInt(VERSION)
+            logSize = HEADER_SIZE.toLong()
+            liveSize += HEADER_SIZE
+        }
+        output = newOutput
+        return newOutput
+    }
+
+    private fun shouldCompact(): Boolean {
+        val wasted = logSize - liveSize
+        return output != null && wasted > MIN_WASTED_BYTES_TO_COMPACT && wasted > liveSize
+    }
+
+    private fun compact() {
+        output?.close()
+        output = null
+
+        val entries = getEntries()
+        val compacted = compactedLogFile()
+        DataOutputStream(BufferedOutputStream(FileOutputStream(compacted))).use { out ->
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+            for (entry in entries.values) {
+                out.writeByte(PUT.toInt())
+                out.writeByteArray(entry.keyBytes)
+                out.writeByteArray(entry.valueBytes)
+            }
+        }
+
+        FileUtil.rename(compacted, logFile)
+        logSize = logFile.length()
+        liveSize = logSize
+    }
+
+    private fun compactedLogFile() = File(logFile.parentFile, logFile.name + ".tmp")
+
+    private class KeyDescriptorHashingStrategy<K>(private val keyDescriptor: KeyDescriptor<K>) : TObjectHashingStrategy<K> {
+        override fun computeHashCode(key: K): Int = keyDescriptor.getHashCode(key)
+
+        override fun equals(key1: K, key2: K): Boolean = keyDescriptor.isEqual(key1, key2)
+    }
+
+    companion object {
+        const val LOG_EXTENSION = "alog"
+
+        private const val MAGIC = 0x4B494341 // "KICA"
+        private const val VERSION = 1
+        private const val HEADER_SIZE = 8
+        private const val MIN_WASTED_BYTES_TO_COMPACT = 64 * 1024
+
+        private const val PUT: Byte = 0
+        private const val APPEND: Byte = 1
+        private const val REMOVE: Byte = 2
+
+        private fun recordSize(keyBytes: ByteArray, valueBytes: ByteArray): Long =
+                1L + 4 + keyBytes.size + 4 + valueBytes.size
+
+        private inline fun toBytes(write: (DataOutput) -> Unit): ByteArray {
+            val bytes = ByteArrayOutputStream()
+            DataOutputStream(bytes).use(write)
+            return bytes.toByteArray()
+        }
+
+        private fun DataInput.readByteArray(): ByteArray {
+            val result = ByteArray(readInt())
+            readFully(result)
+            return result
+        }
+
+        private fun DataOutput.writeByteArray(bytes: ByteArray) {
+            writeInt(bytes.size)
+            write(bytes)
+        }
+
+        private inline fun <T> Iterable<T>.sumByLong(selector: (T) -> Long): Long {
+            var sum = 0L
+            for (element in this) {
+                sum += selector(element)
+            }
+            return sum
+        }
+    }
+}
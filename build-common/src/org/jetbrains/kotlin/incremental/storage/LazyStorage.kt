@@ -1,122 +1,73 @@
 /*
- * Copyright 2010-2015 JetBrains s.r.o.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
  */
 
 package org.jetbrains.kotlin.incremental.storage
 
 import com.intellij.util.io.DataExternalizer
-import com.intellij.util.io.IOUtil
 import com.intellij.util.io.KeyDescriptor
-import com.intellij.util.io.PersistentHashMap
-import java.io.DataOutput
+import org.jetbrains.kotlin.config.IncrementalCompilation
 import java.io.File
-import java.io.IOException
-
 
 /**
- * It's lazy in a sense that PersistentHashMap is created only on write
+ * Key-value storage backing a [BasicMap].
+ * Implementations are expected to create files on disk only on the first write.
  */
-class LazyStorage<K, V>(
-        private val storageFile: File,
-        private val keyDescriptor: KeyDescriptor<K>,
-        private val valueExternalizer: DataExternalizer<V>
-) {
-    @Volatile
-    private var storage: PersistentHashMap<K, V>? = null
-
-    @Synchronized
-    private fun getStorageIfExists(): PersistentHashMap<K, V>? {
-        if (storage != null) return storage
-
-        if (storageFile.exists()) {
-            storage = createMap()
-            return storage
-        }
-
-        return null
-    }
-
-    @Synchronized
-    private fun getStorageOrCreateNew(): PersistentHashMap<K, V> {
-        if (storage == null) {
-            storage = createMap()
-        }
-
-        return storage!!
-    }
-
+interface LazyStorage<K, V> {
     val keys: Collection<K>
-        get() = getStorageIfExists()?.allKeysWithExistingMapping ?: listOf()
 
-    operator fun contains(key: K): Boolean =
-            getStorageIfExists()?.containsMapping(key) ?: false
+    operator fun contains(key: K): Boolean
 
-    operator fun get(key: K): V? =
-            getStorageIfExists()?.get(key)
+    operator fun get(key: K): V?
 
-    operator fun set(key: K, value: V) {
-        getStorageOrCreateNew().put(key, value)
-    }
+    operator fun set(key: K, value: V)
 
-    fun remove(key: K) {
-        getStorageIfExists()?.remove(key)
-    }
+    fun remove(key: K)
 
-    fun append(key: K, value: String) {
-        append(key) { out -> IOUtil.writeUTF(out, value) }
-    }
+    fun append(key: K, value: String)
 
-    fun append(key: K, value: Int) {
-        append(key) { out -> out.writeInt(value) }
-    }
+    fun append(key: K, value: Int)
 
-    @Synchronized
-    fun clean() {
-        try {
-            storage?.close()
-        }
-        catch (ignored: Throwable) {
-        }
+    fun clean()
 
-        PersistentHashMap.deleteFilesStartingWith(storageFile)
-        storage = null
-    }
+    fun flush(memoryCachesOnly: Boolean)
 
-    @Synchronized
-    fun flush(memoryCachesOnly: Boolean) {
-        val existingStorage = storage ?: return
+    fun close()
+}
 
-        if (memoryCachesOnly) {
-            if (existingStorage.isDirty) {
-                existingStorage.dropMemoryCaches()
-            }
-        }
-        else {
-            existingStorage.force()
+/**
+ * Creates a storage in the format selected by [IncrementalCompilation.isAppendOnlyCachesEnabled].
+ * If the data for [storageFile] exists only in the other format, it is migrated on creation,
+ * so switching the format between builds does not lose incremental caches.
+ */
+fun <K, V> createLazyStorage(
+        storageFile: File,
+        keyDescriptor: KeyDescriptor<K>,
+        valueExternalizer: DataExternalizer<V>
+): LazyStorage<K, V> {
+    val appendOnlyStorage = AppendOnlyLazyStorage(storageFile, keyDescriptor, valueExternalizer)
+    val persistentHashMapStorage = PersistentHashMapLazyStorage(storageFile, keyDescriptor, valueExternalizer)
+
+    return if (IncrementalCompilation.isAppendOnlyCachesEnabled()) {
+        if (!appendOnlyStorage.exists && persistentHashMapStorage.exists) {
+            persistentHashMapStorage.copyTo(appendOnlyStorage)
         }
+        appendOnlyStorage
     }
-
-    @Synchronized
-    fun close() {
-        storage?.close()
+    else {
+        if (!persistentHashMapStorage.exists && appendOnlyStorage.exists) {
+            appendOnlyStorage.copyTo(persistentHashMapStorage)
+        }
+        persistentHashMapStorage
     }
+}
 
-    private fun createMap(): PersistentHashMap<K, V> =
-            PersistentHashMap(storageFile, keyDescriptor, valueExternalizer)
-
-    private fun append(key: K, append: (DataOutput)->Unit) {
-        getStorageOrCreateNew().appendData(key, append)
+private fun <K, V> LazyStorage<K, V>.copyTo(target: LazyStorage<K, V>) {
+    for (key in keys) {
+        val value = get(key) ?: continue
+        target[key] = value
     }
+    target.flush(memoryCachesOnly = false)
+    clean()
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import gnu.trove.TLongHashSet
+import gnu.trove.TLongObjectHashMap
+import java.util.*
+
+/**
+ * In-memory copy of [LookupMap] which stores file ids of every lookup as a sorted primitive array.
+ *
+ * The whole map is read at once on [load], updates are accumulated in memory
+ * and written back only for changed keys on [flushTo].
+ * Entries are split into shards by key hash to keep rehashing of a single table cheap on large modules.
+ */
+internal class LookupIndex {
+    private val shards = Array(SHARDS_COUNT) { TLongObjectHashMap<IntArray>() }
+    private val dirtyKeys = TLongHashSet()
+
+    var isLoaded = false
+        private set
+
+    fun load(lookupMap: LookupMap) {
+        clear()
+
+        for (key in lookupMap.keys) {
+            val fileIds = lookupMap[key] ?: continue
+            shardFor(key.asLong()).put(key.asLong(), fileIds.toSortedUniqueArray())
+        }
+
+        isLoaded = true
+    }
+
+    operator fun get(key: LookupSymbolKey): IntArray? {
+        val packed = key.asLong()
+        return shardFor(packed)[packed]
+    }
+
+    fun add(key: LookupSymbolKey, fileIds: IntArray) {
+        val packed = key.asLong()
+        val shard = shardFor(packed)
+        val existing = shard[packed]
+        val sortedIds = fileIds.toSortedUniqueArray()
+        val merged = if (existing == null) sortedIds else mergeSorted(existing, sortedIds)
+
+        if (merged !== existing) {
+            shard.put(packed, merged)
+            dirtyKeys.add(packed)
+        }
+    }
+
+    fun flushTo(lookupMap: LookupMap) {
+        dirtyKeys.forEach { packed ->
+            val fileIds = shardFor(packed)[packed]
+            val key = LookupSymbolKey((packed ushr 32).toInt(), packed.toInt())
+
+            if (fileIds == null || fileIds.isEmpty()) {
+                lookupMap.remove(key)
+            }
+            else {
+                lookupMap[key] = fileIds.toSet()
+            }
+
+            true
+        }
+        dirtyKeys.clear()
+    }
+
+    fun clear() {
+        shards.forEach { it.clear() }
+        dirtyKeys.clear()
+        isLoaded = false
+    }
+
+    private fun shardFor(packed: Long): TLongObjectHashMap<IntArray> {
+        val hash = (packed xor (packed ushr 32)).toInt()
+        return shards[(hash xor (hash ushr 16)) and (SHARDS_COUNT - 1)]
+    }
+
+    companion object {
+        private const val SHARDS_COUNT = 16
+
+        private fun LookupSymbolKey.asLong(): Long =
+                (nameHash.toLong() shl 32) or (scopeHash.toLong() and 0xFFFFFFFFL)
+
+        private fun Collection<Int>.toSortedUniqueArray(): IntArray =
+                toIntArray().toSortedUniqueArray()
+
+        private fun IntArray.toSortedUniqueArray(): IntArray {
+            if (size <= 1) return this
+
+            val sorted = copyOf()
+            Arrays.sort(sorted)
+
+            var unique = 1
+            for (i in 1 until sorted.size) {
+                if (sorted[i] != sorted[unique - 1]) {
+                    sorted[unique++] = sorted[i]
+                }
+            }
+            return if (unique == sorted.size) sorted else sorted.copyOf(unique)
+        }
+
+        /**
+         * Returns [existing] itself if [added] does not contain new ids.
+         */
+        private fun mergeSorted(existing: IntArray, added: IntArray): IntArray {
+            val result = IntArray(existing.size + added.size)
+            var i = 0
+            var j = 0
+            var size = 0
+
+            while (i < existing.size || j < added.size) {
+                val next = when {
+                    j == added.size -> existing[i++]
+                    i == existing.size -> added[j++]
+                    existing[i] < added[j] -> existing[i++]
+                    existing[i] > added[j] -> added[j++]
+                    else -> {
+                        j++
+                        existing[i++]
+                    }
+                }
+                result[size++] = next
+            }
+
+            return if (size == existing.size) existing else result.copyOf(size)
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.EnumeratorStringDescriptor
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.junit.Test
+import java.io.File
+
+class AppendOnlyLazyStorageTest : TestWithWorkingDir() {
+    private val storageFile: File
+        get() = File(workingDir, "test.tab")
+
+    private fun createStorage() =
+            AppendOnlyLazyStorage(storageFile, EnumeratorStringDescriptor.INSTANCE, StringCollectionExternalizer)
+
+    @Test
+    fun testReopen() {
+        val storage = createStorage()
+        storage["a"] = listOf("1", "2")
+        storage.append("a", "3")
+        storage.append("b", "4")
+        storage["c"] = listOf("5")
+        storage.remove("c")
+        storage.close()
+
+        val reopened = createStorage()
+        assertEquals(setOf("a", "b"), reopened.keys.toSet())
+        assertEquals(listOf("1", "2", "3"), reopened["a"]?.toList())
+        assertEquals(listOf("4"), reopened["b"]?.toList())
+        assertFalse("c" in reopened)
+    }
+
+    @Test
+    fun testCompaction() {
+        val storage = createStorage()
+        for (i in 0..10000) {
+            storage["key"] = listOf(i.toString())
+        }
+        storage.flush(memoryCachesOnly = false)
+        val logFile = File(workingDir, "test.${AppendOnlyLazyStorage.LOG_EXTENSION}")
+        assertTrue(logFile.length() < 1024)
+        storage.close()
+
+        assertEquals(listOf("10000"), createStorage()["key"]?.toList())
+    }
+
+    @Test
+    fun testTruncatedRecordIsIgnored() {
+        val storage = createStorage()
+        storage["a"] = listOf("1")
+        storage["b"] = listOf("2")
+        storage.close()
+
+        val logFile = File(workingDir, "test.${AppendOnlyLazyStorage.LOG_EXTENSION}")
+        logFile.writeBytes(logFile.readBytes().copyOf(logFile.length().toInt() - 1))
+
+        val reopened = createStorage()
+        assertEquals(listOf("1"), reopened["a"]?.toList())
+        assertFalse("b" in reopened)
+    }
+
+    @Test
+    fun testNoFileWithoutWrites() {
+        val storage = createStorage()
+        assertNull(storage["a"])
+        storage.remove("a")
+        storage.close()
+
+        assertFalse(storage.exists)
+    }
+}
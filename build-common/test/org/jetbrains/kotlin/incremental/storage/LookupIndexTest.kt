@@ -0,0 +1,37 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.junit.Test
+import java.io.File
+
+class LookupIndexTest : TestWithWorkingDir() {
+    @Test
+    fun testAddAndFlush() {
+        val lookupMap = LookupMap(File(workingDir, "lookups.tab"))
+        val foo = LookupSymbolKey("foo", "a.b")
+        val bar = LookupSymbolKey("bar", "")
+        lookupMap[foo] = setOf(3, 1)
+
+        val index = LookupIndex()
+        index.load(lookupMap)
+        index.add(foo, intArrayOf(2, 3, 2))
+        index.add(bar, intArrayOf(-1, 5))
+
+        assertEquals(listOf(1, 2, 3), index[foo]?.toList())
+        assertEquals(listOf(-1, 5), index[bar]?.toList())
+
+        index.flushTo(lookupMap)
+        assertEquals(setOf(1, 2, 3), lookupMap[foo]?.toSet())
+        assertEquals(setOf(-1, 5), lookupMap[bar]?.toSet())
+
+        val reloaded = LookupIndex()
+        reloaded.load(lookupMap)
+        assertEquals(listOf(-1, 5), reloaded[bar]?.toList())
+        lookupMap.close()
+    }
+}
@@ -103,6 +103,7 @@ public class ClassFileFactory implements OutputFileCollection {
     public void done() {
         if (!isDone) {
             isDone = true;
+            state.postProcessPendingClasses();
             writeModuleMappings();
         }
     }
@@ -62,12 +62,14 @@ object DefaultCodegenFactory : CodegenFactory {
         for (multifileClassFqName in filesInMultifileClasses.keySet() + obsoleteMultifileClasses) {
             CodegenFactory.doCheckCancelled(state)
             generateMultifileClass(state, multifileClassFqName, filesInMultifileClasses.get(multifileClassFqName), errorHandler)
+            state.postProcessPendingClasses()
         }
 
         val packagesWithObsoleteParts = HashSet(state.packagesWithObsoleteParts)
         for (packageFqName in packagesWithObsoleteParts + filesInPackages.keySet()) {
             CodegenFactory.doCheckCancelled(state)
             generatePackage(state, packageFqName, filesInPackages.get(packageFqName), errorHandler)
+            state.postProcessPendingClasses()
         }
     }
 
@@ -65,6 +65,17 @@ abstract class TransformationMethodVisitor(
 
         super.visitEnd()
 
+        if (!tryDeferTransformation()) {
+            transformAndEmit()
+        }
+    }
+
+    /**
+     * Returns true if [transformAndEmit] will be called later by the owner of this visitor instead of being called in [visitEnd].
+     */
+    protected open fun tryDeferTransformation(): Boolean = false
+
+    fun transformAndEmit() {
         try {
             if (shouldBeTransformed(methodNode)) {
                 performTransformations(methodNode)
@@ -22,9 +22,21 @@ import org.jetbrains.org.objectweb.asm.commons.Method
 
 data class MethodId(val ownerInternalName: String, val method: Method)
 
-class InlineCache {
+/**
+ * Caches bytecode of inline functions for one code generation. Bytecode read from library jars is also put to [shared],
+ * if it is given, to be reused by subsequent compilations.
+ */
+class InlineCache(val shared: SharedInlineCache? = null) {
     val classBytes: SLRUMap<ClassId, ByteArray> = SLRUMap(30, 20)
     val methodNodeById: SLRUMap<MethodId, SMAPAndMethodNode> = SLRUMap(60, 50)
+
+    private val sharedClassFileKeys = HashMap<ClassId, SharedInlineCache.ClassFileKey?>()
+
+    /**
+     * Key of the class file [classId] in [shared], computed once per code generation; null if the class file is not shared.
+     */
+    fun getSharedClassFileKey(classId: ClassId, computeKey: () -> SharedInlineCache.ClassFileKey?): SharedInlineCache.ClassFileKey? =
+        if (classId in sharedClassFileKeys) sharedClassFileKeys[classId] else computeKey().also { sharedClassFileKeys[classId] = it }
 }
 
 inline fun <K, V> SLRUMap<K, V>.getOrPut(key: K, defaultValue: () -> V): V {
@@ -17,6 +17,7 @@ import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.codegen.state.KotlinTypeMapper
 import org.jetbrains.kotlin.config.isReleaseCoroutines
 import org.jetbrains.kotlin.descriptors.*
+import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.psi.KtCallableReferenceExpression
 import org.jetbrains.kotlin.psi.KtExpression
@@ -227,6 +228,7 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
     protected fun inlineCall(nodeAndSmap: SMAPAndMethodNode, callDefault: Boolean): InlineResult {
         assert(delayedHiddenWriting == null) { "'putHiddenParamsIntoLocals' should be called after 'processAndPutHiddenParameters(true)'" }
         defaultSourceMapper.callSiteMarker = CallSiteMarker(codegen.lastLineNumber)
+        state.metrics?.addCounter(INLINE_CALLS_COUNTER)
         val node = nodeAndSmap.node
         if (callDefault) {
             val defaultLambdas = expandMaskConditionsAndUpdateVariableNodes(
@@ -442,6 +444,7 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
 
 
     companion object {
+        const val INLINE_CALLS_COUNTER = "Inline calls"
 
         private fun getMemberScope(functionOrAccessor: FunctionDescriptor): MemberScope? {
             val callableMemberDescriptor = JvmCodegenUtil.getDirectMember(functionOrAccessor)
@@ -505,9 +508,10 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
             return (directMember as? ImportedFromObjectCallableDescriptor<*>)?.callableFromObject ?: directMember
         }
 
-        private fun cloneMethodNode(methodNode: MethodNode): MethodNode {
+        // Cloning resets the labels of the node, and nodes from SharedInlineCache are cloned by concurrent compilations
+        private fun cloneMethodNode(methodNode: MethodNode): MethodNode = synchronized(methodNode) {
             methodNode.instructions.resetLabels()
-            return MethodNode(
+            MethodNode(
                 Opcodes.API_VERSION, methodNode.access, methodNode.name, methodNode.desc, methodNode.signature,
                 ArrayUtil.toStringArray(methodNode.exceptions)
             ).also(methodNode::accept)
@@ -534,14 +538,42 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
                 KotlinTypeMapper.getContainingClassesForDeserializedCallable(callableDescriptor as DeserializedCallableMemberDescriptor)
 
             val containerId = containingClasses.implClassId
+            val containerType = AsmUtil.asmTypeByClassId(containerId)
 
-            val bytes = state.inlineCache.classBytes.getOrPut(containerId) {
-                findVirtualFile(state, containerId)?.contentsToByteArray()
+            val sharedCache = state.inlineCache.shared
+            if (sharedCache != null) {
+                val sharedKey = state.inlineCache.getSharedClassFileKey(containerId) {
+                    findVirtualFile(state, containerId)?.let(sharedCache::keyFor)
+                }
+                if (sharedKey != null) {
+                    return sharedCache.getOrPutMethodNode(sharedKey, MethodId(containerType.internalName, asmMethod)) {
+                        val bytes = getClassBytes(state, containerId, sharedKey)
+                        createMethodNodeFromBytes(bytes, callableDescriptor, containerType, asmMethod)
+                    }
+                }
+            }
+
+            val bytes = getClassBytes(state, containerId, null)
+            return createMethodNodeFromBytes(bytes, callableDescriptor, containerType, asmMethod)
+        }
+
+        private fun getClassBytes(state: GenerationState, containerId: ClassId, sharedKey: SharedInlineCache.ClassFileKey?): ByteArray =
+            state.inlineCache.classBytes.getOrPut(containerId) {
+                val file = findVirtualFile(state, containerId)
                     ?: throw IllegalStateException("Couldn't find declaration file for " + containerId)
+                if (sharedKey != null)
+                    state.inlineCache.shared!!.getOrPutClassBytes(sharedKey) { file.contentsToByteArray() }
+                else
+                    file.contentsToByteArray()
             }
 
-            val methodNode =
-                getMethodNode(bytes, asmMethod.name, asmMethod.descriptor, AsmUtil.asmTypeByClassId(containerId)) ?: return null
+        private fun createMethodNodeFromBytes(
+            bytes: ByteArray,
+            callableDescriptor: CallableMemberDescriptor,
+            containerType: Type,
+            asmMethod: Method
+        ): SMAPAndMethodNode? {
+            val methodNode = getMethodNode(bytes, asmMethod.name, asmMethod.descriptor, containerType) ?: return null
 
             // KLUDGE: Inline suspend function built with compiler version less than 1.1.4/1.2-M1 did not contain proper
             // before/after suspension point marks, so we detect those functions here and insert the corresponding marks
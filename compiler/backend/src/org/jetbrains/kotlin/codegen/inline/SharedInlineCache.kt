@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.inline
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFile
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import java.io.File
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Bytecode of inline functions from library jars, shared by all compilations in a process (e.g. in the compile daemon).
+ *
+ * Entries are keyed by the path, size and modification time of the jar, and by the class file inside the jar,
+ * so a changed jar is read again. Cached method nodes are shared between compilations, so they are only read
+ * by [InlineCodegen], which copies each node before inlining it.
+ * The least recently used entries are evicted when the estimated size of the cache exceeds [maxCachedBytes].
+ */
+class SharedInlineCache(private val maxCachedBytes: Long = DEFAULT_MAX_CACHED_BYTES) {
+    data class ClassFileKey(val jarPath: String, val jarLength: Long, val jarLastModified: Long, val entryPath: String)
+
+    private data class MethodKey(val classFile: ClassFileKey, val methodId: MethodId)
+
+    private class Entry(val value: Any, val estimatedBytes: Long)
+
+    private val entries = LinkedHashMap<Any, Entry>(256, 0.75f, /* accessOrder = */ true)
+
+    private var cachedBytes = 0L
+
+    val hits = AtomicLong()
+    val misses = AtomicLong()
+    val evictions = AtomicLong()
+
+    /**
+     * Returns the key of [file] if it is a class file in a jar and can be shared between compilations, null otherwise.
+     */
+    fun keyFor(file: VirtualFile): ClassFileKey? {
+        if (file.fileSystem.protocol != StandardFileSystems.JAR_PROTOCOL) return null
+
+        val jarPath = file.path.substringBefore(StandardFileSystems.JAR_SEPARATOR)
+        val jarFile = File(jarPath)
+        return ClassFileKey(jarPath, jarFile.length(), jarFile.lastModified(), file.path.substringAfter(StandardFileSystems.JAR_SEPARATOR))
+    }
+
+    fun getOrPutClassBytes(key: ClassFileKey, compute: () -> ByteArray): ByteArray =
+        getOrPut(key, compute) { bytes -> bytes.size.toLong() }!!
+
+    /**
+     * Returns the cached method node, or the node returned by [compute] if it is not cached.
+     * Nothing is cached if [compute] returns null. The node must not be modified, and it must be copied under its own lock.
+     */
+    fun getOrPutMethodNode(key: ClassFileKey, methodId: MethodId, compute: () -> SMAPAndMethodNode?): SMAPAndMethodNode? =
+        getOrPut(MethodKey(key, methodId), compute) { node -> estimateSize(node.node) }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        cachedBytes = 0
+    }
+
+    private inline fun <reified T : Any> getOrPut(key: Any, compute: () -> T?, estimateBytes: (T) -> Long): T? {
+        synchronized(this) {
+            (entries[key]?.value as? T)?.let {
+                hits.incrementAndGet()
+                return it
+            }
+        }
+
+        misses.incrementAndGet()
+        val value = compute() ?: return null
+
+        synchronized(this) {
+            // Another compilation could have put the same value meanwhile, in which case its value is kept to be shared
+            (entries[key]?.value as? T)?.let { return it }
+
+            val estimatedBytes = estimateBytes(value) + ESTIMATED_ENTRY_OVERHEAD
+            entries[key] = Entry(value, estimatedBytes)
+            cachedBytes += estimatedBytes
+            evictEldestEntries()
+        }
+        return value
+    }
+
+    // The most recently added entry is kept even if it alone exceeds the budget
+    private fun evictEldestEntries() {
+        val iterator = entries.values.iterator()
+        while (cachedBytes > maxCachedBytes && entries.size > 1) {
+            cachedBytes -= iterator.next().estimatedBytes
+            iterator.remove()
+            evictions.incrementAndGet()
+        }
+    }
+
+    private fun estimateSize(node: MethodNode): Long =
+        node.instructions.size().toLong() * ESTIMATED_INSTRUCTION_SIZE + node.localVariables.orEmpty().size * ESTIMATED_INSTRUCTION_SIZE
+
+    companion object {
+        private const val DEFAULT_MAX_CACHED_BYTES = 32L * 1024 * 1024
+        private const val ESTIMATED_ENTRY_OVERHEAD = 128L
+        private const val ESTIMATED_INSTRUCTION_SIZE = 48L
+
+        @JvmStatic
+        val shared = SharedInlineCache()
+    }
+}
@@ -27,10 +27,18 @@ import org.jetbrains.org.objectweb.asm.MethodVisitor;
 public class OptimizationClassBuilder extends DelegatingClassBuilder {
     private final ClassBuilder delegate;
     private final GenerationState generationState;
+    private final ParallelClassPostProcessor postProcessor;
+    private final DeferredClassPostProcessing deferredPostProcessing;
 
-    public OptimizationClassBuilder(@NotNull ClassBuilder delegate, @NotNull GenerationState generationState) {
+    public OptimizationClassBuilder(
+            @NotNull ClassBuilder delegate,
+            @NotNull GenerationState generationState,
+            @Nullable ParallelClassPostProcessor postProcessor
+    ) {
         this.delegate = delegate;
         this.generationState = generationState;
+        this.postProcessor = postProcessor;
+        this.deferredPostProcessing = postProcessor != null ? new DeferredClassPostProcessing(delegate) : null;
     }
 
     @NotNull
@@ -51,7 +59,24 @@ public class OptimizationClassBuilder extends DelegatingClassBuilder {
     ) {
         return new OptimizationMethodVisitor(
                 super.newMethod(origin, access, name, desc, signature, exceptions),
-                generationState, access, name, desc, signature, exceptions
+                generationState, access, name, desc, signature, exceptions, deferredPostProcessing
         );
     }
+
+    @Override
+    public void done() {
+        if (deferredPostProcessing != null) {
+            deferredPostProcessing.markClassDone();
+            postProcessor.addPendingClass(deferredPostProcessing);
+        }
+        else {
+            super.done();
+        }
+    }
+
+    public void ensurePostProcessed() {
+        if (deferredPostProcessing != null) {
+            deferredPostProcessing.process();
+        }
+    }
 }
@@ -17,6 +17,8 @@
 package org.jetbrains.kotlin.codegen.optimization;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.codegen.ClassBuilder;
 import org.jetbrains.kotlin.codegen.ClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.DelegatingClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.state.GenerationState;
@@ -24,15 +26,43 @@ import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 
 public class OptimizationClassBuilderFactory extends DelegatingClassBuilderFactory {
     private final GenerationState generationState;
+    private final ParallelClassPostProcessor postProcessor;
 
-    public OptimizationClassBuilderFactory(ClassBuilderFactory delegate, @NotNull GenerationState generationState) {
+    public OptimizationClassBuilderFactory(
+            ClassBuilderFactory delegate,
+            @NotNull GenerationState generationState,
+            @Nullable ParallelClassPostProcessor postProcessor
+    ) {
         super(delegate);
         this.generationState = generationState;
+        this.postProcessor = postProcessor;
     }
 
     @NotNull
     @Override
     public OptimizationClassBuilder newClassBuilder(@NotNull JvmDeclarationOrigin origin) {
-        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState);
+        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState, postProcessor);
+    }
+
+    @Nullable
+    @Override
+    public byte[] asBytes(@Nullable ClassBuilder builder) {
+        ((OptimizationClassBuilder) builder).ensurePostProcessed();
+        return super.asBytes(builder);
+    }
+
+    @Nullable
+    @Override
+    public String asText(@Nullable ClassBuilder builder) {
+        ((OptimizationClassBuilder) builder).ensurePostProcessed();
+        return super.asText(builder);
+    }
+
+    @Override
+    public void close() {
+        if (postProcessor != null) {
+            postProcessor.shutdown();
+        }
+        super.close();
     }
 }
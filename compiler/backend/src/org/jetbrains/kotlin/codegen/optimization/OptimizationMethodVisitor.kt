@@ -24,6 +24,7 @@ import org.jetbrains.kotlin.codegen.optimization.common.prepareForEmitting
 import org.jetbrains.kotlin.codegen.optimization.nullCheck.RedundantNullCheckMethodTransformer
 import org.jetbrains.kotlin.codegen.optimization.transformer.CompositeMethodTransformer
 import org.jetbrains.kotlin.codegen.state.GenerationState
+import org.jetbrains.kotlin.util.CompilerMetrics
 import org.jetbrains.org.objectweb.asm.MethodVisitor
 import org.jetbrains.org.objectweb.asm.tree.MethodNode
 
@@ -34,39 +35,65 @@ class OptimizationMethodVisitor(
     name: String,
     desc: String,
     signature: String?,
-    exceptions: Array<String>?
+    exceptions: Array<String>?,
+    private val deferredClass: DeferredClassPostProcessing? = null
 ) : TransformationMethodVisitor(delegate, access, name, desc, signature, exceptions) {
-    private val constructorCallNormalizationTransformer =
-        UninitializedStoresMethodTransformer(generationState.constructorCallNormalizationMode)
+    private val metrics = generationState.metrics
+
+    private val constructorCallNormalizationTransformer = CompositeMethodTransformer(
+        listOf(UninitializedStoresMethodTransformer(generationState.constructorCallNormalizationMode)),
+        metrics
+    )
 
     val normalizationMethodTransformer = CompositeMethodTransformer(
-        FixStackWithLabelNormalizationMethodTransformer(),
-        MethodVerifier("AFTER mandatory stack transformations")
+        listOf(
+            FixStackWithLabelNormalizationMethodTransformer(),
+            MethodVerifier("AFTER mandatory stack transformations")
+        ),
+        metrics
     )
 
     val optimizationTransformer = CompositeMethodTransformer(
-        CapturedVarsOptimizationMethodTransformer(),
-        RedundantNullCheckMethodTransformer(generationState),
-        RedundantCheckCastEliminationMethodTransformer(),
-        ConstantConditionEliminationMethodTransformer(),
-        RedundantBoxingMethodTransformer(generationState),
-        StackPeepholeOptimizationsTransformer(),
-        PopBackwardPropagationTransformer(),
-        DeadCodeEliminationMethodTransformer(),
-        RedundantGotoMethodTransformer(),
-        RedundantNopsCleanupMethodTransformer(),
-        MethodVerifier("AFTER optimizations")
+        listOf(
+            CapturedVarsOptimizationMethodTransformer(),
+            RedundantNullCheckMethodTransformer(generationState),
+            RedundantCheckCastEliminationMethodTransformer(),
+            ConstantConditionEliminationMethodTransformer(),
+            RedundantBoxingMethodTransformer(generationState),
+            StackPeepholeOptimizationsTransformer(),
+            PopBackwardPropagationTransformer(),
+            DeadCodeEliminationMethodTransformer(),
+            RedundantGotoMethodTransformer(),
+            RedundantNopsCleanupMethodTransformer(),
+            MethodVerifier("AFTER optimizations")
+        ),
+        metrics
     )
 
+    val largeMethodOptimizationTransformer = createLargeMethodOptimizationTransformer(metrics)
+
+    private val deadCodeEliminationTransformer = CompositeMethodTransformer(listOf(DeadCodeEliminationMethodTransformer()), metrics)
+
+    override fun tryDeferTransformation(): Boolean {
+        if (deferredClass == null) return false
+        deferredClass.addMethod(this)
+        return true
+    }
+
     override fun performTransformations(methodNode: MethodNode) {
         normalizationMethodTransformer.transform("fake", methodNode)
         constructorCallNormalizationTransformer.transform("fake", methodNode)
 
-        if (canBeOptimized(methodNode) && !generationState.disableOptimization) {
-            optimizationTransformer.transform("fake", methodNode)
+        if (!generationState.disableOptimization) {
+            if (canBeOptimized(methodNode)) {
+                optimizationTransformer.transform("fake", methodNode)
+            } else {
+                metrics?.addCounter(TOO_LARGE_METHODS_COUNTER)
+                largeMethodOptimizationTransformer.transform("fake", methodNode)
+            }
         }
 
-        DeadCodeEliminationMethodTransformer().transform("fake", methodNode)
+        deadCodeEliminationTransformer.transform("fake", methodNode)
 
         methodNode.prepareForEmitting()
     }
@@ -74,16 +101,22 @@ class OptimizationMethodVisitor(
     companion object {
         private val MEMORY_LIMIT_BY_METHOD_MB = 50
 
+        const val TOO_LARGE_METHODS_COUNTER = "Methods too large for full bytecode optimization"
+
+        // Optimizations which don't need a frame for each instruction, applied to methods too large for the full pipeline
+        fun createLargeMethodOptimizationTransformer(metrics: CompilerMetrics?) = CompositeMethodTransformer(
+            listOf(
+                StackPeepholeOptimizationsTransformer(),
+                PopBackwardPropagationTransformer(),
+                RedundantGotoMethodTransformer(),
+                RedundantNopsCleanupMethodTransformer()
+            ),
+            metrics
+        )
+
         fun canBeOptimized(node: MethodNode): Boolean {
             val totalFramesSizeMb = node.instructions.size() * (node.maxLocals + node.maxStack) / (1024 * 1024)
             return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
         }
-
-        fun canBeOptimizedUsingSourceInterpreter(node: MethodNode): Boolean {
-            val frameSize = node.maxLocals + node.maxStack
-            val methodSize = node.instructions.size().toLong()
-            val totalFramesSizeMb = methodSize * methodSize * frameSize / (1024 * 1024)
-            return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
-        }
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import org.jetbrains.kotlin.codegen.ClassBuilder
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Method transformations of a class whose generation is finished, together with the finishing of its underlying [ClassBuilder].
+ *
+ * All writes to the underlying class builder after the class is done happen in [process],
+ * so different classes can be processed on different threads.
+ */
+class DeferredClassPostProcessing(private val classBuilder: ClassBuilder) {
+    private var methods: MutableList<OptimizationMethodVisitor>? = ArrayList()
+    private var isClassDone = false
+
+    @Synchronized
+    fun addMethod(method: OptimizationMethodVisitor) {
+        val methods = methods ?: throw IllegalStateException("Class ${classBuilder.thisName} is already post-processed")
+        methods.add(method)
+    }
+
+    @Synchronized
+    fun markClassDone() {
+        isClassDone = true
+    }
+
+    /**
+     * Transforms and writes all methods of the class and finishes the class builder. Does nothing if the class is already processed.
+     */
+    @Synchronized
+    fun process() {
+        val methods = methods ?: return
+        assert(isClassDone) { "Class ${classBuilder.thisName} is post-processed before it is done" }
+
+        this.methods = null
+        for (method in methods) {
+            method.transformAndEmit()
+        }
+        classBuilder.done()
+    }
+}
+
+/**
+ * Runs post-processing of finished classes on a thread pool.
+ *
+ * Code generation itself reads and writes the binding trace and other shared state, so it stays single-threaded:
+ * classes are accumulated while code is generated and then processed in parallel by [processPendingClasses],
+ * which blocks the code generation thread until all of them are done. The order of the output is not affected.
+ */
+class ParallelClassPostProcessor(threadCount: Int) {
+    private val executor: ExecutorService = Executors.newFixedThreadPool(threadCount, object : ThreadFactory {
+        private val counter = AtomicInteger(0)
+
+        override fun newThread(r: Runnable): Thread =
+            Thread(r, "Kotlin JVM backend worker ${counter.incrementAndGet()}").apply { isDaemon = true }
+    })
+
+    private val pendingClasses = ArrayList<DeferredClassPostProcessing>()
+
+    @Synchronized
+    fun addPendingClass(deferredClass: DeferredClassPostProcessing) {
+        pendingClasses.add(deferredClass)
+    }
+
+    fun processPendingClasses() {
+        val classes = synchronized(this) {
+            pendingClasses.toList().also { pendingClasses.clear() }
+        }
+        if (classes.isEmpty()) return
+
+        val futures = executor.invokeAll(classes.map { deferredClass -> Callable { deferredClass.process() } })
+        for (future in futures) {
+            try {
+                future.get()
+            } catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+        }
+    }
+
+    fun shutdown() {
+        executor.shutdownNow()
+    }
+}
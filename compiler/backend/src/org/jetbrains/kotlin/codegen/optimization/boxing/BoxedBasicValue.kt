@@ -117,10 +117,8 @@ fun getUnboxedType(boxedType: Type, state: GenerationState): Type {
     throw IllegalArgumentException("Expected primitive type wrapper or KClass or inline class wrapper, got: $boxedType")
 }
 
-fun unboxedTypeOfInlineClass(boxedType: Type, state: GenerationState): Type? {
-    val descriptor = state.jvmBackendClassResolver.resolveToClassDescriptors(boxedType).singleOrNull() ?: return null
-    return state.typeMapper.mapType(descriptor.defaultType)
-}
+fun unboxedTypeOfInlineClass(boxedType: Type, state: GenerationState): Type? =
+    state.inlineClassUnboxedTypes.getUnboxedType(boxedType)
 
 private fun isInlineClassValue(boxedType: Type): Boolean {
     return !AsmUtil.isBoxedPrimitiveType(boxedType) && boxedType != AsmTypes.K_CLASS_TYPE
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.boxing
+
+import org.jetbrains.kotlin.codegen.state.GenerationState
+import org.jetbrains.org.objectweb.asm.Type
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Classes of boxed values met by the boxing optimizations, looked up once per JVM type.
+ *
+ * Looking up a class may run lazy resolution, which writes to the binding trace. When generated classes are post-processed
+ * in parallel (see [org.jetbrains.kotlin.codegen.optimization.ParallelClassPostProcessor]), the code generation thread waits
+ * for the post-processing threads, so serializing the lookups is enough to access the binding trace from one thread at a time.
+ */
+class InlineClassUnboxedTypes(private val state: GenerationState) {
+    private class ClassInfo(val isInline: Boolean, val unboxedType: Type?)
+
+    private val classInfos = ConcurrentHashMap<Type, ClassInfo>()
+
+    /**
+     * Whether [boxedType] is an inline class.
+     */
+    fun isInlineClass(boxedType: Type): Boolean = classInfo(boxedType).isInline
+
+    /**
+     * JVM type of the underlying value of the class [boxedType], or `null` if there is no single class with this JVM type.
+     */
+    fun getUnboxedType(boxedType: Type): Type? = classInfo(boxedType).unboxedType
+
+    private fun classInfo(boxedType: Type): ClassInfo =
+        classInfos[boxedType] ?: synchronized(this) {
+            classInfos.getOrPut(boxedType) {
+                val descriptor = state.jvmBackendClassResolver.resolveToClassDescriptors(boxedType).singleOrNull()
+                if (descriptor == null) NOT_A_CLASS else ClassInfo(descriptor.isInline, state.typeMapper.mapType(descriptor.defaultType))
+            }
+        }
+
+    companion object {
+        private val NOT_A_CLASS = ClassInfo(false, null)
+    }
+}
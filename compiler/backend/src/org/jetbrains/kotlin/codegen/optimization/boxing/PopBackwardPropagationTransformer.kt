@@ -16,7 +16,7 @@
 
 package org.jetbrains.kotlin.codegen.optimization.boxing
 
-import org.jetbrains.kotlin.codegen.optimization.OptimizationMethodVisitor
+import org.jetbrains.kotlin.codegen.optimization.common.SparseSourceAnalyzer
 import org.jetbrains.kotlin.codegen.optimization.common.debugText
 import org.jetbrains.kotlin.codegen.optimization.common.isLoadOperation
 import org.jetbrains.kotlin.codegen.optimization.common.isMeaningful
@@ -26,7 +26,6 @@ import org.jetbrains.kotlin.codegen.optimization.removeNodeGetNext
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
 import org.jetbrains.org.objectweb.asm.Opcodes
 import org.jetbrains.org.objectweb.asm.tree.*
-import org.jetbrains.org.objectweb.asm.tree.analysis.Analyzer
 import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
 import org.jetbrains.org.objectweb.asm.tree.analysis.SourceInterpreter
 import org.jetbrains.org.objectweb.asm.tree.analysis.SourceValue
@@ -34,7 +33,6 @@ import java.util.*
 
 class PopBackwardPropagationTransformer : MethodTransformer() {
     override fun transform(internalClassName: String, methodNode: MethodNode) {
-        if (!OptimizationMethodVisitor.canBeOptimizedUsingSourceInterpreter(methodNode)) return
         Transformer(methodNode).transform()
     }
 
@@ -64,7 +62,7 @@ class PopBackwardPropagationTransformer : MethodTransformer() {
         private val transformations = hashMapOf<AbstractInsnNode, Transformation>()
         private val removableNops = hashSetOf<InsnNode>()
 
-        private val frames by lazy { analyzeMethodBody() }
+        private val analyzer by lazy { analyzeMethodBody() }
 
         fun transform() {
             if (insns.none { it.isPop() || it.isPurePush() }) return
@@ -76,19 +74,24 @@ class PopBackwardPropagationTransformer : MethodTransformer() {
             postprocessNops()
         }
 
-        private fun analyzeMethodBody(): Array<out Frame<SourceValue>?> {
-            val frames = Analyzer<SourceValue>(HazardsTrackingInterpreter()).analyze("fake", methodNode)
+        private fun analyzeMethodBody(): SparseSourceAnalyzer {
+            val analyzer = SparseSourceAnalyzer(methodNode, HazardsTrackingInterpreter()) { it.needsInputStack() }
+            analyzer.analyze()
 
-            postprocessStackHazards(frames)
+            postprocessStackHazards(analyzer)
 
-            return frames
+            return analyzer
         }
 
-        private fun postprocessStackHazards(frames: Array<out Frame<SourceValue>?>) {
-            val insns = methodNode.instructions.toArray()
-            for (i in frames.indices) {
-                val frame = frames[i] ?: continue
-                val insn = insns[i]
+        private fun AbstractInsnNode.needsInputStack() =
+            when (opcode) {
+                Opcodes.POP, Opcodes.POP2, Opcodes.CHECKCAST, Opcodes.DUP_X1, Opcodes.DUP2_X1, Opcodes.DUP_X2, Opcodes.DUP2_X2 -> true
+                else -> isPrimitiveBoxing() || isPrimitiveTypeConversion()
+            }
+
+        private fun postprocessStackHazards(analyzer: SparseSourceAnalyzer) {
+            for (insn in insns) {
+                val frame = analyzer.getInputStack(insn) ?: continue
 
                 when (insn.opcode) {
                     Opcodes.POP2 -> {
@@ -169,7 +172,7 @@ class PopBackwardPropagationTransformer : MethodTransformer() {
             transformations.clear()
 
             for (i in insns.indices) {
-                if (frames[i] == null) continue
+                if (!analyzer.isReachable(i)) continue
                 val insn = insns[i]
 
                 if (insn.opcode == Opcodes.POP) {
@@ -283,9 +286,8 @@ class PopBackwardPropagationTransformer : MethodTransformer() {
             InsnNode(Opcodes.NOP).apply { removableNops.add(this) }
 
         private fun getInputTop(insn: AbstractInsnNode): SourceValue {
-            val i = insnList.indexOf(insn)
-            val frame = frames[i] ?: throw AssertionError("Unexpected dead instruction #$i")
-            return frame.top() ?: throw AssertionError("Instruction #$i has empty stack on input")
+            val frame = analyzer.getInputStack(insn) ?: throw AssertionError("Unexpected dead instruction #${insnList.indexOf(insn)}")
+            return frame.top() ?: throw AssertionError("Instruction #${insnList.indexOf(insn)} has empty stack on input")
         }
 
         private fun isTransformableCheckcastOperand(it: AbstractInsnNode, resultType: String) =
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.kotlin.codegen.inline.insnText
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.*
+import org.jetbrains.org.objectweb.asm.tree.analysis.AnalyzerException
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+import org.jetbrains.org.objectweb.asm.tree.analysis.SourceInterpreter
+import org.jetbrains.org.objectweb.asm.tree.analysis.SourceValue
+import java.util.*
+
+/**
+ * Computes the instructions producing stack values, like `Analyzer` with a [SourceInterpreter] does, but without storing
+ * a frame for each instruction.
+ *
+ * Local variables are not tracked: a load is the source of the value it pushes, so the contents of locals never affect sources
+ * of stack values. The state of the analysis is then only the operand stack, and it is stored only at the instructions
+ * where control flow merges (jump targets and exception handlers); straight-line code is executed on a single working frame.
+ * For the instructions accepted by [recordInputStack], the top of the input stack is kept after the analysis.
+ * Memory is proportional to the number of merge points and recorded instructions rather than to the number of instructions
+ * times the frame size, so the analysis can be run on methods of any size.
+ */
+class SparseSourceAnalyzer(
+    private val method: MethodNode,
+    private val interpreter: SourceInterpreter,
+    private val recordInputStack: (AbstractInsnNode) -> Boolean
+) {
+    private val instructions = method.instructions
+    private val insns = instructions.toArray()
+
+    private val reached = BitSet(insns.size)
+    private val mergePoints = BitSet(insns.size)
+    private val entryStacks = HashMap<Int, Array<SourceValue>>()
+    private val inputStacks = HashMap<AbstractInsnNode, Frame<SourceValue>>()
+
+    private val queue = ArrayDeque<Int>()
+    private val queued = BitSet(insns.size)
+
+    fun analyze() {
+        if (insns.isEmpty()) return
+
+        if (insns.any { it.opcode == Opcodes.JSR || it.opcode == Opcodes.RET })
+            throw AssertionError("Subroutines are deprecated since Java 6")
+
+        computeMergePoints()
+
+        val frame = Frame<SourceValue>(method.maxLocals, method.maxStack)
+        frame.setReturn(UNKNOWN)
+        for (local in 0 until method.maxLocals) {
+            frame.setLocal(local, UNKNOWN)
+        }
+
+        mergeStack(0, emptyArray())
+        do {
+            while (queue.isNotEmpty()) {
+                val start = queue.poll()
+                queued[start] = false
+                executeFrom(start, frame)
+            }
+        } while (enterReachedHandlers())
+    }
+
+    fun isReachable(index: Int): Boolean = reached[index]
+
+    /**
+     * Top of the operand stack before [insn] (at most [RECORDED_STACK_DEPTH] values), or `null` if [insn] is unreachable
+     * or was not accepted by [recordInputStack].
+     */
+    fun getInputStack(insn: AbstractInsnNode): Frame<SourceValue>? = inputStacks[insn]
+
+    private fun computeMergePoints() {
+        mergePoints[0] = true
+        for (insn in insns) {
+            when (insn) {
+                is JumpInsnNode -> mergePoints[instructions.indexOf(insn.label)] = true
+                is TableSwitchInsnNode -> {
+                    mergePoints[instructions.indexOf(insn.dflt)] = true
+                    insn.labels.forEach { mergePoints[instructions.indexOf(it)] = true }
+                }
+                is LookupSwitchInsnNode -> {
+                    mergePoints[instructions.indexOf(insn.dflt)] = true
+                    insn.labels.forEach { mergePoints[instructions.indexOf(it)] = true }
+                }
+            }
+        }
+        for (tcb in method.tryCatchBlocks) {
+            mergePoints[instructions.indexOf(tcb.handler)] = true
+        }
+    }
+
+    private fun executeFrom(start: Int, frame: Frame<SourceValue>) {
+        frame.clearStack()
+        entryStacks[start]!!.forEach { frame.push(it) }
+
+        var index = start
+        while (true) {
+            reached[index] = true
+            val insn = insns[index]
+            val type = insn.type
+            if (type != AbstractInsnNode.LABEL && type != AbstractInsnNode.LINE && type != AbstractInsnNode.FRAME) {
+                if (recordInputStack(insn)) {
+                    inputStacks[insn] = topOf(frame)
+                }
+
+                try {
+                    execute(insn, frame)
+                } catch (e: AnalyzerException) {
+                    throw AnalyzerException(e.node, "Error at instruction #$index ${insn.insnText}: ${e.message}", e)
+                } catch (e: Exception) {
+                    throw AnalyzerException(insn, "Error at instruction #$index ${insn.insnText}: ${e.message}", e)
+                }
+
+                val opcode = insn.opcode
+                when {
+                    insn is JumpInsnNode -> {
+                        mergeStack(instructions.indexOf(insn.label), stackOf(frame))
+                        if (opcode == Opcodes.GOTO) return
+                    }
+                    insn is TableSwitchInsnNode -> {
+                        mergeStack(instructions.indexOf(insn.dflt), stackOf(frame))
+                        insn.labels.forEach { mergeStack(instructions.indexOf(it), stackOf(frame)) }
+                        return
+                    }
+                    insn is LookupSwitchInsnNode -> {
+                        mergeStack(instructions.indexOf(insn.dflt), stackOf(frame))
+                        insn.labels.forEach { mergeStack(instructions.indexOf(it), stackOf(frame)) }
+                        return
+                    }
+                    opcode == Opcodes.ATHROW || opcode in Opcodes.IRETURN..Opcodes.RETURN ->
+                        return
+                }
+            }
+
+            index++
+            if (index >= insns.size) return
+            if (mergePoints[index]) {
+                mergeStack(index, stackOf(frame))
+                return
+            }
+        }
+    }
+
+    private fun execute(insn: AbstractInsnNode, frame: Frame<SourceValue>) {
+        val opcode = insn.opcode
+        if (opcode in Opcodes.ILOAD..Opcodes.ALOAD) {
+            // Only the size of a loaded value matters for the stack
+            val size = if (opcode == Opcodes.LLOAD || opcode == Opcodes.DLOAD) 2 else 1
+            frame.setLocal((insn as VarInsnNode).`var`, if (size == 2) UNKNOWN_WIDE else UNKNOWN)
+        }
+
+        frame.execute(insn, interpreter)
+
+        val stored = when {
+            opcode in Opcodes.ISTORE..Opcodes.ASTORE -> (insn as VarInsnNode).`var`
+            opcode == Opcodes.IINC -> (insn as IincInsnNode).`var`
+            else -> return
+        }
+        frame.setLocal(stored, UNKNOWN)
+        if (stored + 1 < method.maxLocals) {
+            frame.setLocal(stored + 1, UNKNOWN)
+        }
+    }
+
+    private fun enterReachedHandlers(): Boolean {
+        var entered = false
+        for (tcb in method.tryCatchBlocks) {
+            val handler = instructions.indexOf(tcb.handler)
+            if (entryStacks.containsKey(handler)) continue
+
+            val begin = instructions.indexOf(tcb.start)
+            val end = instructions.indexOf(tcb.end)
+            val firstReached = reached.nextSetBit(begin)
+            if (firstReached in 0 until end) {
+                mergeStack(handler, arrayOf(interpreter.newValue(Type.getObjectType(tcb.type ?: "java/lang/Throwable"))))
+                entered = true
+            }
+        }
+        return entered
+    }
+
+    private fun mergeStack(index: Int, stack: Array<SourceValue>) {
+        val oldStack = entryStacks[index]
+        if (oldStack == null) {
+            entryStacks[index] = stack
+        } else {
+            if (oldStack.size != stack.size) {
+                throw AnalyzerException(insns[index], "Incompatible stack heights at instruction #$index")
+            }
+
+            var changed = false
+            val mergedStack = Array(oldStack.size) { i ->
+                interpreter.merge(oldStack[i], stack[i]).also { if (it != oldStack[i]) changed = true }
+            }
+            if (!changed) return
+            entryStacks[index] = mergedStack
+        }
+
+        if (!queued[index]) {
+            queued[index] = true
+            queue.add(index)
+        }
+    }
+
+    private fun stackOf(frame: Frame<SourceValue>): Array<SourceValue> =
+        Array(frame.stackSize) { frame.getStack(it) }
+
+    private fun topOf(frame: Frame<SourceValue>): Frame<SourceValue> {
+        val depth = minOf(frame.stackSize, RECORDED_STACK_DEPTH)
+        val top = Frame<SourceValue>(0, depth)
+        for (i in frame.stackSize - depth until frame.stackSize) {
+            top.push(frame.getStack(i))
+        }
+        return top
+    }
+
+    companion object {
+        // Enough for the operands of any stack manipulation instruction
+        const val RECORDED_STACK_DEPTH = 4
+
+        private val UNKNOWN = SourceValue(1)
+        private val UNKNOWN_WIDE = SourceValue(2)
+    }
+}
@@ -16,13 +16,23 @@
 
 package org.jetbrains.kotlin.codegen.optimization.transformer
 
+import org.jetbrains.kotlin.util.CompilerMetrics
 import org.jetbrains.org.objectweb.asm.tree.MethodNode
 
-open class CompositeMethodTransformer(private val transformers: List<MethodTransformer>) : MethodTransformer() {
+open class CompositeMethodTransformer(
+    private val transformers: List<MethodTransformer>,
+    private val metrics: CompilerMetrics? = null
+) : MethodTransformer() {
     constructor(vararg transformers: MethodTransformer?) : this(transformers.filterNotNull())
 
     override fun transform(internalClassName: String, methodNode: MethodNode) {
-        transformers.forEach { it.transform(internalClassName, methodNode) }
+        if (metrics != null) {
+            for (transformer in transformers) {
+                MethodTransformerMetrics.forTransformer(transformer).transform(transformer, internalClassName, methodNode, metrics)
+            }
+        } else {
+            transformers.forEach { it.transform(internalClassName, methodNode) }
+        }
     }
 
     companion object {
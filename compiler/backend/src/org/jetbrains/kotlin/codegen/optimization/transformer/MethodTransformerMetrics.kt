@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.transformer
+
+import org.jetbrains.kotlin.util.CompilerMetrics
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Reports the time spent by method transformers of one class, and the number of instructions of the transformed methods
+ * before and after them, as counters of [CompilerMetrics].
+ */
+class MethodTransformerMetrics private constructor(transformerName: String) {
+    private val timeCounter = "$TIME_COUNTER_PREFIX$transformerName"
+    private val instructionsBeforeCounter = "$INSTRUCTIONS_BEFORE_COUNTER_PREFIX$transformerName"
+    private val instructionsAfterCounter = "$INSTRUCTIONS_AFTER_COUNTER_PREFIX$transformerName"
+
+    fun transform(transformer: MethodTransformer, internalClassName: String, methodNode: MethodNode, metrics: CompilerMetrics) {
+        val instructionsBefore = methodNode.instructions.size()
+        val start = System.nanoTime()
+        transformer.transform(internalClassName, methodNode)
+        metrics.addCounter(timeCounter, System.nanoTime() - start)
+        metrics.addCounter(instructionsBeforeCounter, instructionsBefore.toLong())
+        metrics.addCounter(instructionsAfterCounter, methodNode.instructions.size().toLong())
+    }
+
+    companion object {
+        const val TIME_COUNTER_PREFIX = "Bytecode optimization time, ns: "
+        const val INSTRUCTIONS_BEFORE_COUNTER_PREFIX = "Bytecode optimization instructions before: "
+        const val INSTRUCTIONS_AFTER_COUNTER_PREFIX = "Bytecode optimization instructions after: "
+
+        private val metricsByTransformerClass = ConcurrentHashMap<Class<*>, MethodTransformerMetrics>()
+
+        fun forTransformer(transformer: MethodTransformer): MethodTransformerMetrics =
+            metricsByTransformerClass.getOrPut(transformer.javaClass) { MethodTransformerMetrics(transformer.javaClass.simpleName) }
+    }
+}
@@ -16,8 +16,11 @@ import org.jetbrains.kotlin.codegen.context.RootContext
 import org.jetbrains.kotlin.codegen.extensions.ClassBuilderInterceptorExtension
 import org.jetbrains.kotlin.codegen.inline.GlobalInlineContext
 import org.jetbrains.kotlin.codegen.inline.InlineCache
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
 import org.jetbrains.kotlin.codegen.intrinsics.IntrinsicMethods
 import org.jetbrains.kotlin.codegen.optimization.OptimizationClassBuilderFactory
+import org.jetbrains.kotlin.codegen.optimization.ParallelClassPostProcessor
+import org.jetbrains.kotlin.codegen.optimization.boxing.InlineClassUnboxedTypes
 import org.jetbrains.kotlin.config.*
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.descriptors.ScriptDescriptor
@@ -59,7 +62,8 @@ class GenerationState private constructor(
     val outDirectory: File?,
     private val onIndependentPartCompilationEnd: GenerationStateEventCallback,
     wantsDiagnostics: Boolean,
-    val jvmBackendClassResolver: JvmBackendClassResolver
+    val jvmBackendClassResolver: JvmBackendClassResolver,
+    sharedInlineCache: SharedInlineCache?
 ) {
 
     class Builder(
@@ -106,12 +110,16 @@ class GenerationState private constructor(
         fun jvmBackendClassResolver(v: JvmBackendClassResolver) =
             apply { jvmBackendClassResolver = v }
 
+        private var sharedInlineCache: SharedInlineCache? = null
+        fun sharedInlineCache(v: SharedInlineCache?) =
+            apply { sharedInlineCache = v }
+
         fun build() =
             GenerationState(
                 project, builderFactory, module, bindingContext, files, configuration,
                 generateDeclaredClassFilter, codegenFactory, targetId,
                 moduleName, outDirectory, onIndependentPartCompilationEnd, wantsDiagnostics,
-                jvmBackendClassResolver
+                jvmBackendClassResolver, sharedInlineCache
             )
     }
 
@@ -135,7 +143,7 @@ class GenerationState private constructor(
         }
     }
 
-    val inlineCache: InlineCache = InlineCache()
+    val inlineCache: InlineCache = InlineCache(sharedInlineCache)
 
     val incrementalCacheForThisTarget: IncrementalCache?
     val packagesWithObsoleteParts: Set<FqName>
@@ -249,14 +257,28 @@ class GenerationState private constructor(
 
     val disableOptimization = configuration.get(JVMConfigurationKeys.DISABLE_OPTIMIZATION, false)
 
+    // Post-processing finishes classes in the underlying builders, so it is only moved off the code generation thread
+    // if those are the standard thread-confined builders and no extension intercepts them
+    private val classPostProcessor: ParallelClassPostProcessor? =
+        configuration.get(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, 1)
+            .takeIf {
+                it > 1 && classBuilderMode.generateBodies && builderFactory === ClassBuilderFactories.BINARIES &&
+                        ClassBuilderInterceptorExtension.getInstances(project).isEmpty()
+            }
+            ?.let(::ParallelClassPostProcessor)
+
+    val inlineClassUnboxedTypes = InlineClassUnboxedTypes(this)
+
     val metadataVersion = configuration.get(CommonConfigurationKeys.METADATA_VERSION) ?: JvmMetadataVersion.INSTANCE
 
+    val metrics = configuration.get(CommonConfigurationKeys.COMPILER_METRICS)
+
     init {
         this.interceptedBuilderFactory = builderFactory
             .wrapWith(
                 {
                     if (classBuilderMode.generateBodies)
-                        OptimizationClassBuilderFactory(it, this)
+                        OptimizationClassBuilderFactory(it, this, classPostProcessor)
                     else
                         it
                 },
@@ -286,7 +308,20 @@ class GenerationState private constructor(
         CodegenBinding.initTrace(this)
     }
 
+    /**
+     * Finishes post-processing of all generated classes if it is performed in parallel, see [ParallelClassPostProcessor].
+     * Must not be called concurrently with code generation.
+     */
+    fun postProcessPendingClasses() {
+        classPostProcessor?.processPendingClasses()
+    }
+
     fun afterIndependentPart() {
+        if (onIndependentPartCompilationEnd !== GenerationStateEventCallback.DO_NOTHING) {
+            // The callback reads the generated output, so classes of the finished part are post-processed in parallel first
+            // rather than one by one on demand
+            postProcessPendingClasses()
+        }
         onIndependentPartCompilationEnd(this)
     }
 
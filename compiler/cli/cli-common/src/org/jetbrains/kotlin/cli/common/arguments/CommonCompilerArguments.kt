@@ -176,6 +176,13 @@ abstract class CommonCompilerArguments : CommonToolArguments() {
     )
     var dumpPerf: String? by NullableStringFreezableVar(null)
 
+    @Argument(
+        value = "-Xdump-perf-json",
+        valueDescription = "<path>",
+        description = "Dump per-phase performance measurements and counters to the specified file in JSON format"
+    )
+    var dumpPerfJson: String? by NullableStringFreezableVar(null)
+
     @Argument(
         value = "-Xmetadata-version",
         description = "Change metadata version of the generated binary files"
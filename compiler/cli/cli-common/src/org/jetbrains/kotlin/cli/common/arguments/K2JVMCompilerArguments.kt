@@ -161,6 +161,39 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     )
     var declarationsOutputPath: String? by NullableStringFreezableVar(null)
 
+    @Argument(
+        value = "-Xjar-index-cache",
+        valueDescription = "<path>",
+        description = "Directory where package indices of classpath jars are cached between compiler runs"
+    )
+    var jarIndexCacheDir: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xparallel-backend-threads",
+        valueDescription = "<N>",
+        description = "Run bytecode optimizations of generated classes in N parallel threads [experimental]"
+    )
+    var parallelBackendThreads: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xparallel-body-resolution-threads",
+        valueDescription = "<N>",
+        description = "Resolve bodies of functions and properties in N parallel threads [experimental]"
+    )
+    var parallelBodyResolutionThreads: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xstream-output",
+        description = "Write generated class files to the destination while compiling instead of keeping them in memory until the end [experimental]"
+    )
+    var streamOutput: Boolean by FreezableVar(false)
+
+    @Argument(
+        value = "-Xdrop-analysis-only-slices",
+        description = "Drop binding context data not needed by code generation once analysis is finished [experimental]"
+    )
+    var dropAnalysisOnlySlices: Boolean by FreezableVar(false)
+
     @Argument(value = "-Xsingle-module", description = "Combine modules for source files and binary dependencies into a single module")
     var singleModule: Boolean by FreezableVar(false)
 
@@ -29,12 +29,14 @@ import org.jetbrains.kotlin.cli.common.messages.GroupingMessageCollector
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
 import org.jetbrains.kotlin.cli.common.messages.MessageCollectorUtil
 import org.jetbrains.kotlin.cli.common.messages.MessageRenderer
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
 import org.jetbrains.kotlin.config.CompilerConfiguration
 import org.jetbrains.kotlin.config.Services
 import org.jetbrains.kotlin.metadata.deserialization.BinaryVersion
 import org.jetbrains.kotlin.progress.CompilationCanceledException
 import org.jetbrains.kotlin.progress.CompilationCanceledStatus
 import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus
+import org.jetbrains.kotlin.util.CompilerMetrics
 import org.jetbrains.kotlin.utils.KotlinPaths
 import java.io.File
 import java.io.PrintStream
@@ -55,12 +57,19 @@ abstract class CLICompiler<A : CommonCompilerArguments> : CLITool<A>() {
 
     public override fun execImpl(baseMessageCollector: MessageCollector, services: Services, arguments: A): ExitCode {
         val performanceManager = performanceManager
-        if (arguments.reportPerf || arguments.dumpPerf != null) {
+        if (arguments.reportPerf || arguments.dumpPerf != null || arguments.dumpPerfJson != null) {
             performanceManager.enableCollectingPerformanceStatistics()
         }
 
         val configuration = CompilerConfiguration()
 
+        val metrics = services[CompilerMetrics::class.java]
+            ?: if (arguments.reportPerf || arguments.dumpPerfJson != null) CompilerMetrics() else null
+        if (metrics != null) {
+            performanceManager.metrics = metrics
+            configuration.put(CommonConfigurationKeys.COMPILER_METRICS, metrics)
+        }
+
         val messageCollector = GroupingMessageCollector(baseMessageCollector, arguments.allWarningsAsErrors).also {
             configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, it)
         }
@@ -93,6 +102,10 @@ abstract class CLICompiler<A : CommonCompilerArguments> : CLITool<A>() {
                     performanceManager.dumpPerformanceReport(File(arguments.dumpPerf!!))
                 }
 
+                if (arguments.dumpPerfJson != null) {
+                    performanceManager.dumpMetricsJson(File(arguments.dumpPerfJson!!))
+                }
+
                 return if (messageCollector.hasErrors()) COMPILATION_ERROR else code
             } catch (e: CompilationCanceledException) {
                 messageCollector.report(INFO, "Compilation was canceled", null)
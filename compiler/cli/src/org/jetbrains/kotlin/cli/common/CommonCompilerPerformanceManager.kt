@@ -5,6 +5,7 @@
 
 package org.jetbrains.kotlin.cli.common
 
+import org.jetbrains.kotlin.util.CompilerMetrics
 import org.jetbrains.kotlin.util.PerformanceCounter
 import java.io.File
 import java.lang.management.ManagementFactory
@@ -17,6 +18,14 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
     private var initStartNanos = PerformanceCounter.currentTime()
     private var analysisStart: Long = 0
     private var generationStart: Long = 0
+    private var analysisPhase: CompilerMetrics.RunningPhase? = null
+    private var generationPhase: CompilerMetrics.RunningPhase? = null
+
+    /**
+     * Structured per-phase measurements of the current compilation, see [CompilerMetrics].
+     * Analysis and code generation are recorded in it as "Analysis" and "Code generation" phases.
+     */
+    var metrics: CompilerMetrics? = null
 
     fun getMeasurementResults(): List<PerformanceMeasurement> = measurements
 
@@ -35,30 +44,45 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
         recordGcTime()
         recordJitCompilationTime()
         recordPerfCountersMeasurements()
+        recordMetricsMeasurements()
     }
 
     open fun notifyAnalysisStarted() {
         analysisStart = PerformanceCounter.currentTime()
+        analysisPhase = metrics?.startPhase(ANALYSIS_PHASE)
     }
 
     open fun notifyAnalysisFinished(files: Int, lines: Int, additionalDescription: String?) {
         val time = PerformanceCounter.currentTime() - analysisStart
         measurements += CodeAnalysisMeasurement(files, lines, TimeUnit.NANOSECONDS.toMillis(time), additionalDescription)
+
+        analysisPhase?.finish()
+        analysisPhase = null
+        metrics?.addCounter(ANALYZED_FILES_COUNTER, files.toLong())
+        metrics?.addCounter(ANALYZED_LINES_COUNTER, lines.toLong())
     }
 
     open fun notifyGenerationStarted() {
         generationStart = PerformanceCounter.currentTime()
+        generationPhase = metrics?.startPhase(GENERATION_PHASE)
     }
 
     open fun notifyGenerationFinished(lines: Int, files: Int, additionalDescription: String) {
         val time = PerformanceCounter.currentTime() - generationStart
         measurements += CodeGenerationMeasurement(lines, files, TimeUnit.NANOSECONDS.toMillis(time), additionalDescription)
+
+        generationPhase?.finish()
+        generationPhase = null
     }
 
     fun dumpPerformanceReport(destination: File) {
         destination.writeBytes(createPerformanceReport())
     }
 
+    fun dumpMetricsJson(destination: File) {
+        destination.writeText((metrics ?: CompilerMetrics()).renderJson())
+    }
+
     private fun recordGcTime() {
         if (!isEnabled) return
 
@@ -83,8 +107,21 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
         PerformanceCounter.report { s -> measurements += PerformanceCounterMeasurement(s) }
     }
 
+    private fun recordMetricsMeasurements() {
+        val metrics = metrics ?: return
+        metrics.getPhases().forEach { measurements += CompilerPhaseMeasurement(it) }
+        metrics.getCounters().forEach { (name, value) -> measurements += CompilerCounterMeasurement(name, value) }
+    }
+
     private fun createPerformanceReport(): ByteArray = buildString {
         appendln("$presentableName performance report")
         measurements.map { it.render() }.sorted().forEach { appendln(it) }
     }.toByteArray()
+
+    companion object {
+        const val ANALYSIS_PHASE = "Analysis"
+        const val GENERATION_PHASE = "Code generation"
+        const val ANALYZED_FILES_COUNTER = "Analyzed files"
+        const val ANALYZED_LINES_COUNTER = "Analyzed lines"
+    }
 }
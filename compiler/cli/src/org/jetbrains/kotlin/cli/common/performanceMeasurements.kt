@@ -5,6 +5,9 @@
 
 package org.jetbrains.kotlin.cli.common
 
+import org.jetbrains.kotlin.util.PhaseMeasurement
+import java.util.concurrent.TimeUnit
+
 interface PerformanceMeasurement {
     fun render(): String
 }
@@ -48,3 +51,16 @@ class GarbageCollectionMeasurement(private val garbageCollectionKind: String, pr
 class PerformanceCounterMeasurement(private val counterReport: String) : PerformanceMeasurement {
     override fun render(): String = counterReport
 }
+
+
+class CompilerPhaseMeasurement(private val measurement: PhaseMeasurement) : PerformanceMeasurement {
+    override fun render(): String = with(measurement) {
+        "PHASE: $phase ($runs runs) in ${TimeUnit.NANOSECONDS.toMillis(wallNanos)} ms, " +
+                "CPU ${TimeUnit.NANOSECONDS.toMillis(cpuNanos)} ms, GC $gcMillis ms, allocated ${allocatedBytes / 1024} kb"
+    }
+}
+
+
+class CompilerCounterMeasurement(private val counter: String, private val value: Long) : PerformanceMeasurement {
+    override fun render(): String = "COUNTER: $counter is $value"
+}
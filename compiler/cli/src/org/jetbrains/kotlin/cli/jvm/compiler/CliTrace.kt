@@ -7,13 +7,17 @@ package org.jetbrains.kotlin.cli.jvm.compiler
 
 import org.jetbrains.annotations.TestOnly
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
+import org.jetbrains.kotlin.diagnostics.Diagnostic
 import org.jetbrains.kotlin.psi.KtDeclaration
+import org.jetbrains.kotlin.psi.KtExpression
 import org.jetbrains.kotlin.psi.KtPsiUtil
 import org.jetbrains.kotlin.resolve.BindingContext
 import org.jetbrains.kotlin.resolve.BindingTrace
 import org.jetbrains.kotlin.resolve.BindingTraceContext
 import org.jetbrains.kotlin.resolve.CodeAnalyzerInitializer
 import org.jetbrains.kotlin.resolve.lazy.KotlinCodeAnalyzer
+import org.jetbrains.kotlin.storage.StorageManager
+import org.jetbrains.kotlin.types.KotlinType
 import org.jetbrains.kotlin.util.slicedMap.ReadOnlySlice
 import org.jetbrains.kotlin.util.slicedMap.WritableSlice
 import kotlin.properties.Delegates
@@ -59,6 +63,7 @@ class NoScopeRecordCliBindingTrace : CliBindingTrace() {
 
 open class CliBindingTrace @TestOnly constructor() : BindingTraceContext() {
     private var kotlinCodeAnalyzer: KotlinCodeAnalyzer? = null
+    private var storageManager: StorageManager? = null
 
     override fun toString(): String {
         return CliBindingTrace::class.java.name
@@ -68,15 +73,42 @@ open class CliBindingTrace @TestOnly constructor() : BindingTraceContext() {
         this.kotlinCodeAnalyzer = kotlinCodeAnalyzer
     }
 
+    /**
+     * Makes all reads and writes of this trace go under the lock of [storageManager], so that it can be used by several threads
+     * resolving bodies in parallel. Lazy resolution writes to the trace under the same lock anyway.
+     */
+    fun guardWith(storageManager: StorageManager) {
+        this.storageManager = storageManager
+    }
+
+    private inline fun <T> guarded(crossinline block: () -> T): T {
+        val storageManager = storageManager ?: return block()
+        return storageManager.compute { block() }
+    }
+
+    override fun <K, V> record(slice: WritableSlice<K, V>, key: K, value: V) {
+        guarded { super.record(slice, key, value) }
+    }
+
+    override fun recordType(expression: KtExpression, type: KotlinType?) {
+        guarded { super.recordType(expression, type) }
+    }
+
+    override fun report(diagnostic: Diagnostic) {
+        guarded { super.report(diagnostic) }
+    }
+
+    override fun <K, V> getKeys(slice: WritableSlice<K, V>): Collection<K> = guarded { super.getKeys(slice) }
+
     override fun <K, V> get(slice: ReadOnlySlice<K, V>, key: K): V? {
-        val value = super.get(slice, key)
+        val value = guarded { super.get(slice, key) }
 
         if (value == null) {
             if (BindingContext.FUNCTION === slice || BindingContext.VARIABLE === slice) {
                 if (key is KtDeclaration) {
                     if (!KtPsiUtil.isLocal(key)) {
                         kotlinCodeAnalyzer!!.resolveToDescriptor(key)
-                        return super.get<K, V>(slice, key)
+                        return guarded { super.get<K, V>(slice, key) }
                     }
                 }
             }
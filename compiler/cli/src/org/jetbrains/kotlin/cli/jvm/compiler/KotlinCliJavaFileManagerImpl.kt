@@ -72,7 +72,7 @@ class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager) : CoreJ
 
     private fun findVirtualFileForTopLevelClass(classId: ClassId, searchScope: GlobalSearchScope): VirtualFile? {
         val relativeClassName = classId.relativeClassName.asString()
-        return topLevelClassesCache.getOrPut(classId.packageFqName.child(classId.relativeClassName.pathSegments().first())) {
+        return topLevelClassesCache.getOrPutSynchronized(classId.packageFqName.child(classId.relativeClassName.pathSegments().first())) {
             index.findClass(classId) { dir, type ->
                 findVirtualFileGivenPackage(dir, relativeClassName, type)
             } ?: singleJavaFileRootsIndex.findJavaSourceClass(classId)
@@ -90,7 +90,7 @@ class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager) : CoreJ
 
         if (useFastClassFilesReading && virtualFile.extension == "class") {
             // We return all class files' names in the directory in knownClassNamesInPackage method, so one may request an inner class
-            return binaryCache.getOrPut(classId) {
+            return binaryCache.getOrPutSynchronized(classId) {
                 // Note that currently we implicitly suppose that searchScope for binary classes is constant and we do not use it
                 // as a key in cache
                 // This is a true assumption by now since there are two search scopes in compiler: one for sources and another one for binary
@@ -108,7 +108,7 @@ class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager) : CoreJ
 
                 // Here, we assume the class is top-level
                 val classContent = classFileContentFromRequest ?: virtualFile.contentsToByteArray()
-                if (virtualFile.nameWithoutExtension.contains("$") && isNotTopLevelClass(classContent)) return@getOrPut null
+                if (virtualFile.nameWithoutExtension.contains("$") && isNotTopLevelClass(classContent)) return@getOrPutSynchronized null
 
                 val resolver = ClassifierResolutionContext { findClass(it, allScope) }
 
@@ -122,6 +122,21 @@ class KotlinCliJavaFileManagerImpl(private val myPsiManager: PsiManager) : CoreJ
         return virtualFile.findPsiClassInVirtualFile(classId.relativeClassName.asString())?.let(::JavaClassImpl)
     }
 
+    // The caches are filled by all threads resolving bodies in parallel (see BodyResolveParallelism).
+    // A value is computed outside of the lock, since computing it may need other values; if several threads compute the same value,
+    // the one stored first is used by all of them
+    private inline fun <K, V : Any> MutableMap<K, V?>.getOrPutSynchronized(key: K, compute: () -> V?): V? {
+        synchronized(this) {
+            if (containsKey(key)) return get(key)
+        }
+        val value = compute()
+        synchronized(this) {
+            if (containsKey(key)) return get(key)
+            put(key, value)
+        }
+        return value
+    }
+
     // this method is called from IDEA to resolve dependencies in Java code
     // which supposedly shouldn't have errors so the dependencies exist in general
     override fun findClass(qName: String, scope: GlobalSearchScope): PsiClass? {
@@ -240,7 +240,13 @@ class KotlinCoreEnvironment private constructor(
 
         // REPL and kapt2 update classpath dynamically
         rootsIndex = JvmDependenciesDynamicCompoundIndex().apply {
-            addIndex(JvmDependenciesIndexImpl(roots))
+            val jarIndexCacheDir = configuration.get(JVMConfigurationKeys.JAR_INDEX_CACHE_DIR)
+            val jarPackagesCache = when {
+                jarIndexCacheDir != null -> JarPackagesCache.sharedWithDiskCache(jarIndexCacheDir)
+                System.getProperty(KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY).toBooleanLenient() == true -> JarPackagesCache.shared
+                else -> null
+            }
+            addIndex(JvmDependenciesIndexImpl(roots, jarPackagesCache))
             updateClasspathFromRootsIndex(this)
         }
 
@@ -34,6 +34,7 @@ import org.jetbrains.kotlin.backend.common.output.SimpleOutputFileCollection
 import org.jetbrains.kotlin.backend.jvm.JvmIrCodegenFactory
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
 import org.jetbrains.kotlin.cli.common.ExitCode
+import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY
 import org.jetbrains.kotlin.cli.common.checkKotlinPackageUsage
 import org.jetbrains.kotlin.cli.common.config.addKotlinSourceRoot
 import org.jetbrains.kotlin.cli.common.messages.AnalyzerWithCompilerReport
@@ -42,13 +43,16 @@ import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.WARNING
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
 import org.jetbrains.kotlin.cli.common.messages.OutputMessageUtil
 import org.jetbrains.kotlin.cli.common.output.writeAll
+import org.jetbrains.kotlin.cli.common.toBooleanLenient
 import org.jetbrains.kotlin.cli.jvm.config.*
 import org.jetbrains.kotlin.codegen.*
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
 import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.codegen.state.GenerationStateEventCallback
 import org.jetbrains.kotlin.config.CommonConfigurationKeys
 import org.jetbrains.kotlin.config.CompilerConfiguration
 import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.config.LanguageVersionSettings
 import org.jetbrains.kotlin.config.languageVersionSettings
 import org.jetbrains.kotlin.fileClasses.JvmFileClassUtil
 import org.jetbrains.kotlin.idea.MainFunctionDetector
@@ -59,8 +63,10 @@ import org.jetbrains.kotlin.modules.TargetId
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus
 import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.resolve.BindingContext
 import org.jetbrains.kotlin.resolve.jvm.KotlinJavaPsiFacade
 import org.jetbrains.kotlin.script.tryConstructClassFromStringArgs
+import org.jetbrains.kotlin.types.SubtypingCache
 import org.jetbrains.kotlin.utils.newLinkedHashMapWithExpectedSize
 import java.io.File
 import java.lang.reflect.InvocationTargetException
@@ -71,8 +77,14 @@ object KotlinToJVMBytecodeCompiler {
     private fun writeOutput(
         configuration: CompilerConfiguration,
         outputFiles: OutputFileCollection,
-        mainClass: FqName?
+        mainClass: FqName?,
+        outputWriter: StreamingOutputWriter? = null
     ) {
+        if (outputWriter != null) {
+            outputWriter.write(outputFiles)
+            return
+        }
+
         val reportOutputFiles = configuration.getBoolean(CommonConfigurationKeys.REPORT_OUTPUT_FILES)
         val jarPath = configuration.get(JVMConfigurationKeys.OUTPUT_JAR)
         val messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE)
@@ -90,13 +102,16 @@ object KotlinToJVMBytecodeCompiler {
         outputFiles.writeAll(outputDir, messageCollector, reportOutputFiles)
     }
 
-    private fun createOutputFilesFlushingCallbackIfPossible(configuration: CompilerConfiguration): GenerationStateEventCallback {
-        if (configuration.get(JVMConfigurationKeys.OUTPUT_DIRECTORY) == null) {
+    private fun createOutputFilesFlushingCallbackIfPossible(
+        configuration: CompilerConfiguration,
+        outputWriter: StreamingOutputWriter?
+    ): GenerationStateEventCallback {
+        if (outputWriter == null && configuration.get(JVMConfigurationKeys.OUTPUT_DIRECTORY) == null) {
             return GenerationStateEventCallback.DO_NOTHING
         }
         return GenerationStateEventCallback { state ->
             val currentOutput = SimpleOutputFileCollection(state.factory.currentOutput)
-            writeOutput(configuration, currentOutput, mainClass = null)
+            writeOutput(configuration, currentOutput, mainClass = null, outputWriter = outputWriter)
             if (!configuration.get(JVMConfigurationKeys.RETAIN_OUTPUT_IN_MEMORY, false)) {
                 state.factory.releaseGeneratedOutput()
             }
@@ -128,36 +143,42 @@ object KotlinToJVMBytecodeCompiler {
         result.throwIfError()
 
         val outputs = newLinkedHashMapWithExpectedSize<Module, GenerationState>(chunk.size)
+        val outputWriters = newLinkedHashMapWithExpectedSize<Module, StreamingOutputWriter>(chunk.size)
 
         val localFileSystem = VirtualFileManager.getInstance().getFileSystem(StandardFileSystems.FILE_PROTOCOL)
 
-        for (module in chunk) {
-            ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
-            val (moduleSourceDirs, moduleSourceFiles) =
-                    getAbsolutePaths(buildFile, module.getSourceFiles())
-                        .mapNotNull(localFileSystem::findFileByPath)
-                        .partition(VirtualFile::isDirectory)
-
-            val ktFiles = environment.getSourceFiles().filter { file ->
-                val virtualFile = file.virtualFile
-                virtualFile in moduleSourceFiles || moduleSourceDirs.any { dir ->
-                    VfsUtilCore.isAncestor(dir, virtualFile, true)
+        try {
+            for (module in chunk) {
+                ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
+                val (moduleSourceDirs, moduleSourceFiles) =
+                        getAbsolutePaths(buildFile, module.getSourceFiles())
+                            .mapNotNull(localFileSystem::findFileByPath)
+                            .partition(VirtualFile::isDirectory)
+
+                val ktFiles = environment.getSourceFiles().filter { file ->
+                    val virtualFile = file.virtualFile
+                    virtualFile in moduleSourceFiles || moduleSourceDirs.any { dir ->
+                        VfsUtilCore.isAncestor(dir, virtualFile, true)
+                    }
                 }
-            }
 
-            if (!checkKotlinPackageUsage(environment, ktFiles)) return false
+                if (!checkKotlinPackageUsage(environment, ktFiles)) return false
 
-            val moduleConfiguration = projectConfiguration.copy().apply {
-                put(JVMConfigurationKeys.OUTPUT_DIRECTORY, File(module.getOutputDirectory()))
-            }
+                val moduleConfiguration = projectConfiguration.copy().apply {
+                    put(JVMConfigurationKeys.OUTPUT_DIRECTORY, File(module.getOutputDirectory()))
+                }
 
-            outputs[module] = generate(environment, moduleConfiguration, result, ktFiles, module)
-        }
+                val outputWriter = StreamingOutputWriter.createIfEnabled(moduleConfiguration, mainClass = null)
+                outputWriter?.let { outputWriters[module] = it }
 
-        try {
-            for ((_, state) in outputs) {
+                outputs[module] = generate(environment, moduleConfiguration, result, ktFiles, module, outputWriter)
+            }
+
+            for ((module, state) in outputs) {
                 ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
-                writeOutput(state.configuration, state.factory, null)
+                val outputWriter = outputWriters.remove(module)
+                writeOutput(state.configuration, state.factory, null, outputWriter)
+                outputWriter?.close()
             }
 
             if (projectConfiguration.getBoolean(JVMConfigurationKeys.COMPILE_JAVA)) {
@@ -178,6 +199,7 @@ object KotlinToJVMBytecodeCompiler {
 
             return true
         } finally {
+            outputWriters.values.forEach(StreamingOutputWriter::abort)
             outputs.values.forEach(GenerationState::destroy)
         }
     }
@@ -233,8 +255,8 @@ object KotlinToJVMBytecodeCompiler {
             (File(path).takeIf(File::isAbsolute) ?: buildFile.resolveSibling(path)).absolutePath
         }
 
-    private fun findMainClass(generationState: GenerationState, files: List<KtFile>): FqName? {
-        val mainFunctionDetector = MainFunctionDetector(generationState.bindingContext, generationState.languageVersionSettings)
+    private fun findMainClass(bindingContext: BindingContext, languageVersionSettings: LanguageVersionSettings, files: List<KtFile>): FqName? {
+        val mainFunctionDetector = MainFunctionDetector(bindingContext, languageVersionSettings)
         return files.asSequence()
             .map { file ->
                 if (mainFunctionDetector.hasMain(file.declarations))
@@ -255,15 +277,32 @@ object KotlinToJVMBytecodeCompiler {
 
         if (!checkKotlinPackageUsage(environment, environment.getSourceFiles())) return false
 
-        val generationState = analyzeAndGenerate(environment) ?: return false
+        val configuration = environment.configuration
+        val sourceFiles = environment.getSourceFiles()
+        val result = analyzeForCodegen(environment) ?: return false
 
-        val mainClass = findMainClass(generationState, environment.getSourceFiles())
+        // Streamed jar output is started before code generation, so its manifest needs the main class in advance
+        val outputWriter = if (configuration.getBoolean(JVMConfigurationKeys.STREAM_OUTPUT))
+            StreamingOutputWriter.createIfEnabled(
+                configuration, findMainClass(result.bindingContext, configuration.languageVersionSettings, sourceFiles)
+            )
+        else null
 
+        var generationState: GenerationState? = null
         try {
-            writeOutput(environment.configuration, generationState.factory, mainClass)
+            generationState = generate(environment, configuration, result, sourceFiles, null, outputWriter)
+
+            if (outputWriter != null) {
+                writeOutput(configuration, generationState.factory, null, outputWriter)
+                outputWriter.close()
+            } else {
+                val mainClass = findMainClass(generationState.bindingContext, generationState.languageVersionSettings, sourceFiles)
+                writeOutput(configuration, generationState.factory, mainClass)
+            }
             return true
         } finally {
-            generationState.destroy()
+            outputWriter?.abort()
+            generationState?.destroy()
         }
     }
 
@@ -354,13 +393,19 @@ object KotlinToJVMBytecodeCompiler {
 
     @Suppress("MemberVisibilityCanBePrivate") // Used in ExecuteKotlinScriptMojo
     fun analyzeAndGenerate(environment: KotlinCoreEnvironment): GenerationState? {
+        val result = analyzeForCodegen(environment) ?: return null
+
+        return generate(environment, environment.configuration, result, environment.getSourceFiles(), null)
+    }
+
+    private fun analyzeForCodegen(environment: KotlinCoreEnvironment): AnalysisResult? {
         val result = repeatAnalysisIfNeeded(analyze(environment, null), environment, null) ?: return null
 
         if (!result.shouldGenerateCode) return null
 
         result.throwIfError()
 
-        return generate(environment, environment.configuration, result, environment.getSourceFiles(), null)
+        return result
     }
 
     private fun analyze(environment: KotlinCoreEnvironment, targetDescription: String?): AnalysisResult? {
@@ -370,28 +415,42 @@ object KotlinToJVMBytecodeCompiler {
         // Can be null for Scripts/REPL
         val performanceManager = environment.configuration.get(CLIConfigurationKeys.PERF_MANAGER)
         performanceManager?.notifyAnalysisStarted()
+        val subtypingCacheSession = SubtypingCache.Session.createIfEnabled()
 
+        val trace = NoScopeRecordCliBindingTrace()
         val analyzerWithCompilerReport = AnalyzerWithCompilerReport(collector, environment.configuration.languageVersionSettings)
         analyzerWithCompilerReport.analyzeAndReport(sourceFiles) {
-            val project = environment.project
-            val moduleOutputs = environment.configuration.get(JVMConfigurationKeys.MODULES)?.mapNotNullTo(hashSetOf()) { module ->
-                environment.findLocalFile(module.getOutputDirectory())
-            }.orEmpty()
-            val sourcesOnly = TopDownAnalyzerFacadeForJVM.newModuleSearchScope(project, sourceFiles)
-            // To support partial and incremental compilation, we add the scope which contains binaries from output directories
-            // of the compiled modules (.class) to the list of scopes of the source module
-            val scope = if (moduleOutputs.isEmpty()) sourcesOnly else sourcesOnly.uniteWith(DirectoriesScope(project, moduleOutputs))
-            TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
-                project,
-                sourceFiles,
-                NoScopeRecordCliBindingTrace(),
-                environment.configuration,
-                environment::createPackagePartProvider,
-                sourceModuleSearchScope = scope
-            )
+            SubtypingCache.withSession(subtypingCacheSession) {
+                val project = environment.project
+                val moduleOutputs = environment.configuration.get(JVMConfigurationKeys.MODULES)?.mapNotNullTo(hashSetOf()) { module ->
+                    environment.findLocalFile(module.getOutputDirectory())
+                }.orEmpty()
+                val sourcesOnly = TopDownAnalyzerFacadeForJVM.newModuleSearchScope(project, sourceFiles)
+                // To support partial and incremental compilation, we add the scope which contains binaries from output directories
+                // of the compiled modules (.class) to the list of scopes of the source module
+                val scope = if (moduleOutputs.isEmpty()) sourcesOnly else sourcesOnly.uniteWith(DirectoriesScope(project, moduleOutputs))
+                TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+                    project,
+                    sourceFiles,
+                    trace,
+                    environment.configuration,
+                    environment::createPackagePartProvider,
+                    sourceModuleSearchScope = scope
+                )
+            }
         }
 
         performanceManager?.notifyAnalysisFinished(sourceFiles.size, environment.countLinesOfCode(sourceFiles), targetDescription)
+        performanceManager?.metrics?.let { metrics ->
+            for (statistics in trace.sliceStatistics) {
+                metrics.addCounter("Binding context entries: ${statistics.sliceName}", statistics.entries.toLong())
+                metrics.addCounter("Binding context bytes: ${statistics.sliceName}", statistics.estimatedBytes)
+            }
+            if (subtypingCacheSession != null) {
+                metrics.addCounter("Subtyping cache hits", subtypingCacheSession.hits)
+                metrics.addCounter("Subtyping cache misses", subtypingCacheSession.misses)
+            }
+        }
 
         val analysisResult = analyzerWithCompilerReport.analysisResult
 
@@ -432,7 +491,8 @@ object KotlinToJVMBytecodeCompiler {
         configuration: CompilerConfiguration,
         result: AnalysisResult,
         sourceFiles: List<KtFile>,
-        module: Module?
+        module: Module?,
+        outputWriter: StreamingOutputWriter? = null
     ): GenerationState {
         val generationState = GenerationState.Builder(
             environment.project,
@@ -444,7 +504,11 @@ object KotlinToJVMBytecodeCompiler {
         )
             .codegenFactory(if (configuration.getBoolean(JVMConfigurationKeys.IR)) JvmIrCodegenFactory else DefaultCodegenFactory)
             .withModule(module)
-            .onIndependentPartCompilationEnd(createOutputFilesFlushingCallbackIfPossible(configuration))
+            .onIndependentPartCompilationEnd(createOutputFilesFlushingCallbackIfPossible(configuration, outputWriter))
+            .sharedInlineCache(
+                if (System.getProperty(KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY).toBooleanLenient() == true) SharedInlineCache.shared
+                else null
+            )
             .build()
 
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
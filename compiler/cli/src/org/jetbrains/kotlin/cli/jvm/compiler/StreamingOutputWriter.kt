@@ -0,0 +1,255 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.kotlin.backend.common.output.OutputFileCollection
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import org.jetbrains.kotlin.cli.common.messages.OutputMessageUtil
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.utils.closeQuietly
+import java.io.*
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.*
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+/**
+ * Writes generated files to the output directory or jar on a background thread while code is still being generated,
+ * so that they need not be kept in memory until the end of the compilation.
+ *
+ * Files are passed to [write] as soon as code generation for their source file is finished.
+ * If the files waiting to be written take more than [maxPendingBytes], [write] blocks until the writer catches up.
+ * Output files are reported to the message collector in the same way as by non-streaming output,
+ * so incremental compilation keeps tracking which sources produced which outputs.
+ */
+class StreamingOutputWriter private constructor(
+    private val destination: Destination,
+    private val maxPendingBytes: Long,
+    private val messageCollector: MessageCollector,
+    private val reportOutputFiles: Boolean
+) : Closeable {
+    private abstract class Destination {
+        abstract fun write(relativePath: String, bytes: ByteArray)
+        open fun finish() {}
+        open fun abort() {}
+        open fun reportOutput(sources: Collection<File>, messageCollector: MessageCollector) {}
+    }
+
+    private class DirectoryDestination(val outputDir: File) : Destination() {
+        override fun write(relativePath: String, bytes: ByteArray) {
+            FileUtil.writeToFile(File(outputDir, relativePath), bytes)
+        }
+    }
+
+    // The jar is written to a temporary file next to it, which replaces the jar only when it is complete,
+    // so a failed compilation neither truncates an existing jar nor leaves a partially written one
+    private class JarDestination(val jarPath: File, mainClass: FqName?, val includeRuntime: Boolean) : Destination() {
+        private val tempFile: File = try {
+            File.createTempFile(jarPath.name, ".tmp", jarPath.absoluteFile.parentFile)
+        } catch (e: IOException) {
+            throw CompileEnvironmentException("Invalid jar path $jarPath", e)
+        }
+
+        private val stream: JarOutputStream = try {
+            JarOutputStream(BufferedOutputStream(FileOutputStream(tempFile)), CompileEnvironmentUtil.createManifest(mainClass))
+        } catch (e: IOException) {
+            tempFile.delete()
+            throw CompileEnvironmentException("Invalid jar path $jarPath", e)
+        }
+
+        private val allSources = LinkedHashSet<File>()
+
+        override fun write(relativePath: String, bytes: ByteArray) {
+            stream.putNextEntry(JarEntry(relativePath))
+            stream.write(bytes)
+        }
+
+        override fun finish() {
+            try {
+                stream.use {
+                    if (includeRuntime) {
+                        CompileEnvironmentUtil.writeRuntimeToJar(it)
+                    }
+                    it.finish()
+                }
+                Files.move(tempFile.toPath(), jarPath.toPath(), StandardCopyOption.REPLACE_EXISTING)
+            } catch (e: IOException) {
+                throw CompileEnvironmentException("Failed to generate jar file $jarPath", e)
+            } finally {
+                tempFile.delete()
+            }
+        }
+
+        override fun abort() {
+            closeQuietly(stream)
+            tempFile.delete()
+        }
+
+        override fun reportOutput(sources: Collection<File>, messageCollector: MessageCollector) {
+            allSources.addAll(sources)
+        }
+
+        fun reportJar(messageCollector: MessageCollector) {
+            messageCollector.report(CompilerMessageSeverity.OUTPUT, OutputMessageUtil.formatOutputMessage(allSources, jarPath))
+        }
+    }
+
+    private class PendingFile(val relativePath: String, val bytes: ByteArray)
+
+    private val lock = Object()
+    private val queue = ArrayDeque<PendingFile>()
+    private var pendingBytes = 0L
+    private var isClosed = false
+    private var isAborted = false
+    private var failure: Throwable? = null
+
+    private val writerThread = Thread(::writeLoop, "Kotlin output writer").apply {
+        isDaemon = true
+        start()
+    }
+
+    /**
+     * Schedules all files of [outputFiles] for writing. Must be called on the code generation thread,
+     * since contents of the files are obtained from the class builders.
+     */
+    fun write(outputFiles: OutputFileCollection) {
+        for (file in outputFiles.asList()) {
+            val bytes = file.asByteArray()
+            val sources = file.sourceFiles
+            if (reportOutputFiles) {
+                when (destination) {
+                    is DirectoryDestination -> messageCollector.report(
+                        CompilerMessageSeverity.OUTPUT,
+                        OutputMessageUtil.formatOutputMessage(sources, File(destination.outputDir, file.relativePath))
+                    )
+                    else -> destination.reportOutput(sources, messageCollector)
+                }
+            }
+            enqueue(PendingFile(file.relativePath, bytes))
+        }
+    }
+
+    private fun enqueue(file: PendingFile) {
+        synchronized(lock) {
+            // A single file larger than the limit is still accepted once the queue is empty
+            while (failure == null && queue.isNotEmpty() && pendingBytes + file.bytes.size > maxPendingBytes) {
+                lock.wait()
+            }
+            rethrowFailure()
+            queue.addLast(file)
+            pendingBytes += file.bytes.size
+            lock.notifyAll()
+        }
+    }
+
+    private fun writeLoop() {
+        try {
+            while (true) {
+                val file = synchronized(lock) {
+                    while (queue.isEmpty() && !isClosed) {
+                        lock.wait()
+                    }
+                    if (isAborted) return
+                    queue.peekFirst() ?: return
+                }
+
+                destination.write(file.relativePath, file.bytes)
+
+                synchronized(lock) {
+                    queue.removeFirst()
+                    pendingBytes -= file.bytes.size
+                    lock.notifyAll()
+                }
+            }
+        } catch (e: Throwable) {
+            synchronized(lock) {
+                failure = e
+                queue.clear()
+                pendingBytes = 0
+                lock.notifyAll()
+            }
+        }
+    }
+
+    /**
+     * Waits until all scheduled files are written and finishes the output. Does nothing if the writer is already closed.
+     * If writing has failed, the output is discarded as by [abort] and the failure is rethrown.
+     */
+    override fun close() {
+        synchronized(lock) {
+            if (isClosed) return
+            isClosed = true
+            lock.notifyAll()
+        }
+        writerThread.join()
+
+        if (failure != null) {
+            destination.abort()
+            rethrowFailure()
+        }
+        destination.finish()
+        if (reportOutputFiles && destination is JarDestination) {
+            destination.reportJar(messageCollector)
+        }
+    }
+
+    /**
+     * Stops writing without waiting for the scheduled files, e.g. when code generation has failed.
+     * The jar is left as it was before the compilation, while files already written to the output directory are kept,
+     * as with non-streaming output. Does nothing if the writer is already closed.
+     */
+    fun abort() {
+        synchronized(lock) {
+            if (isClosed) return
+            isClosed = true
+            isAborted = true
+            lock.notifyAll()
+        }
+        writerThread.join()
+
+        destination.abort()
+    }
+
+    private fun rethrowFailure() {
+        val e = failure ?: return
+        throw CompileEnvironmentException("Failed to write compiler output: ${e.message}", e)
+    }
+
+    companion object {
+        private const val DEFAULT_MAX_PENDING_BYTES = 32L * 1024 * 1024
+
+        /**
+         * Returns the writer for the output destination of [configuration],
+         * or null if streaming output is not enabled or there is no destination to write to.
+         */
+        fun createIfEnabled(configuration: CompilerConfiguration, mainClass: FqName?): StreamingOutputWriter? {
+            if (!configuration.getBoolean(JVMConfigurationKeys.STREAM_OUTPUT)) return null
+            if (configuration.getBoolean(JVMConfigurationKeys.RETAIN_OUTPUT_IN_MEMORY)) return null
+
+            val jarPath = configuration.get(JVMConfigurationKeys.OUTPUT_JAR)
+            val outputDir = configuration.get(JVMConfigurationKeys.OUTPUT_DIRECTORY)
+            val destination = when {
+                jarPath != null -> JarDestination(jarPath, mainClass, configuration.get(JVMConfigurationKeys.INCLUDE_RUNTIME, false))
+                outputDir != null -> DirectoryDestination(outputDir)
+                else -> return null
+            }
+
+            return StreamingOutputWriter(
+                destination,
+                DEFAULT_MAX_PENDING_BYTES,
+                configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE),
+                configuration.getBoolean(CommonConfigurationKeys.REPORT_OUTPUT_FILES)
+            )
+        }
+    }
+}
@@ -30,9 +30,11 @@ import org.jetbrains.kotlin.container.StorageComponentContainer
 import org.jetbrains.kotlin.container.get
 import org.jetbrains.kotlin.container.useImpl
 import org.jetbrains.kotlin.context.ContextForNewModule
+import org.jetbrains.kotlin.context.GlobalContextWithStripedLocks
 import org.jetbrains.kotlin.context.ModuleContext
 import org.jetbrains.kotlin.context.MutableModuleContext
 import org.jetbrains.kotlin.context.ProjectContext
+import org.jetbrains.kotlin.context.withProject
 import org.jetbrains.kotlin.descriptors.ClassDescriptor
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.descriptors.PackageFragmentProvider
@@ -42,6 +44,8 @@ import org.jetbrains.kotlin.frontend.java.di.initJvmBuiltInsForTopDownAnalysis
 import org.jetbrains.kotlin.frontend.java.di.initialize
 import org.jetbrains.kotlin.incremental.components.ExpectActualTracker
 import org.jetbrains.kotlin.incremental.components.LookupTracker
+import org.jetbrains.kotlin.incremental.components.Position
+import org.jetbrains.kotlin.incremental.components.ScopeKind
 import org.jetbrains.kotlin.javac.components.JavacBasedClassFinder
 import org.jetbrains.kotlin.javac.components.JavacBasedSourceElementFactory
 import org.jetbrains.kotlin.javac.components.StubJavaResolverCache
@@ -57,8 +61,12 @@ import org.jetbrains.kotlin.modules.TargetId
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.resolve.BindingTrace
+import org.jetbrains.kotlin.resolve.BindingTraceContext
+import org.jetbrains.kotlin.resolve.BodyResolveParallelism
 import org.jetbrains.kotlin.resolve.LazyTopDownAnalyzer
+import org.jetbrains.kotlin.resolve.SliceLifetime
 import org.jetbrains.kotlin.resolve.TopDownAnalysisMode
+import org.jetbrains.kotlin.resolve.calls.inference.components.InferenceStatistics
 import org.jetbrains.kotlin.resolve.jvm.JavaDescriptorResolver
 import org.jetbrains.kotlin.resolve.jvm.extensions.AnalysisHandlerExtension
 import org.jetbrains.kotlin.resolve.jvm.extensions.PackageFragmentProviderExtension
@@ -66,6 +74,7 @@ import org.jetbrains.kotlin.resolve.lazy.KotlinCodeAnalyzer
 import org.jetbrains.kotlin.resolve.lazy.declarations.DeclarationProviderFactory
 import org.jetbrains.kotlin.resolve.lazy.declarations.FileBasedDeclarationProviderFactory
 import org.jetbrains.kotlin.storage.StorageManager
+import org.jetbrains.kotlin.util.CompilerMetrics
 import java.util.*
 import kotlin.reflect.KFunction1
 
@@ -108,13 +117,41 @@ object TopDownAnalyzerFacadeForJVM {
             }
         }
 
+        val metrics = configuration.get(CommonConfigurationKeys.COMPILER_METRICS)
+        if (metrics != null) {
+            container.get<InferenceStatistics>().isEnabled = true
+        }
+
         container.get<LazyTopDownAnalyzer>().analyzeDeclarations(TopDownAnalysisMode.TopLevelDeclarations, files)
 
+        if (metrics != null) {
+            reportInferenceStatistics(container.get(), metrics)
+        }
+
         invokeExtensionsOnAnalysisComplete()?.let { return it }
 
+        // The slices are dropped once for the whole module, when all files are analyzed, since lazy resolution of a file
+        // may read the slices of others until then. This only reduces the heap retained during code generation, not the peak
+        // during analysis. Light classes built by javac integration read expected types of annotation arguments after analysis
+        if (configuration.getBoolean(JVMConfigurationKeys.DROP_ANALYSIS_ONLY_SLICES) && !configuration.getBoolean(JVMConfigurationKeys.USE_JAVAC)) {
+            (trace as? BindingTraceContext)?.removeSlices(SliceLifetime.slicesNotNeededForCodegen())
+        }
+
         return AnalysisResult.success(trace.bindingContext, module)
     }
 
+    private fun reportInferenceStatistics(statistics: InferenceStatistics, metrics: CompilerMetrics) {
+        if (statistics.constraintsAdded == 0L && statistics.fixationIterations == 0L) return
+
+        metrics.addCounter("Inference constraints added", statistics.constraintsAdded)
+        metrics.addCounter("Inference incorporation steps", statistics.incorporationSteps)
+        metrics.addCounter("Inference repeated incorporation steps skipped", statistics.repeatedIncorporationStepsSkipped)
+        metrics.addCounter("Inference fixation iterations", statistics.fixationIterations)
+        for (call in statistics.getHeaviestCalls()) {
+            metrics.addCounter("Inference incorporation steps of '${call.call}'", call.incorporationSteps.toLong())
+        }
+    }
+
     fun createContainer(
         project: Project,
         files: Collection<KtFile>,
@@ -131,7 +168,16 @@ object TopDownAnalyzerFacadeForJVM {
         val module = moduleContext.module
 
         val incrementalComponents = configuration.get(JVMConfigurationKeys.INCREMENTAL_COMPILATION_COMPONENTS)
-        val lookupTracker = configuration.get(CommonConfigurationKeys.LOOKUP_TRACKER) ?: LookupTracker.DO_NOTHING
+        // Components of the containers write to the shared trace directly, so it must be thread-safe for parallel body resolution
+        val bodyResolveParallelism = if (trace is CliBindingTrace) {
+            BodyResolveParallelism.create(configuration.get(JVMConfigurationKeys.PARALLEL_BODY_RESOLUTION_THREADS, 1))
+        } else BodyResolveParallelism.SEQUENTIAL
+        if (bodyResolveParallelism.isParallel) {
+            (trace as CliBindingTrace).guardWith(storageManager)
+        }
+        val lookupTracker = (configuration.get(CommonConfigurationKeys.LOOKUP_TRACKER) ?: LookupTracker.DO_NOTHING).let { tracker ->
+            if (bodyResolveParallelism.isParallel && tracker != LookupTracker.DO_NOTHING) SynchronizedLookupTracker(tracker) else tracker
+        }
         val expectActualTracker = configuration.get(CommonConfigurationKeys.EXPECT_ACTUAL_TRACKER) ?: ExpectActualTracker.DoNothing
         val targetIds = configuration.get(JVMConfigurationKeys.MODULES)?.map(::TargetId)
 
@@ -201,7 +247,8 @@ object TopDownAnalyzerFacadeForJVM {
         val container = createContainerForTopDownAnalyzerForJvm(
             moduleContext, trace, declarationProviderFactory(storageManager, files), sourceScope, lookupTracker, expectActualTracker,
             partProvider, moduleClassResolver, jvmTarget, languageVersionSettings, configureJavaClassFinder,
-            javaClassTracker = configuration[JVMConfigurationKeys.JAVA_CLASSES_TRACKER]
+            javaClassTracker = configuration[JVMConfigurationKeys.JAVA_CLASSES_TRACKER],
+            bodyResolveParallelism = bodyResolveParallelism
         ).apply {
             initJvmBuiltInsForTopDownAnalysis()
             (partProvider as? IncrementalPackagePartProvider)?.deserializationConfiguration = get()
@@ -257,6 +304,17 @@ object TopDownAnalyzerFacadeForJVM {
         override fun toString() = "All Java sources in the project"
     }
 
+    // Lookups are recorded by all threads resolving bodies in parallel
+    private class SynchronizedLookupTracker(private val delegate: LookupTracker) : LookupTracker {
+        override val requiresPosition: Boolean
+            get() = delegate.requiresPosition
+
+        @Synchronized
+        override fun record(filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) {
+            delegate.record(filePath, position, scopeFqName, scopeKind, name)
+        }
+    }
+
     class SourceOrBinaryModuleClassResolver(private val sourceScope: GlobalSearchScope) : ModuleClassResolver {
         lateinit var compiledCodeResolver: JavaDescriptorResolver
         lateinit var sourceCodeResolver: JavaDescriptorResolver
@@ -281,7 +339,11 @@ object TopDownAnalyzerFacadeForJVM {
         configuration: CompilerConfiguration,
         createBuiltInsFromModule: Boolean
     ): MutableModuleContext {
-        val projectContext = ProjectContext(project)
+        val projectContext =
+            if (configuration.get(JVMConfigurationKeys.PARALLEL_BODY_RESOLUTION_THREADS, 1) > 1)
+                GlobalContextWithStripedLocks().withProject(project)
+            else
+                ProjectContext(project)
         val builtIns = JvmBuiltIns(projectContext.storageManager, !createBuiltInsFromModule)
         return ContextForNewModule(
             projectContext, Name.special("<${configuration.getNotNull(CommonConfigurationKeys.MODULE_NAME)}>"), builtIns, null
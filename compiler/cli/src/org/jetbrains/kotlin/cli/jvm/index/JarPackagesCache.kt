@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.index
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFile
+import gnu.trove.THashSet
+import java.io.File
+import java.lang.ref.SoftReference
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Process-wide cache of the package directories contained in classpath jars.
+ *
+ * It lets [JvmDependenciesIndexImpl] skip jars which do not contain the requested package without looking into the jar itself.
+ * This matters in the compile daemon, where the same jars are used by many compilations and the jar file system is reset between them.
+ * Entries are keyed by jar path, size and modification time, so a changed jar is indexed again.
+ * The least recently used entries are evicted when the estimated size exceeds [maxCachedBytes],
+ * and all of them can be collected under memory pressure.
+ * If [diskCache] is given, jars not yet seen by this process are first looked up there,
+ * and newly indexed jars are saved to it.
+ */
+class JarPackagesCache(
+    private val maxCachedBytes: Long = DEFAULT_MAX_CACHED_BYTES,
+    private val diskCache: JarPackagesDiskCache? = null
+) {
+    private data class JarKey(val path: String, val length: Long, val lastModified: Long)
+
+    private class JarPackages(packages: Set<String>, val estimatedBytes: Long) {
+        val packages = SoftReference(packages)
+    }
+
+    private val entries = LinkedHashMap<JarKey, JarPackages>(16, 0.75f, /* accessOrder = */ true)
+
+    private var cachedBytes = 0L
+
+    val hits = AtomicLong()
+    val misses = AtomicLong()
+    val evictions = AtomicLong()
+
+    /**
+     * Returns relative paths (separated by '/') of all directories in the jar which is the [root],
+     * or null if the root is not a jar.
+     */
+    fun getPackageDirectories(root: JavaRoot): Set<String>? {
+        if (root.type != JavaRoot.RootType.BINARY || root.prefixFqName != null) return null
+
+        val rootFile = root.file
+        if (rootFile.fileSystem.protocol != StandardFileSystems.JAR_PROTOCOL) return null
+
+        val jarFile = File(rootFile.path.substringBefore(StandardFileSystems.JAR_SEPARATOR))
+        val key = JarKey(jarFile.path, jarFile.length(), jarFile.lastModified())
+
+        synchronized(this) {
+            entries[key]?.packages?.get()?.let {
+                hits.incrementAndGet()
+                return it
+            }
+        }
+
+        misses.incrementAndGet()
+        val packages = diskCache?.read(jarFile, key.length, key.lastModified) ?: THashSet<String>().also { computed ->
+            collectDirectories(rootFile, "", computed)
+            diskCache?.write(jarFile, key.length, key.lastModified, computed)
+        }
+
+        synchronized(this) {
+            val estimatedBytes = packages.sumBy { ESTIMATED_ENTRY_OVERHEAD + 2 * it.length }.toLong()
+            entries.put(key, JarPackages(packages, estimatedBytes))?.let { cachedBytes -= it.estimatedBytes }
+            cachedBytes += estimatedBytes
+            evictEldestEntries()
+        }
+
+        return packages
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        cachedBytes = 0
+    }
+
+    // The most recently added entry is kept even if it alone exceeds the budget
+    private fun evictEldestEntries() {
+        val iterator = entries.values.iterator()
+        while (cachedBytes > maxCachedBytes && entries.size > 1) {
+            cachedBytes -= iterator.next().estimatedBytes
+            iterator.remove()
+            evictions.incrementAndGet()
+        }
+    }
+
+    private fun collectDirectories(dir: VirtualFile, relativePath: String, result: MutableSet<String>) {
+        for (child in dir.children) {
+            if (!child.isDirectory) continue
+
+            val childPath = if (relativePath.isEmpty()) child.name else relativePath + "/" + child.name
+            result.add(childPath)
+            collectDirectories(child, childPath, result)
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_MAX_CACHED_BYTES = 64L * 1024 * 1024
+        private const val ESTIMATED_ENTRY_OVERHEAD = 64
+
+        @JvmStatic
+        val shared = JarPackagesCache()
+
+        private val diskCachedInstances = ConcurrentHashMap<File, JarPackagesCache>()
+
+        @JvmStatic
+        fun sharedWithDiskCache(cacheDir: File): JarPackagesCache =
+            diskCachedInstances.getOrPut(cacheDir.absoluteFile) { JarPackagesCache(diskCache = JarPackagesDiskCache(cacheDir)) }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.index
+
+import com.intellij.openapi.diagnostic.Logger
+import java.io.*
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Stores package directories of classpath jars in sidecar files in [cacheDir], one file per jar.
+ * Each file starts with the path, size and modification time of the jar it was computed for,
+ * and is ignored (and later rewritten) if they do not match the current state of the jar.
+ */
+class JarPackagesDiskCache(private val cacheDir: File) {
+    fun read(jarFile: File, length: Long, lastModified: Long): Set<String>? {
+        val cacheFile = cacheFileFor(jarFile)
+        if (!cacheFile.exists()) return null
+
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(cacheFile))).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) return null
+                if (input.readUTF() != jarFile.path || input.readLong() != length || input.readLong() != lastModified) return null
+
+                val count = input.readInt()
+                val result = HashSet<String>(count * 4 / 3 + 1)
+                repeat(count) {
+                    result.add(input.readUTF())
+                }
+                result
+            }
+        } catch (e: IOException) {
+            LOG.debug("Could not read jar index $cacheFile", e)
+            null
+        }
+    }
+
+    fun write(jarFile: File, length: Long, lastModified: Long, packageDirectories: Set<String>) {
+        val cacheFile = cacheFileFor(jarFile)
+        try {
+            cacheDir.mkdirs()
+            // Several compiler processes may write the same file, so it is written to a temporary file and then moved
+            val tempFile = File.createTempFile(cacheFile.name, ".tmp", cacheDir)
+            try {
+                DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { output ->
+                    output.writeInt(MAGIC)
+                    output.writeInt(VERSION)
+                    output.writeUTF(jarFile.path)
+                    output.writeLong(length)
+                    output.writeLong(lastModified)
+                    output.writeInt(packageDirectories.size)
+                    for (directory in packageDirectories) {
+                        output.writeUTF(directory)
+                    }
+                }
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                tempFile.delete()
+            }
+        } catch (e: IOException) {
+            LOG.debug("Could not write jar index $cacheFile", e)
+        }
+    }
+
+    private fun cacheFileFor(jarFile: File): File =
+        File(cacheDir, jarFile.nameWithoutExtension + "-" + Integer.toHexString(jarFile.path.hashCode()) + "." + CACHE_FILE_EXTENSION)
+
+    companion object {
+        private val LOG = Logger.getInstance(JarPackagesDiskCache::class.java)
+
+        private const val CACHE_FILE_EXTENSION = "pkgidx"
+        private const val MAGIC = 0x4B504958 // "KPIX"
+        private const val VERSION = 1
+    }
+}
@@ -27,9 +27,13 @@ import org.jetbrains.kotlin.name.FqName
 import java.util.*
 
 // speeds up finding files/classes in classpath/java source roots
-// NOT THREADSAFE, needs to be adapted/removed if we want compiler to be multithreaded
 // the main idea of this class is for each package to store roots which contains it to avoid excessive file system traversal
-class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
+// all searches are serialized on the index, since its caches are filled by all threads resolving bodies in parallel
+// (see BodyResolveParallelism); handlers passed to the searches are called under the lock, so they must not wait for other threads
+class JvmDependenciesIndexImpl(
+    _roots: List<JavaRoot>,
+    private val jarPackagesCache: JarPackagesCache? = null
+) : JvmDependenciesIndex {
     //these fields are computed based on _roots passed to constructor which are filled in later
     private val roots: List<JavaRoot> by lazy { _roots.toList() }
 
@@ -68,6 +72,11 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         Array(roots.size) { THashMap<String, VirtualFile?>() }
     }
 
+    // package directories of jar roots, computed on first access to each root; null if unknown
+    private val jarPackageDirectories: Array<Set<String>?> by lazy { arrayOfNulls<Set<String>>(roots.size) }
+    private val jarPackageDirectoriesComputed: BooleanArray by lazy { BooleanArray(roots.size) }
+
+    @Synchronized
     override fun traverseDirectoriesInPackage(
         packageFqName: FqName,
         acceptedRootTypes: Set<JavaRoot.RootType>,
@@ -79,17 +88,19 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
     }
 
     // findClassGivenDirectory MUST check whether the class with this classId exists in given package
+    @Synchronized
     override fun <T : Any> findClass(
         classId: ClassId,
         acceptedRootTypes: Set<JavaRoot.RootType>,
         findClassGivenDirectory: (VirtualFile, JavaRoot.RootType) -> T?
     ): T? {
         // make a decision based on information saved from last class search
-        if (lastClassSearch?.first?.classId != classId) {
+        val lastSearch = lastClassSearch
+        if (lastSearch == null || lastSearch.first.classId != classId) {
             return search(FindClassRequest(classId, acceptedRootTypes), findClassGivenDirectory)
         }
 
-        val (cachedRequest, cachedResult) = lastClassSearch!!
+        val (cachedRequest, cachedResult) = lastSearch
         return when (cachedResult) {
             is SearchResult.NotFound -> {
                 val limitedRootTypes = acceptedRootTypes - cachedRequest.acceptedRootTypes
@@ -175,6 +186,9 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
 
         var currentFile = pathRoot.file
 
+        val knownDirectories = getJarPackageDirectories(rootIndex)
+        val relativePath = if (knownDirectories != null) StringBuilder() else null
+
         for (pathIndex in packagesPath.indices) {
             val subPackageName = packagesPath[pathIndex]
             if (prefixPathSegments != null && pathIndex < prefixPathSegments.size) {
@@ -183,6 +197,12 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
                     return null
                 }
             } else {
+                if (knownDirectories != null && relativePath != null) {
+                    if (relativePath.isNotEmpty()) relativePath.append('/')
+                    relativePath.append(subPackageName)
+                    // The jar is known not to contain this directory, no need to look into it
+                    if (relativePath.toString() !in knownDirectories) return null
+                }
                 currentFile = currentFile.findChildPackage(subPackageName, pathRoot.type) ?: return null
             }
 
@@ -196,6 +216,16 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         return currentFile
     }
 
+    private fun getJarPackageDirectories(rootIndex: Int): Set<String>? {
+        if (jarPackagesCache == null) return null
+
+        if (!jarPackageDirectoriesComputed[rootIndex]) {
+            jarPackageDirectories[rootIndex] = jarPackagesCache.getPackageDirectories(roots[rootIndex])
+            jarPackageDirectoriesComputed[rootIndex] = true
+        }
+        return jarPackageDirectories[rootIndex]
+    }
+
     private fun VirtualFile.findChildPackage(subPackageName: String, rootType: JavaRoot.RootType): VirtualFile? {
         val childDirectory = findChild(subPackageName) ?: return null
 
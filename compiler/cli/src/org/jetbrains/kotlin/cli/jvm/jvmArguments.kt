@@ -199,4 +199,29 @@ fun CompilerConfiguration.configureAdvancedJvmOptions(arguments: K2JVMCompilerAr
     put(JVMConfigurationKeys.CREATE_BUILT_INS_FROM_MODULE_DEPENDENCIES, arguments.loadBuiltInsFromDependencies)
 
     arguments.declarationsOutputPath?.let { put(JVMConfigurationKeys.DECLARATIONS_JSON_PATH, it) }
+    arguments.jarIndexCacheDir?.let { put(JVMConfigurationKeys.JAR_INDEX_CACHE_DIR, File(it)) }
+
+    arguments.parallelBackendThreads?.let { value ->
+        val threads = value.toIntOrNull()
+        if (threads == null || threads < 1) {
+            getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
+                ERROR, "Invalid number of parallel backend threads: $value, a positive integer is expected"
+            )
+        } else {
+            put(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, threads)
+        }
+    }
+
+    arguments.parallelBodyResolutionThreads?.let { value ->
+        val threads = value.toIntOrNull()
+        if (threads == null || threads < 1) {
+            getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
+                ERROR, "Invalid number of parallel body resolution threads: $value, a positive integer is expected"
+            )
+        } else {
+            put(JVMConfigurationKeys.PARALLEL_BODY_RESOLUTION_THREADS, threads)
+        }
+    }
+    put(JVMConfigurationKeys.STREAM_OUTPUT, arguments.streamOutput)
+    put(JVMConfigurationKeys.DROP_ANALYSIS_ONLY_SLICES, arguments.dropAnalysisOnlySlices)
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import org.jetbrains.kotlin.daemon.common.COMPILE_DAEMON_PARALLEL_COMPILATIONS_UNLIMITED
+import java.util.concurrent.Semaphore
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Bounds the number of compilations running in the daemon at the same time.
+ *
+ * Compilations requested while all slots are busy wait for a free slot in FIFO order,
+ * so parallel builds can share a single daemon instead of starting several of them.
+ */
+class CompilationsLimiter(maxParallelCompilations: Int) {
+    private val slots: Semaphore? =
+        if (maxParallelCompilations == COMPILE_DAEMON_PARALLEL_COMPILATIONS_UNLIMITED) null
+        else Semaphore(maxParallelCompilations.coerceAtLeast(1), /* fair = */ true)
+
+    private val running = AtomicInteger(0)
+
+    val waitingCount: Int
+        get() = slots?.queueLength ?: 0
+
+    val runningCount: Int
+        get() = running.get()
+
+    /**
+     * Runs [body] in a free slot, waiting for one if needed. [body] gets the time spent waiting, in nanoseconds.
+     */
+    fun <R> withSlot(body: (waitNanos: Long) -> R): R {
+        val waitStart = System.nanoTime()
+        slots?.acquire()
+        val waitNanos = System.nanoTime() - waitStart
+
+        running.incrementAndGet()
+        try {
+            return body(waitNanos)
+        } finally {
+            running.decrementAndGet()
+            slots?.release()
+        }
+    }
+}
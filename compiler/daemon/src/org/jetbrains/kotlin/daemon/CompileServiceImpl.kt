@@ -38,7 +38,9 @@ import org.jetbrains.kotlin.cli.common.repl.ReplEvalResult
 import org.jetbrains.kotlin.cli.js.K2JSCompiler
 import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
 import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.jvm.index.JarPackagesCache
 import org.jetbrains.kotlin.cli.metadata.K2MetadataCompiler
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
 import org.jetbrains.kotlin.config.Services
 import org.jetbrains.kotlin.daemon.common.*
 import org.jetbrains.kotlin.daemon.report.*
@@ -54,6 +56,7 @@ import org.jetbrains.kotlin.incremental.parsing.classesFqNames
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
 import org.jetbrains.kotlin.modules.Module
 import org.jetbrains.kotlin.progress.CompilationCanceledStatus
+import org.jetbrains.kotlin.util.CompilerMetrics
 import java.io.BufferedOutputStream
 import java.io.ByteArrayOutputStream
 import java.io.File
@@ -132,6 +135,8 @@ class CompileServiceImpl(
 
     private val compilationsCounter = AtomicInteger(0)
 
+    private val compilationsLimiter = CompilationsLimiter(daemonOptions.maxParallelCompilations)
+
     private val classpathWatcher = LazyClasspathWatcher(compilerId.compilerClasspath)
 
     enum class Aliveness {
@@ -429,14 +434,21 @@ class CompileServiceImpl(
 
                     withIC(enabled = servicesFacade.hasIncrementalCaches()) {
                         doCompile(sessionId, daemonReporter, tracer = null) { eventManger, profiler ->
-                            val services = createCompileServices(jpsServicesFacade, eventManger, profiler)
-                            compiler.exec(messageCollector, services, k2PlatformArgs)
+                            val metrics = createMetricsIfReportingPerf()
+                            val services = createCompileServices(jpsServicesFacade, eventManger, profiler, metrics)
+                            withMetricsReport(metrics, daemonReporter) {
+                                compiler.exec(messageCollector, services, k2PlatformArgs)
+                            }
                         }
                     }
                 }
                 CompilerMode.NON_INCREMENTAL_COMPILER -> {
                     doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
-                        compiler.exec(messageCollector, Services.EMPTY, k2PlatformArgs)
+                        val metrics = createMetricsIfReportingPerf()
+                        val services = metrics?.let { Services.Builder().register(CompilerMetrics::class.java, it).build() } ?: Services.EMPTY
+                        withMetricsReport(metrics, daemonReporter) {
+                            compiler.exec(messageCollector, services, k2PlatformArgs)
+                        }
                     }
                 }
                 CompilerMode.INCREMENTAL_COMPILER -> {
@@ -466,7 +478,8 @@ class CompileServiceImpl(
                                         gradleIncrementalArgs,
                                         gradleIncrementalServicesFacade,
                                         compilationResults!!,
-                                        messageCollector
+                                        messageCollector,
+                                        daemonReporter
                                     )
                                 }
                             }
@@ -485,7 +498,8 @@ class CompileServiceImpl(
         incrementalCompilationOptions: IncrementalCompilationOptions,
         servicesFacade: IncrementalCompilerServicesFacade,
         compilationResults: CompilationResults,
-        compilerMessageCollector: MessageCollector
+        compilerMessageCollector: MessageCollector,
+        daemonMessageReporter: DaemonMessageReporter
     ): ExitCode {
         val allKotlinFiles = arrayListOf<File>()
         val freeArgsWithoutKotlinFiles = arrayListOf<String>()
@@ -515,8 +529,11 @@ class CompileServiceImpl(
             buildHistoryFile = incrementalCompilationOptions.multiModuleICSettings.buildHistoryFile,
             modulesApiHistory = modulesApiHistory
         )
+        compiler.metrics = createMetricsIfReportingPerf()
         return try {
-            compiler.compile(allKotlinFiles, args, compilerMessageCollector, changedFiles)
+            withMetricsReport(compiler.metrics, daemonMessageReporter) {
+                compiler.compile(allKotlinFiles, args, compilerMessageCollector, changedFiles)
+            }
         } finally {
             reporter.flush()
         }
@@ -590,8 +607,11 @@ class CompileServiceImpl(
             modulesApiHistory = modulesApiHistory,
             kotlinSourceFilesExtensions = allKotlinExtensions
         )
+        compiler.metrics = createMetricsIfReportingPerf()
         return try {
-            compiler.compile(allKotlinFiles, k2jvmArgs, compilerMessageCollector, changedFiles)
+            withMetricsReport(compiler.metrics, daemonMessageReporter) {
+                compiler.compile(allKotlinFiles, k2jvmArgs, compilerMessageCollector, changedFiles)
+            }
         } finally {
             reporter.flush()
         }
@@ -969,37 +989,41 @@ class CompileServiceImpl(
         operationsTracer: RemoteOperationsTracer?,
         body: (PrintStream, EventManager, Profiler) -> ExitCode
     ): CompileService.CallResult<Int> =
-        ifAlive {
-            withValidClientOrSessionProxy(sessionId) {
-                operationsTracer?.before("compile")
-                val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
-                val eventManger = EventManagerImpl()
-                val compilerMessagesStream = PrintStream(
-                    BufferedOutputStream(
-                        RemoteOutputStreamClient(compilerMessagesStreamProxy, rpcProfiler),
-                        REMOTE_STREAM_BUFFER_SIZE
+        // The slot is taken before the daemon lock, so that waiting compilations don't block shutdown
+        withCompilationSlot { waitNanos ->
+            ifAlive {
+                withValidClientOrSessionProxy(sessionId) {
+                    operationsTracer?.before("compile")
+                    val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
+                    val eventManger = EventManagerImpl()
+                    val compilerMessagesStream = PrintStream(
+                        BufferedOutputStream(
+                            RemoteOutputStreamClient(compilerMessagesStreamProxy, rpcProfiler),
+                            REMOTE_STREAM_BUFFER_SIZE
+                        )
                     )
-                )
-                val serviceOutputStream = PrintStream(
-                    BufferedOutputStream(
-                        RemoteOutputStreamClient(serviceOutputStreamProxy, rpcProfiler),
-                        REMOTE_STREAM_BUFFER_SIZE
+                    val serviceOutputStream = PrintStream(
+                        BufferedOutputStream(
+                            RemoteOutputStreamClient(serviceOutputStreamProxy, rpcProfiler),
+                            REMOTE_STREAM_BUFFER_SIZE
+                        )
                     )
-                )
-                try {
-                    val compileServiceReporter = DaemonMessageReporterPrintStreamAdapter(serviceOutputStream)
-                    if (args.none())
-                        throw IllegalArgumentException("Error: empty arguments list.")
-                    log.info("Starting compilation with args: " + args.joinToString(" "))
-                    val exitCode = checkedCompile(compileServiceReporter, rpcProfiler) {
-                        body(compilerMessagesStream, eventManger, rpcProfiler).code
+                    try {
+                        val compileServiceReporter = DaemonMessageReporterPrintStreamAdapter(serviceOutputStream)
+                        if (args.none())
+                            throw IllegalArgumentException("Error: empty arguments list.")
+                        log.info("Starting compilation with args: " + args.joinToString(" "))
+                        reportSlotWait(sessionId, waitNanos, compileServiceReporter)
+                        val exitCode = checkedCompile(compileServiceReporter, rpcProfiler) {
+                            body(compilerMessagesStream, eventManger, rpcProfiler).code
+                        }
+                        CompileService.CallResult.Good(exitCode)
+                    } finally {
+                        serviceOutputStream.flush()
+                        compilerMessagesStream.flush()
+                        eventManger.fireCompilationFinished()
+                        operationsTracer?.after("compile")
                     }
-                    CompileService.CallResult.Good(exitCode)
-                } finally {
-                    serviceOutputStream.flush()
-                    compilerMessagesStream.flush()
-                    eventManger.fireCompilationFinished()
-                    operationsTracer?.after("compile")
                 }
             }
         }
@@ -1010,25 +1034,88 @@ class CompileServiceImpl(
         tracer: RemoteOperationsTracer?,
         body: (EventManager, Profiler) -> ExitCode
     ): CompileService.CallResult<Int> =
-        ifAlive {
-            withValidClientOrSessionProxy(sessionId) {
-                tracer?.before("compile")
-                val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
-                val eventManger = EventManagerImpl()
-                try {
-                    val exitCode = checkedCompile(daemonMessageReporter, rpcProfiler) {
-                        body(eventManger, rpcProfiler).code
+        // The slot is taken before the daemon lock, so that waiting compilations don't block shutdown
+        withCompilationSlot { waitNanos ->
+            ifAlive {
+                withValidClientOrSessionProxy(sessionId) {
+                    tracer?.before("compile")
+                    val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
+                    val eventManger = EventManagerImpl()
+                    try {
+                        reportSlotWait(sessionId, waitNanos, daemonMessageReporter)
+                        val exitCode = checkedCompile(daemonMessageReporter, rpcProfiler) {
+                            body(eventManger, rpcProfiler).code
+                        }
+                        CompileService.CallResult.Good(exitCode)
+                    } finally {
+                        eventManger.fireCompilationFinished()
+                        tracer?.after("compile")
                     }
-                    CompileService.CallResult.Good(exitCode)
-                } finally {
-                    eventManger.fireCompilationFinished()
-                    tracer?.after("compile")
                 }
             }
         }
 
-    private fun createCompileServices(facade: CompilerCallbackServicesFacade, eventManager: EventManager, rpcProfiler: Profiler): Services {
+    private fun <R> withCompilationSlot(body: (waitNanos: Long) -> R): R =
+        try {
+            compilationsLimiter.withSlot(body)
+        } finally {
+            logSharedCachesStatistics()
+        }
+
+    private fun reportSlotWait(sessionId: Int, waitNanos: Long, daemonMessageReporter: DaemonMessageReporter) {
+        if (!daemonOptions.reportPerf) return
+
+        val message = "PERF: Compilation slot for session $sessionId: waited ${TimeUnit.NANOSECONDS.toMillis(waitNanos)} ms; " +
+                "running: ${compilationsLimiter.runningCount}, waiting: ${compilationsLimiter.waitingCount}"
+        daemonMessageReporter.report(ReportSeverity.INFO, message)
+        log.info(message)
+    }
+
+    private fun logSharedCachesStatistics() {
+        if (!log.isLoggable(Level.FINE)) return
+
+        with(JarPackagesCache.shared) {
+            log.fine("Jar packages cache: ${hits.get()} hits, ${misses.get()} misses, ${evictions.get()} evictions")
+        }
+        with(SharedInlineCache.shared) {
+            log.fine("Inline functions cache: ${hits.get()} hits, ${misses.get()} misses, ${evictions.get()} evictions")
+        }
+    }
+
+    private fun createMetricsIfReportingPerf(): CompilerMetrics? =
+        if (daemonOptions.reportPerf) CompilerMetrics() else null
+
+    private fun <R> withMetricsReport(metrics: CompilerMetrics?, daemonMessageReporter: DaemonMessageReporter, body: () -> R): R {
+        val listener = DaemonCompilerMetricsListener(daemonMessageReporter)
+        metrics?.addListener(listener)
+        try {
+            return body()
+        } finally {
+            if (metrics != null) {
+                metrics.removeListener(listener)
+                fun Long.ms() = TimeUnit.NANOSECONDS.toMillis(this)
+                val lines = metrics.getPhases().map { phase ->
+                    "PERF: Phase ${phase.phase} (${phase.runs} runs): ${phase.wallNanos.ms()} ms, CPU ${phase.cpuNanos.ms()} ms, " +
+                            "GC ${phase.gcMillis} ms, allocated ${phase.allocatedBytes / 1024} kb"
+                } + metrics.getCounters().map { (name, value) -> "PERF: Counter $name: $value" }
+                for (line in lines) {
+                    daemonMessageReporter.report(ReportSeverity.INFO, line)
+                    log.info(line)
+                }
+            }
+        }
+    }
+
+    private fun createCompileServices(
+        facade: CompilerCallbackServicesFacade,
+        eventManager: EventManager,
+        rpcProfiler: Profiler,
+        metrics: CompilerMetrics? = null
+    ): Services {
         val builder = Services.Builder()
+        if (metrics != null) {
+            builder.register(CompilerMetrics::class.java, metrics)
+        }
         if (facade.hasIncrementalCaches()) {
             builder.register(
                 IncrementalCompilationComponents::class.java,
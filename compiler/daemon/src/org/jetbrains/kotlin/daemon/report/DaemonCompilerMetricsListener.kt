@@ -0,0 +1,24 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon.report
+
+import org.jetbrains.kotlin.daemon.common.ReportSeverity
+import org.jetbrains.kotlin.util.CompilerMetricsListener
+import org.jetbrains.kotlin.util.PhaseMeasurement
+import java.util.concurrent.TimeUnit
+
+/**
+ * Forwards every finished run of a compiler phase to the client while the compilation is running.
+ * Runs are reported at the debug level, since a phase may run once per file; the totals are reported when the compilation is done.
+ */
+internal class DaemonCompilerMetricsListener(private val reporter: DaemonMessageReporter) : CompilerMetricsListener {
+    override fun phaseFinished(measurement: PhaseMeasurement) {
+        reporter.report(
+            ReportSeverity.DEBUG,
+            "PERF: Finished phase ${measurement.phase}: ${TimeUnit.NANOSECONDS.toMillis(measurement.wallNanos)} ms"
+        )
+    }
+}
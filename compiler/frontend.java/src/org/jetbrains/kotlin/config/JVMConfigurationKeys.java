@@ -124,6 +124,21 @@ public class JVMConfigurationKeys {
     public static final CompilerConfigurationKey<Boolean> USE_FAST_CLASS_FILES_READING =
             CompilerConfigurationKey.create("use fast class files reading implementation [experimental]");
 
+    public static final CompilerConfigurationKey<File> JAR_INDEX_CACHE_DIR =
+            CompilerConfigurationKey.create("directory for cached package indices of classpath jars");
+
+    public static final CompilerConfigurationKey<Integer> PARALLEL_BACKEND_THREADS =
+            CompilerConfigurationKey.create("number of threads for bytecode post-processing [experimental]");
+
+    public static final CompilerConfigurationKey<Integer> PARALLEL_BODY_RESOLUTION_THREADS =
+            CompilerConfigurationKey.create("number of threads for resolution of declaration bodies [experimental]");
+
+    public static final CompilerConfigurationKey<Boolean> STREAM_OUTPUT =
+            CompilerConfigurationKey.create("write generated files to the output while compiling [experimental]");
+
+    public static final CompilerConfigurationKey<Boolean> DROP_ANALYSIS_ONLY_SLICES =
+            CompilerConfigurationKey.create("drop binding context slices not needed by code generation after analysis [experimental]");
+
     public static final CompilerConfigurationKey<Boolean> USE_JAVAC =
             CompilerConfigurationKey.create("use javac [experimental]");
 
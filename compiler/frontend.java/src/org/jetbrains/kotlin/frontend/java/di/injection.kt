@@ -90,7 +90,8 @@ fun createContainerForLazyResolveWithJava(
         languageVersionSettings: LanguageVersionSettings,
         useBuiltInsProvider: Boolean,
         configureJavaClassFinder: (StorageComponentContainer.() -> Unit)? = null,
-        javaClassTracker: JavaClassesTracker? = null
+        javaClassTracker: JavaClassesTracker? = null,
+        bodyResolveParallelism: BodyResolveParallelism? = null
 ): StorageComponentContainer = createContainer("LazyResolveWithJava", JvmPlatform) {
     configureModule(moduleContext, JvmPlatform, jvmTarget, bindingTrace)
     configureJavaTopDownAnalysis(moduleContentScope, moduleContext.project, lookupTracker, expectActualTracker)
@@ -118,6 +119,7 @@ fun createContainerForLazyResolveWithJava(
     }
 
     useInstance(javaClassTracker ?: JavaClassesTracker.Default)
+    useInstance(bodyResolveParallelism ?: BodyResolveParallelism.SEQUENTIAL)
     useInstance(
         JavaResolverSettings.create(isReleaseCoroutines = languageVersionSettings.supportsFeature(LanguageFeature.ReleaseCoroutines))
     )
@@ -143,13 +145,15 @@ fun createContainerForTopDownAnalyzerForJvm(
         jvmTarget: JvmTarget,
         languageVersionSettings: LanguageVersionSettings,
         configureJavaClassFinder: (StorageComponentContainer.() -> Unit)? = null,
-        javaClassTracker: JavaClassesTracker? = null
+        javaClassTracker: JavaClassesTracker? = null,
+        bodyResolveParallelism: BodyResolveParallelism? = null
 ): ComponentProvider = createContainerForLazyResolveWithJava(
         moduleContext, bindingTrace, declarationProviderFactory, moduleContentScope, moduleClassResolver,
         CompilerEnvironment, lookupTracker, expectActualTracker, packagePartProvider, jvmTarget, languageVersionSettings,
         useBuiltInsProvider = true,
         configureJavaClassFinder = configureJavaClassFinder,
-        javaClassTracker = javaClassTracker
+        javaClassTracker = javaClassTracker,
+        bodyResolveParallelism = bodyResolveParallelism
 )
 
 
@@ -16,7 +16,6 @@
 
 package org.jetbrains.kotlin.cfg.pseudocodeTraverser
 
-import org.jetbrains.kotlin.cfg.ControlFlowInfo
 import org.jetbrains.kotlin.cfg.pseudocode.Pseudocode
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.Instruction
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.special.InlinedLocalFunctionDeclarationInstruction
@@ -54,7 +53,7 @@ fun <D> Pseudocode.traverse(
     }
 }
 
-fun <I : ControlFlowInfo<*, *, *>> Pseudocode.collectData(
+fun <I : Any> Pseudocode.collectData(
     traversalOrder: TraversalOrder,
     mergeEdges: (Instruction, Collection<I>) -> Edges<I>,
     updateEdge: (Instruction, Instruction, I) -> I,
@@ -75,7 +74,7 @@ fun <I : ControlFlowInfo<*, *, *>> Pseudocode.collectData(
     return edgesMap
 }
 
-private fun <I : ControlFlowInfo<*, *, *>> Pseudocode.collectDataFromSubgraph(
+private fun <I : Any> Pseudocode.collectDataFromSubgraph(
     traversalOrder: TraversalOrder,
     edgesMap: MutableMap<Instruction, Edges<I>>,
     mergeEdges: (Instruction, Collection<I>) -> Edges<I>,
@@ -148,7 +147,7 @@ private fun getPreviousIncludingSubGraphInstructions(
     return result
 }
 
-private fun <I : ControlFlowInfo<*, *, *>> updateEdgeDataForInstruction(
+private fun <I : Any> updateEdgeDataForInstruction(
     instruction: Instruction,
     previousValue: Edges<I>?,
     newValue: Edges<I>?,
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cfg.variable
+
+import org.jetbrains.kotlin.cfg.pseudocode.Pseudocode
+import org.jetbrains.kotlin.cfg.pseudocode.PseudocodeUtil
+import org.jetbrains.kotlin.cfg.pseudocode.instructions.Instruction
+import org.jetbrains.kotlin.cfg.pseudocode.instructions.eval.MagicInstruction
+import org.jetbrains.kotlin.cfg.pseudocode.instructions.eval.MagicKind
+import org.jetbrains.kotlin.cfg.pseudocode.instructions.eval.ReadValueInstruction
+import org.jetbrains.kotlin.cfg.pseudocode.instructions.eval.WriteValueInstruction
+import org.jetbrains.kotlin.cfg.pseudocode.instructions.special.VariableDeclarationInstruction
+import org.jetbrains.kotlin.cfg.pseudocodeTraverser.Edges
+import org.jetbrains.kotlin.cfg.pseudocodeTraverser.TraversalOrder
+import org.jetbrains.kotlin.cfg.pseudocodeTraverser.collectData
+import org.jetbrains.kotlin.descriptors.VariableDescriptor
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.resolve.BindingContext
+import org.jetbrains.kotlin.util.javaslang.ImmutableHashMap
+import org.jetbrains.kotlin.util.javaslang.ImmutableMap
+import java.util.*
+
+private const val BITS_PER_VARIABLE = 4
+private const val VARIABLES_PER_WORD = 64 / BITS_PER_VARIABLE
+private const val CODE_MASK = (1L shl BITS_PER_VARIABLE) - 1
+
+private val INIT_STATES = InitState.values()
+private val USE_STATES = VariableUseState.values()
+
+/**
+ * Dense numbering of the variables of a pseudocode, so that their states can be stored in arrays instead of maps.
+ */
+internal class VariableIndex(variables: Collection<VariableDescriptor>, blockScopeVariableInfo: BlockScopeVariableInfo) {
+    val variables: List<VariableDescriptor> = ArrayList(variables)
+    private val indices = HashMap<VariableDescriptor, Int>(variables.size * 2)
+
+    // Depth of the block scope each variable is declared in, '-1' for variables declared outside this pseudocode
+    val depths = IntArray(variables.size)
+
+    val wordCount = (variables.size + VARIABLES_PER_WORD - 1) / VARIABLES_PER_WORD
+
+    init {
+        for ((i, variable) in this.variables.withIndex()) {
+            indices[variable] = i
+            depths[i] = blockScopeVariableInfo.declaredIn[variable]?.depth ?: -1
+        }
+    }
+
+    fun indexOf(variable: VariableDescriptor): Int = indices[variable] ?: -1
+}
+
+/**
+ * Immutable states of all variables of [index], packed into [BITS_PER_VARIABLE]-bit codes. Code 0 means there's no state.
+ * Unlike the persistent maps of [org.jetbrains.kotlin.cfg.ControlFlowInfo], updates of one variable copy the whole array,
+ * but most instructions don't change anything and share the state of the previous one, while merges and scope filtering
+ * process a word of sixteen variables at once.
+ */
+internal abstract class PackedVariableStates<S : PackedVariableStates<S>>(val index: VariableIndex, val words: LongArray) {
+    protected abstract fun copy(newWords: LongArray): S
+
+    fun code(i: Int): Int =
+        ((words[i / VARIABLES_PER_WORD] ushr (i % VARIABLES_PER_WORD * BITS_PER_VARIABLE)) and CODE_MASK).toInt()
+
+    fun withCode(i: Int, code: Int): S {
+        @Suppress("UNCHECKED_CAST")
+        if (code(i) == code) return this as S
+
+        val newWords = words.copyOf()
+        val shift = i % VARIABLES_PER_WORD * BITS_PER_VARIABLE
+        val wordIndex = i / VARIABLES_PER_WORD
+        newWords[wordIndex] = (newWords[wordIndex] and (CODE_MASK shl shift).inv()) or (code.toLong() shl shift)
+        return copy(newWords)
+    }
+
+    fun retain(mask: LongArray): S {
+        var newWords: LongArray? = null
+        for (wordIndex in words.indices) {
+            val word = words[wordIndex] and mask[wordIndex]
+            if (word != words[wordIndex]) {
+                if (newWords == null) newWords = words.copyOf()
+                newWords[wordIndex] = word
+            }
+        }
+        @Suppress("UNCHECKED_CAST")
+        return if (newWords == null) this as S else copy(newWords)
+    }
+
+    inline fun forEachPresent(action: (Int, Int) -> Unit) {
+        for (wordIndex in words.indices) {
+            val word = words[wordIndex]
+            if (word == 0L) continue
+            for (slot in 0 until VARIABLES_PER_WORD) {
+                val code = ((word ushr (slot * BITS_PER_VARIABLE)) and CODE_MASK).toInt()
+                if (code != 0) {
+                    action(wordIndex * VARIABLES_PER_WORD + slot, code)
+                }
+            }
+        }
+    }
+
+    protected fun <D : Any> toMap(decode: (Int) -> D): ImmutableMap<VariableDescriptor, D> {
+        var result = ImmutableHashMap.empty<VariableDescriptor, D>()
+        forEachPresent { i, code -> result = result.put(index.variables[i], decode(code)) }
+        return result
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (javaClass != other?.javaClass) return false
+
+        other as PackedVariableStates<*>
+        return index === other.index && Arrays.equals(words, other.words)
+    }
+
+    override fun hashCode(): Int = Arrays.hashCode(words)
+}
+
+internal class PackedVariableInitInfo(index: VariableIndex, words: LongArray) :
+    PackedVariableStates<PackedVariableInitInfo>(index, words), VariableInitReadOnlyControlFlowInfo {
+
+    override fun copy(newWords: LongArray) = PackedVariableInitInfo(index, newWords)
+
+    fun getState(i: Int): VariableControlFlowState? = decode(code(i))
+
+    fun put(i: Int, state: VariableControlFlowState): PackedVariableInitInfo = withCode(i, encode(state))
+
+    override fun getOrNull(key: VariableDescriptor): VariableControlFlowState? {
+        val i = index.indexOf(key)
+        return if (i >= 0) getState(i) else null
+    }
+
+    override fun checkDefiniteInitializationInWhen(merge: VariableInitReadOnlyControlFlowInfo): Boolean {
+        forEachPresent { i, code ->
+            if (decode(code)!!.initState == InitState.INITIALIZED_EXHAUSTIVELY &&
+                merge.getOrNull(index.variables[i])?.initState == InitState.INITIALIZED
+            ) {
+                return true
+            }
+        }
+        return false
+    }
+
+    override fun asMap() = toMap { decode(it)!! }
+
+    override fun toString() = asMap().toString()
+
+    companion object {
+        fun encode(state: VariableControlFlowState): Int = 1 + state.initState.ordinal * 2 + (if (state.isDeclared) 1 else 0)
+
+        fun decode(code: Int): VariableControlFlowState? =
+            if (code == 0) null else VariableControlFlowState.create(INIT_STATES[(code - 1) / 2], (code - 1) % 2 == 1)
+    }
+}
+
+internal class PackedVariableUseInfo(index: VariableIndex, words: LongArray) :
+    PackedVariableStates<PackedVariableUseInfo>(index, words), VariableUsageReadOnlyControlInfo {
+
+    override fun copy(newWords: LongArray) = PackedVariableUseInfo(index, newWords)
+
+    fun getState(i: Int): VariableUseState? = decode(code(i))
+
+    fun put(i: Int, state: VariableUseState): PackedVariableUseInfo = withCode(i, encode(state))
+
+    override fun getOrNull(key: VariableDescriptor): VariableUseState? {
+        val i = index.indexOf(key)
+        return if (i >= 0) getState(i) else null
+    }
+
+    override fun asMap() = toMap { decode(it)!! }
+
+    override fun toString() = asMap().toString()
+
+    companion object {
+        fun encode(state: VariableUseState): Int = 1 + state.ordinal
+
+        fun decode(code: Int): VariableUseState? = if (code == 0) null else USE_STATES[code - 1]
+    }
+}
+
+/**
+ * Computes the same initialization and usage data of non-trivial variables as [PseudocodeVariablesData] does with maps,
+ * but with [PackedVariableStates]. This makes a difference for long functions with many variables.
+ */
+internal class PackedVariablesAnalysis(
+    private val pseudocode: Pseudocode,
+    private val bindingContext: BindingContext,
+    variables: Collection<VariableDescriptor>,
+    private val blockScopeVariableInfo: BlockScopeVariableInfo
+) {
+    private val index = VariableIndex(variables, blockScopeVariableInfo)
+    private val emptyInitInfo = PackedVariableInitInfo(index, LongArray(index.wordCount))
+    private val emptyUseInfo = PackedVariableUseInfo(index, LongArray(index.wordCount))
+
+    // Depth of the scope an edge leads to -> mask of the variables visible there
+    private val scopeMasks = HashMap<Int, LongArray>()
+
+    fun computeVariableInitializers(): Map<Instruction, Edges<PackedVariableInitInfo>> =
+        pseudocode.collectData(
+            TraversalOrder.FORWARD,
+            { instruction, incomingEdgesData ->
+                val enterInstructionData = mergeIncomingEdgesDataForInitializers(instruction, incomingEdgesData)
+                Edges(enterInstructionData, addVariableInitStateFromCurrentInstructionIfAny(instruction, enterInstructionData))
+            },
+            { from, to, info -> filterOutVariablesOutOfScope(from, to, info) },
+            emptyInitInfo
+        )
+
+    fun computeVariableUseStatusData(): Map<Instruction, Edges<PackedVariableUseInfo>> =
+        pseudocode.collectData(
+            TraversalOrder.BACKWARD,
+            { instruction, incomingEdgesData ->
+                val enterResult = mergeIncomingEdgesDataForUsage(incomingEdgesData)
+                Edges(enterResult, addVariableUseStateFromCurrentInstructionIfAny(instruction, enterResult))
+            },
+            { from, to, info -> filterOutVariablesOutOfScope(from, to, info) },
+            emptyUseInfo
+        )
+
+    private fun <S : PackedVariableStates<S>> filterOutVariablesOutOfScope(from: Instruction, to: Instruction, info: S): S {
+        // See PseudocodeVariableDataCollector.filterOutVariablesOutOfScope
+        val toDepth = to.blockScope.depth
+        if (toDepth >= from.blockScope.depth) return info
+
+        return info.retain(scopeMasks.getOrPut(toDepth) { computeScopeMask(toDepth) })
+    }
+
+    private fun computeScopeMask(depth: Int): LongArray {
+        val mask = LongArray(index.wordCount)
+        for (i in index.depths.indices) {
+            if (index.depths[i] <= depth) {
+                mask[i / VARIABLES_PER_WORD] = mask[i / VARIABLES_PER_WORD] or (CODE_MASK shl (i % VARIABLES_PER_WORD * BITS_PER_VARIABLE))
+            }
+        }
+        return mask
+    }
+
+    private fun mergeIncomingEdgesDataForInitializers(
+        instruction: Instruction,
+        incomingEdgesData: Collection<PackedVariableInitInfo>
+    ): PackedVariableInitInfo {
+        if (incomingEdgesData.size == 1) return incomingEdgesData.single()
+        if (incomingEdgesData.isEmpty()) return emptyInitInfo
+
+        val newWords = LongArray(index.wordCount)
+        for (wordIndex in newWords.indices) {
+            // A code is non-zero in the union iff it's non-zero in at least one of the edges
+            val present = incomingEdgesData.fold(0L) { result, edgeData -> result or edgeData.words[wordIndex] }
+            if (present == 0L) continue
+
+            var word = 0L
+            for (slot in 0 until VARIABLES_PER_WORD) {
+                val shift = slot * BITS_PER_VARIABLE
+                if (((present ushr shift) and CODE_MASK) == 0L) continue
+
+                val i = wordIndex * VARIABLES_PER_WORD + slot
+                var initState: InitState? = null
+                var isDeclared = true
+                for (edgeData in incomingEdgesData) {
+                    val varControlFlowState = edgeData.getState(i)
+                        ?: PseudocodeVariablesData.getDefaultValueForInitializers(index.variables[i], instruction, blockScopeVariableInfo)
+                    initState = initState?.merge(varControlFlowState.initState) ?: varControlFlowState.initState
+                    if (!varControlFlowState.isDeclared) {
+                        isDeclared = false
+                    }
+                }
+                val state = VariableControlFlowState.create(initState!!, isDeclared)
+                word = word or (PackedVariableInitInfo.encode(state).toLong() shl shift)
+            }
+            newWords[wordIndex] = word
+        }
+        return PackedVariableInitInfo(index, newWords)
+    }
+
+    private fun addVariableInitStateFromCurrentInstructionIfAny(
+        instruction: Instruction,
+        enterInstructionData: PackedVariableInitInfo
+    ): PackedVariableInitInfo {
+        if (instruction is MagicInstruction) {
+            if (instruction.kind === MagicKind.EXHAUSTIVE_WHEN_ELSE) {
+                var result = enterInstructionData
+                enterInstructionData.forEachPresent { i, code ->
+                    val value = PackedVariableInitInfo.decode(code)!!
+                    if (!value.definitelyInitialized()) {
+                        result = result.put(i, VariableControlFlowState.createInitializedExhaustively(value.isDeclared))
+                    }
+                }
+                return result
+            }
+        }
+        if (instruction !is WriteValueInstruction && instruction !is VariableDeclarationInstruction) {
+            return enterInstructionData
+        }
+        val variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, bindingContext) ?: return enterInstructionData
+        val i = index.indexOf(variable)
+        if (i < 0) return enterInstructionData
+
+        if (instruction is WriteValueInstruction) {
+            // if writing to already initialized object
+            if (!PseudocodeUtil.isThisOrNoDispatchReceiver(instruction, bindingContext)) {
+                return enterInstructionData
+            }
+
+            val enterInitState = enterInstructionData.getState(i)
+            return enterInstructionData.put(i, VariableControlFlowState.create(instruction.element is KtProperty, enterInitState))
+        }
+
+        // instruction instanceof VariableDeclarationInstruction
+        val enterInitState = enterInstructionData.getState(i)
+            ?: PseudocodeVariablesData.getDefaultValueForInitializers(variable, instruction, blockScopeVariableInfo)
+        if (!enterInitState.mayBeInitialized() || !enterInitState.isDeclared) {
+            return enterInstructionData.put(i, VariableControlFlowState.create(enterInitState.initState, isDeclared = true))
+        }
+        return enterInstructionData
+    }
+
+    private fun mergeIncomingEdgesDataForUsage(incomingEdgesData: Collection<PackedVariableUseInfo>): PackedVariableUseInfo {
+        if (incomingEdgesData.size == 1) return incomingEdgesData.single()
+        if (incomingEdgesData.isEmpty()) return emptyUseInfo
+
+        val newWords = LongArray(index.wordCount)
+        for (wordIndex in newWords.indices) {
+            val present = incomingEdgesData.fold(0L) { result, edgeData -> result or edgeData.words[wordIndex] }
+            if (present == 0L) continue
+
+            var word = 0L
+            for (slot in 0 until VARIABLES_PER_WORD) {
+                val shift = slot * BITS_PER_VARIABLE
+                if (((present ushr shift) and CODE_MASK) == 0L) continue
+
+                val i = wordIndex * VARIABLES_PER_WORD + slot
+                var result: VariableUseState? = null
+                for (edgeData in incomingEdgesData) {
+                    result = edgeData.getState(i)?.merge(result) ?: result
+                }
+                word = word or (PackedVariableUseInfo.encode(result!!).toLong() shl shift)
+            }
+            newWords[wordIndex] = word
+        }
+        return PackedVariableUseInfo(index, newWords)
+    }
+
+    private fun addVariableUseStateFromCurrentInstructionIfAny(
+        instruction: Instruction,
+        enterResult: PackedVariableUseInfo
+    ): PackedVariableUseInfo {
+        if (instruction !is ReadValueInstruction && instruction !is WriteValueInstruction) return enterResult
+        val variableDescriptor = PseudocodeUtil.extractVariableDescriptorFromReference(instruction, bindingContext) ?: return enterResult
+        val i = index.indexOf(variableDescriptor)
+        if (i < 0) return enterResult
+
+        if (instruction is ReadValueInstruction) {
+            return enterResult.put(i, VariableUseState.READ)
+        }
+        return when (enterResult.getState(i) ?: VariableUseState.UNUSED) {
+            VariableUseState.UNUSED, VariableUseState.ONLY_WRITTEN_NEVER_READ ->
+                enterResult.put(i, VariableUseState.ONLY_WRITTEN_NEVER_READ)
+            VariableUseState.WRITTEN_AFTER_READ, VariableUseState.READ ->
+                enterResult.put(i, VariableUseState.WRITTEN_AFTER_READ)
+        }
+    }
+}
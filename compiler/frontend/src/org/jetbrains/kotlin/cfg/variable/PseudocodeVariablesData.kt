@@ -24,7 +24,11 @@ import org.jetbrains.kotlin.resolve.BindingContextUtils.variableDescriptorForDec
 import org.jetbrains.kotlin.util.javaslang.*
 import org.jetbrains.kotlin.utils.addToStdlib.safeAs
 
-class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingContext: BindingContext) {
+class PseudocodeVariablesData @JvmOverloads constructor(
+    val pseudocode: Pseudocode,
+    private val bindingContext: BindingContext,
+    private val usePackedStates: Boolean = USE_PACKED_STATES
+) {
     private val containsDoWhile = pseudocode.rootPseudocode.containsDoWhile
     private val pseudocodeVariableDataCollector =
         PseudocodeVariableDataCollector(bindingContext, pseudocode)
@@ -49,6 +53,10 @@ class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingCon
         computeVariableInitializers()
     }
 
+    private val packedAnalysis by lazy(LazyThreadSafetyMode.NONE) {
+        PackedVariablesAnalysis(pseudocode, bindingContext, rootVariables.nonTrivialVariables, blockScopeVariableInfo)
+    }
+
     val blockScopeVariableInfo: BlockScopeVariableInfo
         get() = pseudocodeVariableDataCollector.blockScopeVariableInfo
 
@@ -141,6 +149,13 @@ class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingCon
 
         if (rootVariables.nonTrivialVariables.isEmpty()) return resultForValsWithTrivialInitializer
 
+        if (usePackedStates) {
+            return packedAnalysis.computeVariableInitializers().mapValues { (instruction, edges) ->
+                val trivialEdges = resultForValsWithTrivialInitializer[instruction]!!
+                Edges(trivialEdges.incoming.replaceDelegate(edges.incoming), trivialEdges.outgoing.replaceDelegate(edges.outgoing))
+            }
+        }
+
         return pseudocodeVariableDataCollector.collectData(
             TraversalOrder.FORWARD,
             VariableInitControlFlowInfo()
@@ -308,6 +323,15 @@ class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingCon
                 }
             }
 
+            if (usePackedStates) {
+                return packedAnalysis.computeVariableUseStatusData().mapValues { (_, edges) ->
+                    Edges(
+                        edgesForTrivialVals.incoming.replaceDelegate(edges.incoming),
+                        edgesForTrivialVals.outgoing.replaceDelegate(edges.outgoing)
+                    )
+                }
+            }
+
             return pseudocodeVariableDataCollector.collectData(
                 TraversalOrder.BACKWARD,
                 UsageVariableControlFlowInfo()
@@ -416,6 +440,10 @@ class PseudocodeVariablesData(val pseudocode: Pseudocode, private val bindingCon
     }
 
     companion object {
+        /**
+         * Whether [PackedVariablesAnalysis] is used instead of the persistent map based analysis by default.
+         */
+        private val USE_PACKED_STATES = "true" == System.getProperty("kotlin.cfa.packed.states")
 
         @JvmStatic
         fun getDefaultValueForInitializers(
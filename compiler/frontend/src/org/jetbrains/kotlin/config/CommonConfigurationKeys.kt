@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.config
 import org.jetbrains.kotlin.incremental.components.ExpectActualTracker
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.metadata.deserialization.BinaryVersion
+import org.jetbrains.kotlin.util.CompilerMetrics
 
 object CommonConfigurationKeys {
     @JvmField
@@ -78,6 +79,9 @@ object CommonConfigurationKeys {
     @JvmField
     val CHECK_STICKY_CONDITIONS = CompilerConfigurationKey.create<Boolean>("run sticky postcondition checkers on subsequent phases as well")
 
+    @JvmField
+    val COMPILER_METRICS = CompilerConfigurationKey.create<CompilerMetrics>("per-phase performance measurements and counters")
+
     @JvmField
     val EXCLUDED_ELEMENTS_FROM_DUMPING = CompilerConfigurationKey.create<Set<String>>("lowering elements which shouldn't be dumped at all")
 }
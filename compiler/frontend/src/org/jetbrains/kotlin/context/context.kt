@@ -88,6 +88,17 @@ fun GlobalContext(): GlobalContextImpl {
     return GlobalContextImpl(LockBasedStorageManager.createWithExceptionHandling("GlobalContext", tracker), tracker)
 }
 
+/**
+ * Creates a global context whose storage manager computes lazy values concurrently, see [LockBasedStorageManager.createWithStripedLocks].
+ */
+fun GlobalContextWithStripedLocks(): GlobalContextImpl {
+    val tracker = ExceptionTracker()
+    return GlobalContextImpl(
+        LockBasedStorageManager.createWithStripedLocks("GlobalContext", tracker, LockBasedStorageManager.DEFAULT_LOCK_STRIPES),
+        tracker
+    )
+}
+
 fun ProjectContext(project: Project): ProjectContext = ProjectContextImpl(project, GlobalContext())
 fun ModuleContext(module: ModuleDescriptor, project: Project): ModuleContext =
     ModuleContextImpl(module, ProjectContext(project))
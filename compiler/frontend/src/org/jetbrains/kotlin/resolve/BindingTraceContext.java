@@ -30,12 +30,17 @@ import org.jetbrains.kotlin.types.expressions.typeInfoFactory.TypeInfoFactoryKt;
 import org.jetbrains.kotlin.util.slicedMap.*;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 public class BindingTraceContext implements BindingTrace {
     // These flags are used for debugging of "Rewrite at slice..." exceptions
     /* package */ final static boolean TRACK_REWRITES = false;
     /* package */ final static boolean TRACK_WITH_STACK_TRACES = true;
 
+    // Stores slices in SliceTableSlicedMap, which takes less memory for large traces and can report the size of every slice
+    /* package */ final static boolean USE_SLICE_TABLES = "true".equals(System.getProperty("kotlin.binding.context.slice.tables"));
+
     private final MutableSlicedMap map;
     @Nullable private final MutableDiagnosticsWithSuppression mutableDiagnostics;
     @NotNull private final BindingTraceFilter filter;
@@ -88,7 +93,12 @@ public class BindingTraceContext implements BindingTrace {
 
     public BindingTraceContext(BindingTraceFilter filter, boolean allowSliceRewrite) {
         //noinspection ConstantConditions
-        this(TRACK_REWRITES && !allowSliceRewrite ? new TrackingSlicedMap(TRACK_WITH_STACK_TRACES) : new SlicedMapImpl(allowSliceRewrite), filter);
+        this(TRACK_REWRITES && !allowSliceRewrite ? new TrackingSlicedMap(TRACK_WITH_STACK_TRACES) : createSlicedMap(allowSliceRewrite), filter);
+    }
+
+    @NotNull
+    /* package */ static MutableSlicedMap createSlicedMap(boolean allowSliceRewrite) {
+        return USE_SLICE_TABLES ? new SliceTableSlicedMap(allowSliceRewrite) : new SlicedMapImpl(allowSliceRewrite);
     }
 
 
@@ -105,6 +115,21 @@ public class BindingTraceContext implements BindingTrace {
         return new BindingTraceContext(new TrackingSlicedMap(TRACK_WITH_STACK_TRACES), BindingTraceFilter.Companion.getACCEPT_ALL());
     }
 
+    /**
+     * Removes all values of the given slices, e.g. those not needed by code generation (see {@link SliceLifetime}) after analysis.
+     */
+    public void removeSlices(@NotNull Collection<? extends WritableSlice<?, ?>> slices) {
+        map.removeSlices(slices);
+    }
+
+    /**
+     * Sizes of the slices of this trace, or an empty list if the trace doesn't store slices in {@link SliceTableSlicedMap}.
+     */
+    @NotNull
+    public List<SliceStatistics> getSliceStatistics() {
+        return map instanceof SliceTableSlicedMap ? ((SliceTableSlicedMap) map).getSliceStatistics() : Collections.emptyList();
+    }
+
     @Override
     public void report(@NotNull Diagnostic diagnostic) {
         if (mutableDiagnostics == null) {
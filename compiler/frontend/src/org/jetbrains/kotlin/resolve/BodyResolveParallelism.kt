@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.resolve
+
+import org.jetbrains.kotlin.container.DefaultImplementation
+import org.jetbrains.kotlin.storage.LockBasedLazyResolveStorageManager
+import org.jetbrains.kotlin.storage.LockCycleDetectedException
+import org.jetbrains.kotlin.storage.StorageManager
+import org.jetbrains.kotlin.types.SubtypingCache
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Number of threads [BodyResolver] resolves bodies of top-level and member declarations in.
+ *
+ * Parallel resolution is only safe if the storage manager of the module computes lazy values concurrently
+ * (see [org.jetbrains.kotlin.storage.LockBasedStorageManager.createWithStripedLocks]) and components shared by the resolution,
+ * such as the lookup tracker, are thread-safe.
+ */
+@DefaultImplementation(BodyResolveParallelism::class)
+class BodyResolveParallelism private constructor(val threadCount: Int) {
+    @Suppress("unused")
+    constructor() : this(1)
+
+    val isParallel: Boolean
+        get() = threadCount > 1
+
+    /**
+     * Runs [resolve] for each of [declarations] in parallel, with a separate trace for each of them, and then commits the traces
+     * to [parentTrace] in the order of [declarations], so the recorded data is the same as if the declarations were resolved one by one.
+     *
+     * Until then, the traces read everything except their own data from [parentTrace], guarded by the lock of [storageManager],
+     * which is also used to guard writes to the trace by lazy resolution. Lazy resolution writes to [parentTrace] directly, so
+     * the diagnostics it reports are added in the order in which the threads happen to trigger it, and the order of diagnostics
+     * in [parentTrace] is not stable; the CLI sorts them by position before reporting. A declaration whose resolution has failed
+     * with [LockCycleDetectedException] is resolved again after all others, in the current thread.
+     */
+    fun <D> resolveInParallel(
+        declarations: List<D>,
+        parentTrace: BindingTrace,
+        storageManager: StorageManager,
+        resolve: (D, BindingTrace) -> Unit
+    ) {
+        if (declarations.isEmpty()) return
+
+        val lockProtectedContext = LockBasedLazyResolveStorageManager(storageManager).createSafeTrace(parentTrace).bindingContext
+        val traces = arrayOfNulls<DelegatingBindingTrace>(declarations.size)
+        val subtypingCacheSession = SubtypingCache.currentSession()
+
+        val pool = ForkJoinPool(threadCount)
+        try {
+            val futures = pool.invokeAll(declarations.mapIndexed { index, declaration ->
+                Callable {
+                    val trace = DelegatingBindingTrace(lockProtectedContext, "Parallel body resolution", withParentDiagnostics = false)
+                    try {
+                        SubtypingCache.withSession(subtypingCacheSession) { resolve(declaration, trace) }
+                        traces[index] = trace
+                    } catch (e: LockCycleDetectedException) {
+                        // The declaration is resolved again below, when there's no other thread to wait for
+                    }
+                }
+            })
+            for (future in futures) {
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            pool.shutdown()
+        }
+
+        for ((index, declaration) in declarations.withIndex()) {
+            val trace = traces[index]
+                ?: DelegatingBindingTrace(parentTrace.bindingContext, "Body resolution", withParentDiagnostics = false).also {
+                    resolve(declaration, it)
+                }
+            trace.addOwnDataTo(parentTrace, null, true)
+        }
+    }
+
+    companion object {
+        @JvmField
+        val SEQUENTIAL = BodyResolveParallelism(1)
+
+        @JvmStatic
+        fun create(threadCount: Int): BodyResolveParallelism =
+            if (threadCount <= 1) SEQUENTIAL else BodyResolveParallelism(threadCount)
+    }
+}
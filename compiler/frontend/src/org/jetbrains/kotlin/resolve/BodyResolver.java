@@ -44,6 +44,7 @@ import org.jetbrains.kotlin.resolve.descriptorUtil.DescriptorUtilsKt;
 import org.jetbrains.kotlin.resolve.lazy.ForceResolveUtil;
 import org.jetbrains.kotlin.resolve.multiplatform.ExpectedActualResolver;
 import org.jetbrains.kotlin.resolve.scopes.*;
+import org.jetbrains.kotlin.storage.StorageManager;
 import org.jetbrains.kotlin.types.*;
 import org.jetbrains.kotlin.types.expressions.ExpressionTypingServices;
 import org.jetbrains.kotlin.types.expressions.PreliminaryDeclarationVisitor;
@@ -76,6 +77,8 @@ public class BodyResolver {
     @NotNull private final KotlinBuiltIns builtIns;
     @NotNull private final OverloadChecker overloadChecker;
     @NotNull private final LanguageVersionSettings languageVersionSettings;
+    @NotNull private final StorageManager storageManager;
+    @NotNull private final BodyResolveParallelism bodyResolveParallelism;
 
     public BodyResolver(
             @NotNull Project project,
@@ -92,7 +95,9 @@ public class BodyResolver {
             @NotNull AnnotationChecker annotationChecker,
             @NotNull KotlinBuiltIns builtIns,
             @NotNull OverloadChecker overloadChecker,
-            @NotNull LanguageVersionSettings languageVersionSettings
+            @NotNull LanguageVersionSettings languageVersionSettings,
+            @NotNull StorageManager storageManager,
+            @NotNull BodyResolveParallelism bodyResolveParallelism
     ) {
         this.project = project;
         this.annotationResolver = annotationResolver;
@@ -109,6 +114,8 @@ public class BodyResolver {
         this.valueParameterResolver = valueParameterResolver;
         this.builtIns = builtIns;
         this.languageVersionSettings = languageVersionSettings;
+        this.storageManager = storageManager;
+        this.bodyResolveParallelism = bodyResolveParallelism;
     }
 
     private void resolveBehaviorDeclarationBodies(@NotNull BodiesResolveContext c) {
@@ -739,6 +746,15 @@ public class BodyResolver {
             @NotNull BodiesResolveContext c,
             @NotNull KtProperty property,
             @NotNull PropertyDescriptor propertyDescriptor
+    ) {
+        resolveProperty(c, property, propertyDescriptor, trace);
+    }
+
+    private void resolveProperty(
+            @NotNull BodiesResolveContext c,
+            @NotNull KtProperty property,
+            @NotNull PropertyDescriptor propertyDescriptor,
+            @NotNull BindingTrace trace
     ) {
         computeDeferredType(propertyDescriptor.getReturnType());
 
@@ -747,21 +763,23 @@ public class BodyResolver {
         LexicalScope propertyHeaderScope = ScopeUtils.makeScopeForPropertyHeader(getScopeForProperty(c, property), propertyDescriptor);
 
         if (initializer != null) {
-            resolvePropertyInitializer(c.getOuterDataFlowInfo(), property, propertyDescriptor, initializer, propertyHeaderScope);
+            resolvePropertyInitializer(c.getOuterDataFlowInfo(), property, propertyDescriptor, initializer, propertyHeaderScope, trace);
         }
 
         KtExpression delegateExpression = property.getDelegateExpression();
         if (delegateExpression != null) {
             assert initializer == null : "Initializer should be null for delegated property : " + property.getText();
-            resolvePropertyDelegate(c.getOuterDataFlowInfo(), property, propertyDescriptor, delegateExpression, propertyHeaderScope);
+            resolvePropertyDelegate(c.getOuterDataFlowInfo(), property, propertyDescriptor, delegateExpression, propertyHeaderScope, trace);
         }
 
-        resolvePropertyAccessors(c, property, propertyDescriptor);
+        resolvePropertyAccessors(c, property, propertyDescriptor, trace);
 
         ForceResolveUtil.forceResolveAllContents(propertyDescriptor.getAnnotations());
     }
 
     private void resolvePropertyDeclarationBodies(@NotNull BodiesResolveContext c) {
+        boolean resolveInParallel = canResolveInParallel(c);
+        List<KtProperty> propertiesToResolve = new ArrayList<>();
 
         // Member properties
         Set<KtProperty> processed = new HashSet<>();
@@ -774,7 +792,12 @@ public class BodyResolver {
                 PropertyDescriptor propertyDescriptor = c.getProperties().get(property);
                 assert propertyDescriptor != null;
 
-                resolveProperty(c, property, propertyDescriptor);
+                if (resolveInParallel) {
+                    propertiesToResolve.add(property);
+                }
+                else {
+                    resolveProperty(c, property, propertyDescriptor);
+                }
                 processed.add(property);
             }
         }
@@ -786,10 +809,33 @@ public class BodyResolver {
 
             PropertyDescriptor propertyDescriptor = entry.getValue();
 
-            resolveProperty(c, property, propertyDescriptor);
+            if (resolveInParallel) {
+                propertiesToResolve.add(property);
+            }
+            else {
+                resolveProperty(c, property, propertyDescriptor);
+            }
+        }
+
+        if (resolveInParallel) {
+            bodyResolveParallelism.resolveInParallel(propertiesToResolve, trace, storageManager, (property, propertyTrace) -> {
+                resolveProperty(c, property, c.getProperties().get(property), propertyTrace);
+                return Unit.INSTANCE;
+            });
         }
     }
 
+    /**
+     * Bodies of top-level and member declarations are resolved in parallel only when they are resolved from scratch:
+     * local declarations are resolved as a part of the enclosing body, and partial body resolution goes through the cache.
+     */
+    private boolean canResolveInParallel(@NotNull BodiesResolveContext c) {
+        return bodyResolveParallelism.isParallel() &&
+               !c.getTopDownAnalysisMode().isLocalDeclarations() &&
+               (bodyResolveCache instanceof BodyResolveCache.ThrowException ||
+                expressionTypingServices.getStatementFilter() == StatementFilter.NONE);
+    }
+
     private static LexicalScope makeScopeForPropertyAccessor(
             @NotNull BodiesResolveContext c, @NotNull KtPropertyAccessor accessor, @NotNull PropertyDescriptor descriptor
     ) {
@@ -803,9 +849,10 @@ public class BodyResolver {
     private void resolvePropertyAccessors(
             @NotNull BodiesResolveContext c,
             @NotNull KtProperty property,
-            @NotNull PropertyDescriptor propertyDescriptor
+            @NotNull PropertyDescriptor propertyDescriptor,
+            @NotNull BindingTrace trace
     ) {
-        ObservableBindingTrace fieldAccessTrackingTrace = createFieldTrackingTrace(propertyDescriptor);
+        ObservableBindingTrace fieldAccessTrackingTrace = createFieldTrackingTrace(propertyDescriptor, trace);
 
         KtPropertyAccessor getter = property.getGetter();
         PropertyGetterDescriptor getterDescriptor = propertyDescriptor.getGetter();
@@ -839,7 +886,7 @@ public class BodyResolver {
         }
     }
 
-    private ObservableBindingTrace createFieldTrackingTrace(PropertyDescriptor propertyDescriptor) {
+    private static ObservableBindingTrace createFieldTrackingTrace(PropertyDescriptor propertyDescriptor, BindingTrace trace) {
         return new ObservableBindingTrace(trace).addHandler(
                 BindingContext.REFERENCE_TARGET,
                 (slice, expression, descriptor) -> {
@@ -857,7 +904,8 @@ public class BodyResolver {
             @NotNull KtProperty property,
             @NotNull PropertyDescriptor propertyDescriptor,
             @NotNull KtExpression delegateExpression,
-            @NotNull LexicalScope propertyHeaderScope
+            @NotNull LexicalScope propertyHeaderScope,
+            @NotNull BindingTrace trace
     ) {
         delegatedPropertyResolver.resolvePropertyDelegate(outerDataFlowInfo,
                                                           property,
@@ -872,7 +920,8 @@ public class BodyResolver {
             @NotNull KtProperty property,
             @NotNull PropertyDescriptor propertyDescriptor,
             @NotNull KtExpression initializer,
-            @NotNull LexicalScope propertyHeader
+            @NotNull LexicalScope propertyHeader,
+            @NotNull BindingTrace trace
     ) {
         LexicalScope propertyDeclarationInnerScope = ScopeUtils.makeScopeForPropertyInitializer(propertyHeader, propertyDescriptor);
         KotlinType expectedTypeForInitializer = property.getTypeReference() != null ? propertyDescriptor.getType() : NO_EXPECTED_TYPE;
@@ -890,6 +939,18 @@ public class BodyResolver {
     }
 
     private void resolveFunctionBodies(@NotNull BodiesResolveContext c) {
+        if (canResolveInParallel(c)) {
+            List<KtNamedFunction> functions = new ArrayList<>(c.getFunctions().keySet());
+            bodyResolveParallelism.resolveInParallel(functions, trace, storageManager, (function, functionTrace) -> {
+                LexicalScope scope = c.getDeclaringScope(function);
+                assert scope != null : "Scope is null: " + PsiUtilsKt.getElementTextWithContext(function);
+
+                resolveFunctionBody(c.getOuterDataFlowInfo(), functionTrace, function, c.getFunctions().get(function), scope);
+                return Unit.INSTANCE;
+            });
+            return;
+        }
+
         for (Map.Entry<KtNamedFunction, SimpleFunctionDescriptor> entry : c.getFunctions().entrySet()) {
             KtNamedFunction declaration = entry.getKey();
 
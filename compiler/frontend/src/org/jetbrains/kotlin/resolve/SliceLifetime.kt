@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.resolve
+
+import org.jetbrains.kotlin.resolve.BindingContext.*
+import org.jetbrains.kotlin.util.slicedMap.WritableSlice
+
+/**
+ * How long the values of a [BindingContext] slice are needed.
+ */
+enum class SliceLifetime {
+    /**
+     * Only while bodies are resolved and checked, including control flow analysis and declaration checkers.
+     */
+    ANALYSIS,
+
+    /**
+     * After analysis by IDE features, but not by code generation.
+     */
+    IDE,
+
+    /**
+     * By code generation. This is the lifetime of all slices which are not declared otherwise below.
+     */
+    CODEGEN;
+
+    companion object {
+        private val declaredLifetimes: Map<WritableSlice<*, *>, SliceLifetime> = listOf<WritableSlice<*, *>>(
+            EXPECTED_RETURN_TYPE, DATAFLOW_INFO_AFTER_CONDITION, PRELIMINARY_VISITOR, DEFERRED_TYPE, IS_UNINITIALIZED,
+            MUST_BE_LATEINIT, CONSTRAINT_SYSTEM_COMPLETER, PARTIAL_CALL_RESOLUTION_CONTEXT, CAST_TYPE_USED_AS_EXPECTED_TYPE
+        ).associate { it to ANALYSIS } + listOf<WritableSlice<*, *>>(
+            LEXICAL_SCOPE, DATA_FLOW_INFO_BEFORE, EXPECTED_EXPRESSION_TYPE, LEAKING_THIS, UNUSED_MAIN_PARAMETER, UNREACHABLE_CODE,
+            DEPRECATED_SHORT_NAME_ACCESS, AMBIGUOUS_LABEL_TARGET
+        ).associate { it to IDE }
+
+        @JvmStatic
+        fun of(slice: WritableSlice<*, *>): SliceLifetime = declaredLifetimes[slice] ?: CODEGEN
+
+        /**
+         * Slices which can be dropped from the trace once analysis of the module is finished, if the trace is then only used
+         * by code generation.
+         * [PROCESSED] is kept even though code generation doesn't read it, because resolution of an expression
+         * which is not marked as processed would be repeated if anything requested it lazily.
+         */
+        @JvmStatic
+        fun slicesNotNeededForCodegen(): List<WritableSlice<*, *>> = declaredLifetimes.keys.filter { of(it) < CODEGEN }
+    }
+}
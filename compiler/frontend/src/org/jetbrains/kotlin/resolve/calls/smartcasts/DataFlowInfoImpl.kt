@@ -33,13 +33,6 @@ import java.util.*
 
 private typealias ImmutableMultimap<K, V> = ImmutableMap<K, ImmutableSet<V>>
 
-private fun <K, V> ImmutableMultimap<K, V>.put(key: K, value: V): ImmutableMultimap<K, V> {
-    val oldSet = this[key].getOrElse(ImmutableLinkedHashSet.empty<V>())
-    if (oldSet.contains(value)) return this
-
-    return put(key, oldSet.add(value))
-}
-
 internal class DataFlowInfoImpl private constructor(
     override val completeNullabilityInfo: ImmutableMap<DataFlowValue, Nullability>,
     override val completeTypeInfo: ImmutableMultimap<DataFlowValue, KotlinType>
@@ -312,26 +305,49 @@ internal class DataFlowInfoImpl private constructor(
 
         assert(other is DataFlowInfoImpl) { "Unknown DataFlowInfo type: " + other }
 
+        if (completeNullabilityInfo === other.completeNullabilityInfo && completeTypeInfo === other.completeTypeInfo) return this
+
+        // At merge points of `if` and `when` the result is often the same as the info from one of the branches,
+        // so that instance is reused, and the info after a long chain of branches is not held in many equal copies.
+        // Whether the result is the same is found out while it is computed, without comparing the maps afterwards
+        var sameAsThis = true
+        var sameAsOther = true
+
+        // Infos hold no nullability equal to the immanent one, so the result holds all of the keys of this info only if
+        // they all are in the other one
         val resultNullabilityInfo = hashMapOf<DataFlowValue, Nullability>()
+        var thisNullabilityKeysInOther = 0
         for ((key, otherFlags) in other.completeNullabilityInfo) {
             val thisFlags = getCollectedNullability(key)
-            resultNullabilityInfo.put(key, thisFlags.or(otherFlags))
+            val flags = thisFlags.or(otherFlags)
+            resultNullabilityInfo.put(key, flags)
+            if (flags != thisFlags) sameAsThis = false
+            if (flags != otherFlags) sameAsOther = false
+            if (completeNullabilityInfo.containsKey(key)) thisNullabilityKeysInOther++
         }
+        if (thisNullabilityKeysInOther != completeNullabilityInfo.size()) sameAsThis = false
 
         val myTypeInfo = completeTypeInfo
         val otherTypeInfo = other.completeTypeInfo
         val newTypeInfoBuilder = newTypeInfoBuilder()
 
-        for (key in myTypeInfo.keySet()) {
-            if (key in otherTypeInfo.keySet()) {
-                newTypeInfoBuilder.putAll(
-                    key,
-                    myTypeInfo[key].getOrNull().intersectConsideringNothing(otherTypeInfo[key].getOrNull())
-                        ?: ImmutableLinkedHashSet.empty()
-                )
-            }
+        var typeKeysInBoth = 0
+        for ((key, myTypes) in myTypeInfo) {
+            val otherTypes = otherTypeInfo.getOrNull(key) ?: continue
+            typeKeysInBoth++
+            val types = myTypes.intersectConsideringNothing(otherTypes) ?: ImmutableLinkedHashSet.empty()
+            if (types != myTypes) sameAsThis = false
+            if (types != otherTypes) sameAsOther = false
+            newTypeInfoBuilder.putAll(key, types)
+        }
+        if (typeKeysInBoth != myTypeInfo.size()) sameAsThis = false
+        if (typeKeysInBoth != otherTypeInfo.size()) sameAsOther = false
+
+        return when {
+            sameAsThis -> this
+            sameAsOther -> other
+            else -> create(null, resultNullabilityInfo, newTypeInfoBuilder)
         }
-        return create(null, resultNullabilityInfo, newTypeInfoBuilder)
     }
 
     override fun toString() = if (completeTypeInfo.isEmpty && completeNullabilityInfo.isEmpty()) "EMPTY" else "Non-trivial DataFlowInfo"
@@ -368,26 +384,39 @@ internal class DataFlowInfoImpl private constructor(
                 return parent ?: DataFlowInfo.EMPTY
             }
 
-            val resultingNullabilityInfo =
-                updatedNullabilityInfo.entries.fold(
-                    parent?.completeNullabilityInfo ?: EMPTY_NULLABILITY_INFO
-                ) { result, (dataFlowValue, nullability) ->
-                    if (dataFlowValue.immanentNullability != nullability)
-                        result.put(dataFlowValue, nullability)
-                    else
-                        result.remove(dataFlowValue)
+            // Every put or remove of a persistent map allocates a new path of its nodes, so updates which don't change anything
+            // are skipped, and all types of one value are added to its set before the set is put to the map
+            var resultingNullabilityInfo = parent?.completeNullabilityInfo ?: EMPTY_NULLABILITY_INFO
+            for ((dataFlowValue, nullability) in updatedNullabilityInfo) {
+                val oldNullability = resultingNullabilityInfo.getOrNull(dataFlowValue)
+                if (dataFlowValue.immanentNullability != nullability) {
+                    if (oldNullability != nullability) {
+                        resultingNullabilityInfo = resultingNullabilityInfo.put(dataFlowValue, nullability)
+                    }
+                } else if (oldNullability != null) {
+                    resultingNullabilityInfo = resultingNullabilityInfo.remove(dataFlowValue)
                 }
+            }
 
             var resultingTypeInfo = parent?.completeTypeInfo ?: EMPTY_TYPE_INFO
 
             valueToClearPreviousTypeInfo?.let {
-                resultingTypeInfo = resultingTypeInfo.remove(it)
+                if (resultingTypeInfo.containsKey(it)) {
+                    resultingTypeInfo = resultingTypeInfo.remove(it)
+                }
             }
 
             for ((value, types) in updatedTypeInfo) {
+                val oldTypes = resultingTypeInfo.getOrNull(value) ?: ImmutableLinkedHashSet.empty<KotlinType>()
+                var newTypes = oldTypes
                 for (type in types) {
                     if (value.type == type || type.contains { it.constructor is NewCapturedTypeConstructor }) continue
-                    resultingTypeInfo = resultingTypeInfo.put(value, type)
+                    if (!newTypes.contains(type)) {
+                        newTypes = newTypes.add(type)
+                    }
+                }
+                if (newTypes !== oldTypes) {
+                    resultingTypeInfo = resultingTypeInfo.put(value, newTypes)
                 }
             }
 
@@ -17,7 +17,8 @@ open class ExceptionTracker : ModificationTracker, LockBasedStorageManager.Excep
 
     override fun handleException(throwable: Throwable): RuntimeException {
         // should not increment counter when ReenteringLazyValueComputationException is thrown since it implements correct frontend behaviour
-        if (throwable !is ReenteringLazyValueComputationException) {
+        // the same holds for LockCycleDetectedException, after which the computation is repeated
+        if (throwable !is ReenteringLazyValueComputationException && throwable !is LockCycleDetectedException) {
             if (!throwable.isProcessCanceledException() || CacheResetOnProcessCanceled.enabled) {
                 incCounter()
             }
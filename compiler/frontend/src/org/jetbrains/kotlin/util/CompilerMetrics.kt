@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Resources spent by one run of a compiler phase, or by all runs of it if the phase is run several times (e.g. once per file).
+ * [gcMillis] is the time spent by the whole process in garbage collection while the phase was running,
+ * [cpuNanos] and [allocatedBytes] account only the thread which ran the phase and are zero if the JVM does not support measuring them.
+ */
+class PhaseMeasurement(
+    val phase: String,
+    val runs: Int,
+    val wallNanos: Long,
+    val cpuNanos: Long,
+    val gcMillis: Long,
+    val allocatedBytes: Long
+) {
+    operator fun plus(other: PhaseMeasurement) = PhaseMeasurement(
+        phase, runs + other.runs, wallNanos + other.wallNanos, cpuNanos + other.cpuNanos,
+        gcMillis + other.gcMillis, allocatedBytes + other.allocatedBytes
+    )
+}
+
+/**
+ * Receives measurements of a compilation as they are recorded, e.g. to report progress of a long compilation.
+ * Methods are called on the thread which recorded the measurement.
+ */
+interface CompilerMetricsListener {
+    /**
+     * Called after every run of a phase with the measurement of this run only.
+     */
+    fun phaseFinished(measurement: PhaseMeasurement)
+
+    fun counterUpdated(counter: String, value: Long) {}
+}
+
+/**
+ * Per-phase measurements and named counters of one compilation.
+ *
+ * Phases may be nested, e.g. a lowering inside of the IR lowering phase; each of them is measured separately.
+ * All methods are thread-safe.
+ */
+class CompilerMetrics {
+    private val phases = ConcurrentHashMap<String, PhaseMeasurement>()
+    private val phaseOrder = CopyOnWriteArrayList<String>()
+    private val counters = ConcurrentHashMap<String, AtomicLong>()
+    private val listeners = CopyOnWriteArrayList<CompilerMetricsListener>()
+
+    private val threadMXBean = ManagementFactory.getThreadMXBean()
+
+    fun addListener(listener: CompilerMetricsListener) {
+        listeners.add(listener)
+    }
+
+    fun removeListener(listener: CompilerMetricsListener) {
+        listeners.remove(listener)
+    }
+
+    inner class RunningPhase internal constructor(private val phase: String) {
+        private val startWall = System.nanoTime()
+        private val startCpu = currentThreadCpuTime()
+        private val startGc = totalGcMillis()
+        private val startAllocated = currentThreadAllocatedBytes()
+
+        /**
+         * Records the phase; must be called on the thread which started it.
+         */
+        fun finish() {
+            addPhase(
+                PhaseMeasurement(
+                    phase, 1,
+                    System.nanoTime() - startWall,
+                    currentThreadCpuTime() - startCpu,
+                    totalGcMillis() - startGc,
+                    currentThreadAllocatedBytes() - startAllocated
+                )
+            )
+        }
+    }
+
+    fun startPhase(phase: String): RunningPhase = RunningPhase(phase)
+
+    inline fun <T> measurePhase(phase: String, block: () -> T): T {
+        val runningPhase = startPhase(phase)
+        try {
+            return block()
+        } finally {
+            runningPhase.finish()
+        }
+    }
+
+    fun addPhase(measurement: PhaseMeasurement) {
+        if (phases.putIfAbsent(measurement.phase, measurement) == null) {
+            phaseOrder.add(measurement.phase)
+        } else {
+            phases.merge(measurement.phase, measurement) { old, new -> old + new }
+        }
+        for (listener in listeners) {
+            listener.phaseFinished(measurement)
+        }
+    }
+
+    fun addCounter(counter: String, delta: Long = 1) {
+        val value = counters.getOrPut(counter) { AtomicLong() }.addAndGet(delta)
+        for (listener in listeners) {
+            listener.counterUpdated(counter, value)
+        }
+    }
+
+    /**
+     * Phases in the order of their first run.
+     */
+    fun getPhases(): List<PhaseMeasurement> = phaseOrder.mapNotNull { phases[it] }
+
+    fun getCounters(): Map<String, Long> = counters.entries.associate { (name, value) -> name to value.get() }.toSortedMap()
+
+    fun renderJson(): String = buildString {
+        appendln("{")
+        appendln("  \"phases\": [")
+        getPhases().joinTo(this, separator = ",\n", postfix = "\n") { measurement ->
+            with(measurement) {
+                "    {\"name\": ${phase.quoted()}, \"runs\": $runs, \"wallNanos\": $wallNanos, \"cpuNanos\": $cpuNanos, " +
+                        "\"gcMillis\": $gcMillis, \"allocatedBytes\": $allocatedBytes}"
+            }
+        }
+        appendln("  ],")
+        appendln("  \"counters\": {")
+        getCounters().entries.joinTo(this, separator = ",\n", postfix = "\n") { (name, value) -> "    ${name.quoted()}: $value" }
+        appendln("  }")
+        appendln("}")
+    }
+
+    private fun currentThreadCpuTime(): Long =
+        if (threadMXBean.isCurrentThreadCpuTimeSupported) threadMXBean.currentThreadCpuTime else 0L
+
+    private fun currentThreadAllocatedBytes(): Long {
+        val bean = threadMXBean as? com.sun.management.ThreadMXBean ?: return 0L
+        return if (bean.isThreadAllocatedMemorySupported && bean.isThreadAllocatedMemoryEnabled)
+            bean.getThreadAllocatedBytes(Thread.currentThread().id)
+        else
+            0L
+    }
+
+    private fun totalGcMillis(): Long = ManagementFactory.getGarbageCollectorMXBeans().sumByLong { maxOf(it.collectionTime, 0L) }
+
+    private fun String.quoted(): String = buildString {
+        append('"')
+        for (c in this@quoted) {
+            when {
+                c == '"' || c == '\\' -> append('\\').append(c)
+                c < ' ' -> append(String.format("\\u%04x", c.toInt()))
+                else -> append(c)
+            }
+        }
+        append('"')
+    }
+
+    private inline fun <T> Iterable<T>.sumByLong(selector: (T) -> Long): Long {
+        var sum = 0L
+        for (element in this) {
+            sum += selector(element)
+        }
+        return sum
+    }
+}
@@ -20,12 +20,19 @@ import com.google.common.collect.ImmutableMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.TestOnly;
 
+import java.util.Collection;
+
 public interface MutableSlicedMap extends SlicedMap {
 
     <K, V> void put(WritableSlice<K, V> slice, K key, V value);
 
     void clear();
 
+    /**
+     * Removes all values of the given slices, e.g. when they are no longer needed after analysis.
+     */
+    void removeSlices(@NotNull Collection<? extends WritableSlice<?, ?>> slices);
+
     @NotNull
     @TestOnly
     <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice);
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap
+
+import com.google.common.collect.ArrayListMultimap
+import com.google.common.collect.ImmutableMap
+import com.google.common.collect.Multimap
+
+/**
+ * Memory taken by the values of one slice in a [SliceTableSlicedMap].
+ * [estimatedBytes] is the shallow size of the slice table, assuming compressed references; keys and values are not included.
+ */
+class SliceStatistics(val sliceName: String, val entries: Int, val estimatedBytes: Long)
+
+/**
+ * An alternative to [SlicedMapImpl] which stores every slice in a separate open addressing table with keys and values
+ * in one array, instead of a persistent map of slices for every key.
+ *
+ * Most keys have values in just a few slices, and most slices have few values in short-lived traces, so all tables
+ * start small. A table is filled by a quarter to a half, so a value costs from four array slots (right before the table grows)
+ * to eight (right after it), that is 16 to 32 bytes with compressed references. [SlicedMapImpl] takes a table slot pair
+ * and a share of a [com.intellij.util.keyFMap.KeyFMap] for every key instead.
+ */
+class SliceTableSlicedMap(private val alwaysAllowRewrite: Boolean) : MutableSlicedMap {
+    // KeyWithSlice -> CompactHashTable
+    private var tables: CompactHashTable? = null
+    private var collectiveSliceKeys: Multimap<WritableSlice<*, *>, Any>? = null
+
+    override fun <K, V> put(slice: WritableSlice<K, V>, key: K, value: V) {
+        if (!slice.check(key, value)) return
+
+        val table = getOrCreateTable(slice)
+
+        val rewritePolicy = slice.rewritePolicy
+        if (!alwaysAllowRewrite && rewritePolicy.rewriteProcessingNeeded(key)) {
+            @Suppress("UNCHECKED_CAST")
+            val oldValue = table.get(key!!) as V?
+            if (oldValue != null) {
+                if (!rewritePolicy.processRewrite(slice, key, oldValue, value)) return
+            }
+        }
+
+        if (slice.isCollective) {
+            val keys = collectiveSliceKeys ?: ArrayListMultimap.create<WritableSlice<*, *>, Any>().also { collectiveSliceKeys = it }
+            keys.put(slice, key)
+        }
+
+        table.put(key!!, value)
+        slice.afterPut(this, key, value)
+    }
+
+    override fun clear() {
+        tables = null
+        collectiveSliceKeys = null
+    }
+
+    override fun removeSlices(slices: Collection<WritableSlice<*, *>>) {
+        val oldTables = tables ?: return
+        val sliceKeys = slices.mapTo(HashSet<Any>()) { it.key }
+
+        // Tables of the remaining slices are kept as is, only the table of tables is rebuilt
+        val newTables = CompactHashTable()
+        oldTables.forEach { sliceKey, table ->
+            if (sliceKey !in sliceKeys) {
+                newTables.put(sliceKey, table)
+            }
+        }
+        tables = newTables
+
+        collectiveSliceKeys?.let { keys -> slices.forEach { keys.removeAll(it) } }
+    }
+
+    override fun <K, V> get(slice: ReadOnlySlice<K, V>, key: K): V? {
+        @Suppress("UNCHECKED_CAST")
+        val value = getTable(slice)?.get(key!!) as V?
+        return slice.computeValue(this, key, value, value == null)
+    }
+
+    override fun <K, V> getKeys(slice: WritableSlice<K, V>): Collection<K> {
+        assert(slice.isCollective) { "Keys are not collected for slice $slice" }
+
+        @Suppress("UNCHECKED_CAST")
+        return collectiveSliceKeys?.get(slice) as Collection<K>? ?: emptyList()
+    }
+
+    override fun forEach(f: (WritableSlice<*, *>, Any?, Any?) -> Void?) {
+        tables?.forEach { sliceKey, table ->
+            val slice = (sliceKey as KeyWithSlice<*, *, *>).slice as WritableSlice<*, *>
+            (table as CompactHashTable).forEach { key, value ->
+                f(slice, key, value)
+            }
+        }
+    }
+
+    override fun <K, V> getSliceContents(slice: ReadOnlySlice<K, V>): ImmutableMap<K, V> {
+        val table = getTable(slice) ?: return ImmutableMap.of()
+
+        val builder = ImmutableMap.builder<K, V>()
+        table.forEach { key, value ->
+            @Suppress("UNCHECKED_CAST")
+            if (value != null) builder.put(key as K, value as V)
+        }
+        return builder.build()
+    }
+
+    /**
+     * Sizes of the slice tables, the largest first.
+     */
+    fun getSliceStatistics(): List<SliceStatistics> {
+        val result = ArrayList<SliceStatistics>()
+        tables?.forEach { sliceKey, table ->
+            table as CompactHashTable
+            result.add(SliceStatistics(sliceKey.toString(), table.size, table.estimateShallowSize()))
+        }
+        result.sortByDescending { it.estimatedBytes }
+        return result
+    }
+
+    private fun getTable(slice: ReadOnlySlice<*, *>): CompactHashTable? =
+        tables?.get(slice.key) as CompactHashTable?
+
+    private fun getOrCreateTable(slice: WritableSlice<*, *>): CompactHashTable {
+        val tables = tables ?: CompactHashTable().also { tables = it }
+        return tables.get(slice.key) as CompactHashTable? ?: CompactHashTable().also { tables.put(slice.key, it) }
+    }
+}
+
+// binary representation of fractional part of phi = (sqrt(5) - 1) / 2, see OpenAddressLinearProbingHashTable
+private const val MAGIC: Int = 0x9E3779B9L.toInt()
+private const val INITIAL_CAPACITY_BITS = 2
+private const val ARRAY_HEADER_BYTES = 16L
+private const val OBJECT_BYTES = 24L
+private const val REFERENCE_BYTES = 4L
+
+/**
+ * Open addressing hash table with linear probing, keys in even and values in odd elements of one array.
+ * Unlike [OpenAddressLinearProbingHashTable], it starts with room for just a few entries, so that an empty or almost empty
+ * table of a slice is cheap. The table is never filled more than by half, and by at least a quarter once it has grown.
+ */
+private class CompactHashTable {
+    // capacity = 1 << (32 - shift)
+    private var shift = 32 - INITIAL_CAPACITY_BITS
+    private var array = arrayOfNulls<Any>(2 shl INITIAL_CAPACITY_BITS)
+
+    var size = 0
+        private set
+
+    fun get(key: Any): Any? {
+        val array = array
+        var i = indexFor(key, shift)
+        while (true) {
+            val k = array[i] ?: return null
+            if (k == key) return array[i + 1]
+            i = (i + 2) and (array.size - 1)
+        }
+    }
+
+    fun put(key: Any, value: Any?) {
+        if (putTo(array, shift, key, value)) {
+            size++
+            if (size * 4 > array.size) {
+                rehash()
+            }
+        }
+    }
+
+    inline fun forEach(action: (Any, Any?) -> Unit) {
+        val array = array
+        var i = 0
+        while (i < array.size) {
+            val key = array[i]
+            if (key != null) {
+                action(key, array[i + 1])
+            }
+            i += 2
+        }
+    }
+
+    fun estimateShallowSize(): Long = OBJECT_BYTES + ARRAY_HEADER_BYTES + array.size * REFERENCE_BYTES
+
+    private fun rehash() {
+        val newShift = shift - 1
+        val newArray = arrayOfNulls<Any>(array.size * 2)
+        forEach { key, value -> putTo(newArray, newShift, key, value) }
+        shift = newShift
+        array = newArray
+    }
+
+    private fun indexFor(key: Any, shift: Int): Int = ((key.hashCode() * MAGIC) ushr shift) shl 1
+
+    // Returns true if the key is new
+    private fun putTo(array: Array<Any?>, shift: Int, key: Any, value: Any?): Boolean {
+        var i = indexFor(key, shift)
+        while (true) {
+            val k = array[i]
+            if (k == null) {
+                array[i] = key
+                array[i + 1] = value
+                return true
+            }
+            if (k == key) {
+                array[i + 1] = value
+                return false
+            }
+            i = (i + 2) and (array.size - 1)
+        }
+    }
+}
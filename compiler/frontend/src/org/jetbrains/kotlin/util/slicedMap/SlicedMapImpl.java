@@ -86,6 +86,30 @@ public class SlicedMapImpl implements MutableSlicedMap {
         collectiveSliceKeys = null;
     }
 
+    @Override
+    public void removeSlices(@NotNull Collection<? extends WritableSlice<?, ?>> slices) {
+        if (map == null || slices.isEmpty()) return;
+
+        // The table is rebuilt rather than updated in place, so that it shrinks if many keys are left without values
+        Map<Object, KeyFMap> newMap = new OpenAddressLinearProbingHashTable<>();
+        map.forEach((key, holder) -> {
+            KeyFMap newHolder = holder;
+            for (WritableSlice<?, ?> slice : slices) {
+                newHolder = newHolder.minus(slice.getKey());
+            }
+            if (!newHolder.isEmpty()) {
+                newMap.put(key, newHolder);
+            }
+        });
+        map = newMap;
+
+        if (collectiveSliceKeys != null) {
+            for (WritableSlice<?, ?> slice : slices) {
+                collectiveSliceKeys.removeAll(slice);
+            }
+        }
+    }
+
     @Override
     public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
         KeyFMap holder = map != null ? map.get(key) : null;
@@ -20,9 +20,7 @@ import kotlin.jvm.functions.Function3;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.utils.Printer;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 public class TrackingSlicedMap extends SlicedMapImpl {
     private final Map<ReadOnlySlice<?, ?>, SliceWithStackTrace<?, ?>> sliceTranslationMap = new HashMap<>();
@@ -56,6 +54,15 @@ public class TrackingSlicedMap extends SlicedMapImpl {
         });
     }
 
+    @Override
+    public void removeSlices(@NotNull Collection<? extends WritableSlice<?, ?>> slices) {
+        List<WritableSlice<?, ?>> wrappedSlices = new ArrayList<>(slices.size());
+        for (WritableSlice<?, ?> slice : slices) {
+            wrappedSlices.add(wrapSlice(slice));
+        }
+        super.removeSlices(wrappedSlices);
+    }
+
     @Override
     public <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
         super.put(wrapSlice(slice), key, new TrackableValue<>(value, trackWithStackTraces));
@@ -31,6 +31,7 @@ import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.incremental.parsing.classesFqNames
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.progress.CompilationCanceledStatus
+import org.jetbrains.kotlin.util.CompilerMetrics
 import java.io.File
 import java.util.*
 
@@ -52,6 +53,17 @@ abstract class IncrementalCompilerRunner<
     protected val lastBuildInfoFile = File(workingDir, LAST_BUILD_INFO_FILE_NAME)
     protected open val kotlinSourceFilesExtensions: List<String> = DEFAULT_KOTLIN_SOURCE_FILES_EXTENSIONS
 
+    /**
+     * Measurements of incremental compilation phases, shared with the compiler, which records its own phases there.
+     * Metrics are collected only if they are set here or requested by `-Xreport-perf` or `-Xdump-perf-json`.
+     */
+    var metrics: CompilerMetrics? = null
+
+    private inline fun <T> measurePhase(phase: String, block: () -> T): T {
+        val currentMetrics = metrics ?: return block()
+        return currentMetrics.measurePhase(phase, block)
+    }
+
     protected abstract fun isICEnabled(): Boolean
     protected abstract fun createCacheManager(args: Args): CacheManager
     protected abstract fun destinationDir(args: Args): File
@@ -65,6 +77,9 @@ abstract class IncrementalCompilerRunner<
             providedChangedFiles: ChangedFiles?
     ): ExitCode {
         assert(isICEnabled()) { "Incremental compilation is not enabled" }
+        if (metrics == null && (args.reportPerf || args.dumpPerfJson != null)) {
+            metrics = CompilerMetrics()
+        }
         var caches = createCacheManager(args)
 
         fun rebuild(reason: () -> String): ExitCode {
@@ -81,7 +96,7 @@ abstract class IncrementalCompilerRunner<
 
         return try {
             val changedFiles = providedChangedFiles ?: caches.inputsCache.sourceSnapshotMap.compareAndUpdate(allSourceFiles)
-            val compilationMode = sourcesToCompile(caches, changedFiles, args)
+            val compilationMode = measurePhase(IC_ANALYSIS_PHASE) { sourcesToCompile(caches, changedFiles, args) }
 
             val exitCode = when (compilationMode) {
                 is CompilationMode.Incremental -> {
@@ -181,6 +196,7 @@ abstract class IncrementalCompilerRunner<
             register(LookupTracker::class.java, lookupTracker)
             register(ExpectActualTracker::class.java, expectActualTracker)
             register(CompilationCanceledStatus::class.java, EmptyCompilationCanceledStatus)
+            metrics?.let { register(CompilerMetrics::class.java, it) }
         }
 
     protected abstract fun runCompiler(
@@ -253,11 +269,14 @@ abstract class IncrementalCompilerRunner<
                 }
             }
 
-            caches.platformCache.updateComplementaryFiles(dirtySources, expectActualTracker)
-            caches.inputsCache.registerOutputForSourceFiles(generatedFiles)
-            caches.lookupCache.update(lookupTracker, sourcesToCompile, removedKotlinSources)
+            metrics?.addCounter(LOOKUPS_COUNTER, lookupTracker.lookups.values().size.toLong())
             val changesCollector = ChangesCollector()
-            updateCaches(services, caches, generatedFiles, changesCollector)
+            measurePhase(IC_CACHES_UPDATE_PHASE) {
+                caches.platformCache.updateComplementaryFiles(dirtySources, expectActualTracker)
+                caches.inputsCache.registerOutputForSourceFiles(generatedFiles)
+                caches.lookupCache.update(lookupTracker, sourcesToCompile, removedKotlinSources)
+                updateCaches(services, caches, generatedFiles, changesCollector)
+            }
 
             if (compilationMode is CompilationMode.Rebuild) break
 
@@ -332,6 +351,10 @@ abstract class IncrementalCompilerRunner<
     companion object {
         const val DIRTY_SOURCES_FILE_NAME = "dirty-sources.txt"
         const val LAST_BUILD_INFO_FILE_NAME = "last-build.bin"
+
+        const val IC_ANALYSIS_PHASE = "IC analysis"
+        const val IC_CACHES_UPDATE_PHASE = "IC caches update"
+        const val LOOKUPS_COUNTER = "Lookups"
     }
 
     private object EmptyCompilationCanceledStatus : CompilationCanceledStatus {
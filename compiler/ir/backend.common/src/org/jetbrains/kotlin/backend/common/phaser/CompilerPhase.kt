@@ -105,10 +105,15 @@ abstract class AbstractNamedPhaseWrapper<in Context : CommonBackendContext, Inpu
     }
 
     private fun runBody(phaseConfig: PhaseConfig, phaserState: PhaserState<Input>, context: Context, input: Input): Output {
-        return if (phaseConfig.needProfiling) {
-            runAndProfile(phaseConfig, phaserState, context, input)
-        } else {
-            phaserState.downlevel(nlevels) {
+        val metrics = phaseConfig.metrics
+        return when {
+            phaseConfig.needProfiling -> runAndProfile(phaseConfig, phaserState, context, input)
+            metrics != null -> metrics.measurePhase(name) {
+                phaserState.downlevel(nlevels) {
+                    lower.invoke(phaseConfig, phaserState, context, input)
+                }
+            }
+            else -> phaserState.downlevel(nlevels) {
                 lower.invoke(phaseConfig, phaserState, context, input)
             }
         }
@@ -44,6 +44,7 @@ class PhaseConfig(private val compoundPhase: CompilerPhase<*, *, *>, config: Com
     }
 
     val needProfiling = config.getBoolean(CommonConfigurationKeys.PROFILE_PHASES)
+    val metrics = config.get(CommonConfigurationKeys.COMPILER_METRICS)
     val checkConditions = config.getBoolean(CommonConfigurationKeys.CHECK_PHASE_CONDITIONS)
     val checkStickyConditions = config.getBoolean(CommonConfigurationKeys.CHECK_STICKY_CONDITIONS)
 
@@ -32,7 +32,32 @@ abstract class IrDeclarationBase(
 
     override lateinit var parent: IrDeclarationParent
 
-    override val annotations: MutableList<IrCall> = ArrayList()
+    private var annotationsList: MutableList<IrCall>? = null
+
+    // Most declarations have no annotations, so the list is only allocated when an annotation is added.
+    override val annotations: MutableList<IrCall>
+        get() = annotationsList ?: AnnotationsView()
+
+    private fun getOrCreateAnnotationsList(): MutableList<IrCall> =
+        annotationsList ?: ArrayList<IrCall>(1).also { annotationsList = it }
+
+    private inner class AnnotationsView : AbstractMutableList<IrCall>(), RandomAccess {
+        override val size: Int
+            get() = annotationsList?.size ?: 0
+
+        override fun get(index: Int): IrCall =
+            (annotationsList ?: emptyList<IrCall>())[index]
+
+        override fun set(index: Int, element: IrCall): IrCall =
+            getOrCreateAnnotationsList().set(index, element)
+
+        override fun add(index: Int, element: IrCall) {
+            getOrCreateAnnotationsList().add(index, element)
+        }
+
+        override fun removeAt(index: Int): IrCall =
+            getOrCreateAnnotationsList().removeAt(index)
+    }
 
     override val metadata: MetadataSource?
         get() = null
@@ -39,7 +39,8 @@ abstract class IrCallWithIndexedArgumentsBase(
         origin
     ) {
 
-    private val argumentsByParameterIndex: Array<IrExpression?> = arrayOfNulls(valueArgumentsCount)
+    private val argumentsByParameterIndex: Array<IrExpression?> =
+        if (valueArgumentsCount == 0) NO_VALUE_ARGUMENTS else arrayOfNulls(valueArgumentsCount)
 
     override fun getValueArgument(index: Int): IrExpression? {
         if (index >= valueArgumentsCount) {
@@ -70,4 +71,6 @@ abstract class IrCallWithIndexedArgumentsBase(
             argumentsByParameterIndex[i] = irExpression?.transform(transformer, data)
         }
     }
-}
\ No newline at end of file
+}
+
+private val NO_VALUE_ARGUMENTS = arrayOfNulls<IrExpression>(0)
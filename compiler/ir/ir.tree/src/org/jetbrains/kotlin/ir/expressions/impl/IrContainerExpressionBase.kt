@@ -23,7 +23,7 @@ import org.jetbrains.kotlin.ir.types.IrType
 import org.jetbrains.kotlin.ir.util.transform
 import org.jetbrains.kotlin.ir.visitors.IrElementTransformer
 import org.jetbrains.kotlin.ir.visitors.IrElementVisitor
-import java.util.*
+import org.jetbrains.kotlin.utils.SmartList
 
 abstract class IrContainerExpressionBase(
     startOffset: Int,
@@ -34,7 +34,7 @@ abstract class IrContainerExpressionBase(
     IrExpressionBase(startOffset, endOffset, type),
     IrContainerExpression {
 
-    override val statements: MutableList<IrStatement> = ArrayList(2)
+    override val statements: MutableList<IrStatement> = SmartList()
 
     override fun <D> acceptChildren(visitor: IrElementVisitor<Unit, D>, data: D) {
         statements.forEach { it.accept(visitor, data) }
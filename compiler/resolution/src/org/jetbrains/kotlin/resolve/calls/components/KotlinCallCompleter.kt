@@ -7,6 +7,7 @@ package org.jetbrains.kotlin.resolve.calls.components
 
 import org.jetbrains.kotlin.config.LanguageFeature
 import org.jetbrains.kotlin.resolve.calls.inference.NewConstraintSystem
+import org.jetbrains.kotlin.resolve.calls.inference.components.InferenceStatistics
 import org.jetbrains.kotlin.resolve.calls.inference.components.KotlinConstraintSystemCompleter
 import org.jetbrains.kotlin.resolve.calls.inference.components.KotlinConstraintSystemCompleter.ConstraintSystemCompletionMode
 import org.jetbrains.kotlin.resolve.calls.inference.components.TrivialConstraintTypeInferenceOracle
@@ -24,7 +25,8 @@ import org.jetbrains.kotlin.types.typeUtil.isPrimitiveNumberType
 class KotlinCallCompleter(
     private val postponedArgumentsAnalyzer: PostponedArgumentsAnalyzer,
     private val kotlinConstraintSystemCompleter: KotlinConstraintSystemCompleter,
-    private val trivialConstraintTypeInferenceOracle: TrivialConstraintTypeInferenceOracle
+    private val trivialConstraintTypeInferenceOracle: TrivialConstraintTypeInferenceOracle,
+    private val inferenceStatistics: InferenceStatistics
 ) {
 
     fun runCompletion(
@@ -121,6 +123,7 @@ class KotlinCallCompleter(
         }
 
         constraintSystem.diagnostics.forEach(diagnosticsHolder::addDiagnostic)
+        inferenceStatistics.record(resolvedCallAtom.atom, constraintSystem.counters)
     }
 
     private fun prepareCandidateForCompletion(
@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.resolve.calls.inference
 import org.jetbrains.kotlin.builtins.KotlinBuiltIns
 import org.jetbrains.kotlin.resolve.calls.components.KotlinCallCompleter
 import org.jetbrains.kotlin.resolve.calls.components.PostponedArgumentsAnalyzer
+import org.jetbrains.kotlin.resolve.calls.inference.components.ConstraintSystemCounters
 import org.jetbrains.kotlin.resolve.calls.inference.components.KotlinConstraintSystemCompleter
 import org.jetbrains.kotlin.resolve.calls.inference.model.ConstraintStorage
 import org.jetbrains.kotlin.resolve.calls.model.KotlinCallDiagnostic
@@ -27,6 +28,7 @@ interface NewConstraintSystem {
     val builtIns: KotlinBuiltIns
     val hasContradiction: Boolean
     val diagnostics: List<KotlinCallDiagnostic>
+    val counters: ConstraintSystemCounters
 
     fun getBuilder(): ConstraintSystemBuilder
 
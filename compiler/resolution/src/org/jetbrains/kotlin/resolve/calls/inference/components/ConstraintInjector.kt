@@ -40,6 +40,8 @@ class ConstraintInjector(val constraintIncorporator: ConstraintIncorporator, val
         val notFixedTypeVariables: MutableMap<TypeConstructor, MutableVariableWithConstraints>
         val fixedTypeVariables: MutableMap<TypeConstructor, UnwrappedType>
 
+        val counters: ConstraintSystemCounters
+
         fun addInitialConstraint(initialConstraint: InitialConstraint)
         fun addError(error: KotlinCallDiagnostic)
     }
@@ -83,6 +85,7 @@ class ConstraintInjector(val constraintIncorporator: ConstraintIncorporator, val
 
             // it is important, that we add constraint here(not inside TypeCheckerContext), because inside incorporation we read constraints
             constraints.addConstraint(constraint)?.let {
+                c.counters.constraintsAdded++
                 constraintIncorporator.incorporate(typeCheckerContext, typeVariable, it)
             }
         }
@@ -122,14 +125,19 @@ class ConstraintInjector(val constraintIncorporator: ConstraintIncorporator, val
         val baseUpperType: UnwrappedType,
         val possibleNewConstraints: MutableList<Pair<NewTypeVariable, Constraint>>
     ) : TypeCheckerContextForConstraintSystem(), ConstraintIncorporator.Context {
+        // Incorporation derives the same constraints from different pairs of constraints over and over again. A successful check
+        // of such a constraint is not repeated: it would add constraints which are already in the system, and so incorporate nothing
+        private var successfulIncorporatedConstraints: MutableSet<Pair<UnwrappedType, UnwrappedType>>? = null
 
-        fun runIsSubtypeOf(lowerType: UnwrappedType, upperType: UnwrappedType) {
+        fun runIsSubtypeOf(lowerType: UnwrappedType, upperType: UnwrappedType): Boolean {
             with(NewKotlinTypeChecker) {
                 if (!this@TypeCheckerContext.isSubtypeOf(lowerType, upperType)) {
                     // todo improve error reporting -- add information about base types
                     c.addError(NewConstraintError(lowerType, upperType, position))
+                    return false
                 }
             }
+            return true
         }
 
         // from TypeCheckerContextForConstraintSystem
@@ -188,8 +196,20 @@ class ConstraintInjector(val constraintIncorporator: ConstraintIncorporator, val
 
         // from ConstraintIncorporator.Context
         override fun addNewIncorporatedConstraint(lowerType: UnwrappedType, upperType: UnwrappedType) {
-            if (c.isAllowedType(lowerType) && c.isAllowedType(upperType)) {
-                runIsSubtypeOf(lowerType, upperType)
+            if (!c.isAllowedType(lowerType) || !c.isAllowedType(upperType)) return
+
+            val incorporatedConstraint = lowerType to upperType
+            if (successfulIncorporatedConstraints?.contains(incorporatedConstraint) == true) {
+                c.counters.repeatedIncorporationStepsSkipped++
+                return
+            }
+
+            c.counters.incorporationSteps++
+            if (runIsSubtypeOf(lowerType, upperType)) {
+                val constraints = successfulIncorporatedConstraints ?: HashSet<Pair<UnwrappedType, UnwrappedType>>().also {
+                    successfulIncorporatedConstraints = it
+                }
+                constraints.add(incorporatedConstraint)
             }
         }
 
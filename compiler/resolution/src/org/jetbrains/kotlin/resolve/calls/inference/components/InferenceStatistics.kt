@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.resolve.calls.inference.components
+
+import org.jetbrains.kotlin.resolve.calls.model.KotlinCall
+import java.util.*
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Work done by one constraint system since the last time it was recorded to [InferenceStatistics].
+ */
+class ConstraintSystemCounters {
+    var constraintsAdded = 0
+    var incorporationSteps = 0
+    var repeatedIncorporationStepsSkipped = 0
+    var fixationIterations = 0
+
+    val isEmpty: Boolean
+        get() = constraintsAdded == 0 && incorporationSteps == 0 && repeatedIncorporationStepsSkipped == 0 && fixationIterations == 0
+
+    fun reset() {
+        constraintsAdded = 0
+        incorporationSteps = 0
+        repeatedIncorporationStepsSkipped = 0
+        fixationIterations = 0
+    }
+}
+
+/**
+ * Inference work of all calls completed in a module, and the calls which took most of it.
+ * Calls can be completed in different threads by parallel body resolution, so all methods are thread-safe.
+ *
+ * Nothing is recorded unless [isEnabled] is set, which is done only when compiler metrics are collected.
+ */
+class InferenceStatistics {
+    @Volatile
+    var isEnabled = false
+
+    class CallStatistics(val call: String, val constraintsAdded: Int, val incorporationSteps: Int, val fixationIterations: Int)
+
+    private val totalConstraintsAdded = AtomicLong()
+    private val totalIncorporationSteps = AtomicLong()
+    private val totalRepeatedIncorporationStepsSkipped = AtomicLong()
+    private val totalFixationIterations = AtomicLong()
+
+    // The lightest of the heaviest calls is the head
+    private val heaviestCalls = PriorityQueue<CallStatistics>(HEAVIEST_CALLS_LIMIT + 1, compareBy { it.incorporationSteps })
+
+    val constraintsAdded: Long get() = totalConstraintsAdded.get()
+    val incorporationSteps: Long get() = totalIncorporationSteps.get()
+    val repeatedIncorporationStepsSkipped: Long get() = totalRepeatedIncorporationStepsSkipped.get()
+    val fixationIterations: Long get() = totalFixationIterations.get()
+
+    fun record(call: KotlinCall, counters: ConstraintSystemCounters) {
+        if (!isEnabled || counters.isEmpty) return
+
+        totalConstraintsAdded.addAndGet(counters.constraintsAdded.toLong())
+        totalIncorporationSteps.addAndGet(counters.incorporationSteps.toLong())
+        totalRepeatedIncorporationStepsSkipped.addAndGet(counters.repeatedIncorporationStepsSkipped.toLong())
+        totalFixationIterations.addAndGet(counters.fixationIterations.toLong())
+
+        synchronized(heaviestCalls) {
+            if (heaviestCalls.size < HEAVIEST_CALLS_LIMIT || heaviestCalls.peek().incorporationSteps < counters.incorporationSteps) {
+                heaviestCalls.add(
+                    CallStatistics(call.toString(), counters.constraintsAdded, counters.incorporationSteps, counters.fixationIterations)
+                )
+                if (heaviestCalls.size > HEAVIEST_CALLS_LIMIT) {
+                    heaviestCalls.poll()
+                }
+            }
+        }
+        counters.reset()
+    }
+
+    /**
+     * Calls with the most incorporation steps, the heaviest first.
+     */
+    fun getHeaviestCalls(): List<CallStatistics> =
+        synchronized(heaviestCalls) { heaviestCalls.sortedByDescending { it.incorporationSteps } }
+
+    companion object {
+        private const val HEAVIEST_CALLS_LIMIT = 10
+    }
+}
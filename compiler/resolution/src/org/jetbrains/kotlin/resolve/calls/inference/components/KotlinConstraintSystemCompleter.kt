@@ -38,6 +38,8 @@ class KotlinConstraintSystemCompleter(
         fun addError(error: KotlinCallDiagnostic)
 
         fun fixVariable(variable: NewTypeVariable, resultType: UnwrappedType)
+
+        val counters: ConstraintSystemCounters
     }
 
     fun runCompletion(
@@ -82,6 +84,7 @@ class KotlinConstraintSystemCompleter(
             if (variableForFixation.hasProperConstraint || completionMode == ConstraintSystemCompletionMode.FULL) {
                 val variableWithConstraints = c.notFixedTypeVariables.getValue(variableForFixation.variable)
 
+                c.counters.fixationIterations++
                 fixVariable(c, topLevelType, variableWithConstraints, postponedKtPrimitives)
 
                 if (!variableForFixation.hasProperConstraint) {
@@ -26,6 +26,13 @@ abstract class TypeCheckerContextForConstraintSystem : ClassicTypeCheckerContext
 
     abstract fun addLowerConstraint(typeVariable: TypeConstructor, subType: UnwrappedType)
 
+    // Types without type variables of the system are checked the same way as by ClassicTypeCheckerContext, with no constraints added
+    override val subtypingCache: SubtypingCache?
+        get() = SubtypingCache.getCurrent(errorTypeEqualsToAnything, allowedTypeVariable)
+
+    override fun isCacheableForSubtyping(type: KotlinTypeMarker): Boolean =
+        super.isCacheableForSubtyping(type) && !(type as UnwrappedType).contains { it.anyBound(this::isMyTypeVariable) }
+
     override fun getLowerCapturedTypePolicy(subType: SimpleTypeMarker, superType: CapturedTypeMarker): LowerCapturedTypePolicy {
         require(subType is SimpleType)
         require(superType is NewCapturedType)
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.resolve.calls.tower
+
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.scopes.ImportingScope
+import org.jetbrains.kotlin.resolve.scopes.SyntheticScopes
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Descriptors which importing scopes contribute for a name, shared by all calls [TowerResolver] resolves in a module.
+ *
+ * In build scripts and generated code, the same few names are resolved in the same file over and over again, and for each call
+ * the tower asks every import of the file for them. What an importing scope contributes for a name doesn't depend on the call:
+ * importing scopes never contain local declarations, and the scopes of a file are created anew when the file changes.
+ * Candidates themselves are still created for every call, since their dispatch receivers and visibility depend on the call site.
+ */
+class ImportedDescriptorsCache {
+    enum class Kind {
+        VARIABLES, OBJECTS, FUNCTIONS, CLASSIFIER
+    }
+
+    // Functions and constructors also depend on the synthetic scopes of the call site
+    private data class Key(val kind: Kind, val name: Name, val syntheticScopes: SyntheticScopes?)
+
+    private val descriptorsByScope = Collections.synchronizedMap(WeakHashMap<ImportingScope, ConcurrentHashMap<Key, Any>>())
+
+    fun <T : Any> getOrCompute(
+        scope: ImportingScope,
+        kind: Kind,
+        name: Name,
+        syntheticScopes: SyntheticScopes?,
+        onCacheHit: () -> Unit,
+        compute: () -> T
+    ): T {
+        val descriptorsByKey = descriptorsByScope.getOrPut(scope) { ConcurrentHashMap() }
+        val key = Key(kind, name, syntheticScopes)
+
+        @Suppress("UNCHECKED_CAST")
+        val cached = descriptorsByKey[key] as T?
+        if (cached != null) {
+            onCacheHit()
+            return cached
+        }
+
+        // The descriptors may be computed twice by different threads, but the results are the same
+        return compute().also { descriptorsByKey[key] = it }
+    }
+
+    companion object {
+        private val ENABLED = "true" == System.getProperty("kotlin.resolve.imported.descriptors.cache")
+
+        fun createIfEnabled(): ImportedDescriptorsCache? = if (ENABLED) ImportedDescriptorsCache() else null
+    }
+}
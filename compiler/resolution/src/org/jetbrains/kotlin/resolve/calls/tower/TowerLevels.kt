@@ -230,7 +230,7 @@ internal open class ScopeBasedTowerLevel protected constructor(
     override fun getVariables(
         name: Name,
         extensionReceiver: ReceiverValueWithSmartCastInfo?
-    ): Collection<CandidateWithBoundDispatchReceiver> = resolutionScope.getContributedVariables(name, location).map {
+    ): Collection<CandidateWithBoundDispatchReceiver> = contributedVariables(name).map {
         createCandidateDescriptor(
             it,
             dispatchReceiver = null,
@@ -242,7 +242,7 @@ internal open class ScopeBasedTowerLevel protected constructor(
         name: Name,
         extensionReceiver: ReceiverValueWithSmartCastInfo?
     ): Collection<CandidateWithBoundDispatchReceiver> =
-        resolutionScope.getContributedObjectVariablesIncludeDeprecated(name, location).map { (classifier, isDeprecated) ->
+        contributedObjectVariables(name).map { (classifier, isDeprecated) ->
             createCandidateDescriptor(
                 classifier,
                 dispatchReceiver = null,
@@ -256,7 +256,7 @@ internal open class ScopeBasedTowerLevel protected constructor(
     ): Collection<CandidateWithBoundDispatchReceiver> {
         val result: ArrayList<CandidateWithBoundDispatchReceiver> = ArrayList()
 
-        resolutionScope.getContributedFunctionsAndConstructors(name, location, scopeTower.syntheticScopes).mapTo(result) {
+        contributedFunctionsAndConstructors(name).mapTo(result) {
             createCandidateDescriptor(
                 it,
                 dispatchReceiver = null,
@@ -265,7 +265,7 @@ internal open class ScopeBasedTowerLevel protected constructor(
         }
 
         // Add constructors of deprecated classifier with an additional diagnostic
-        val descriptorWithDeprecation = resolutionScope.getContributedClassifierIncludeDeprecated(name, location)
+        val descriptorWithDeprecation = contributedClassifier(name)
         if (descriptorWithDeprecation != null && descriptorWithDeprecation.isDeprecated) {
             getConstructorsOfClassifier(descriptorWithDeprecation.descriptor).mapTo(result) {
                 createCandidateDescriptor(
@@ -282,12 +282,48 @@ internal open class ScopeBasedTowerLevel protected constructor(
     override fun recordLookup(name: Name) {
         resolutionScope.recordLookup(name, location)
     }
+
+    protected open fun contributedVariables(name: Name): Collection<VariableDescriptor> =
+        resolutionScope.getContributedVariables(name, location)
+
+    protected open fun contributedObjectVariables(name: Name): Collection<DescriptorWithDeprecation<VariableDescriptor>> =
+        resolutionScope.getContributedObjectVariablesIncludeDeprecated(name, location)
+
+    protected open fun contributedFunctionsAndConstructors(name: Name): Collection<FunctionDescriptor> =
+        resolutionScope.getContributedFunctionsAndConstructors(name, location, scopeTower.syntheticScopes)
+
+    protected open fun contributedClassifier(name: Name): DescriptorWithDeprecation<ClassifierDescriptor>? =
+        resolutionScope.getContributedClassifierIncludeDeprecated(name, location)
 }
 
 internal class ImportingScopeBasedTowerLevel(
     scopeTower: ImplicitScopeTower,
-    importingScope: ImportingScope
-) : ScopeBasedTowerLevel(scopeTower, importingScope)
+    private val importingScope: ImportingScope,
+    private val descriptorsCache: ImportedDescriptorsCache? = null
+) : ScopeBasedTowerLevel(scopeTower, importingScope) {
+    override fun contributedVariables(name: Name) =
+        cached(ImportedDescriptorsCache.Kind.VARIABLES, name) { super.contributedVariables(name) }
+
+    override fun contributedObjectVariables(name: Name) =
+        cached(ImportedDescriptorsCache.Kind.OBJECTS, name) { super.contributedObjectVariables(name) }
+
+    override fun contributedFunctionsAndConstructors(name: Name) =
+        cached(ImportedDescriptorsCache.Kind.FUNCTIONS, name, scopeTower.syntheticScopes) { super.contributedFunctionsAndConstructors(name) }
+
+    override fun contributedClassifier(name: Name) =
+        cached(ImportedDescriptorsCache.Kind.CLASSIFIER, name) { listOfNotNull(super.contributedClassifier(name)) }.firstOrNull()
+
+    private inline fun <T : Any> cached(
+        kind: ImportedDescriptorsCache.Kind,
+        name: Name,
+        syntheticScopes: SyntheticScopes? = null,
+        crossinline compute: () -> T
+    ): T {
+        if (descriptorsCache == null) return compute()
+        // Lookups are recorded by the scope only when the descriptors are computed, so they're recorded here for every other call
+        return descriptorsCache.getOrCompute(importingScope, kind, name, syntheticScopes, { recordLookup(name) }) { compute() }
+    }
+}
 
 internal class SyntheticScopeBasedTowerLevel(
     scopeTower: ImplicitScopeTower,
@@ -75,6 +75,8 @@ interface ScopeTowerProcessor<out C> {
 }
 
 class TowerResolver {
+    private val importedDescriptorsCache = ImportedDescriptorsCache.createIfEnabled()
+
     fun <C : Candidate> runResolve(
         scopeTower: ImplicitScopeTower,
         processor: ScopeTowerProcessor<C>,
@@ -146,7 +148,7 @@ class TowerResolver {
                     }
                 } else {
                     addLevel(
-                        ImportingScopeBasedTowerLevel(this@createNonLocalLevels, scope as ImportingScope),
+                        ImportingScopeBasedTowerLevel(this@createNonLocalLevels, scope as ImportingScope, importedDescriptorsCache),
                         scope.mayFitForName(name)
                     )
                 }
@@ -195,8 +197,8 @@ class TowerResolver {
                         ?.let(this::processImplicitReceiver)
                         ?.let { return it }
                 } else {
-                    TowerData.TowerLevel(ImportingScopeBasedTowerLevel(implicitScopeTower, scope as ImportingScope))
-                        .process(scope.mayFitForName(name))?.let { return it }
+                    val importingLevel = ImportingScopeBasedTowerLevel(implicitScopeTower, scope as ImportingScope, importedDescriptorsCache)
+                    TowerData.TowerLevel(importingLevel).process(scope.mayFitForName(name))?.let { return it }
                 }
             }
 
@@ -16,9 +16,6 @@
 
 package org.jetbrains.kotlin.cfg;
 
-import com.google.common.collect.Lists;
-import com.intellij.openapi.util.text.StringUtil;
-import javaslang.Tuple2;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.cfg.pseudocode.PseudocodeImpl;
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.Instruction;
@@ -29,7 +26,6 @@ import org.jetbrains.kotlin.cfg.variable.VariableUseState;
 import org.jetbrains.kotlin.descriptors.VariableDescriptor;
 import org.jetbrains.kotlin.resolve.BindingContext;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -41,13 +37,16 @@ public abstract class AbstractDataFlowTest extends AbstractPseudocodeTest {
             @NotNull StringBuilder out,
             @NotNull BindingContext bindingContext
     ) {
-        PseudocodeVariablesData pseudocodeVariablesData = new PseudocodeVariablesData(pseudocode.getRootPseudocode(), bindingContext);
+        PseudocodeVariablesData pseudocodeVariablesData = new PseudocodeVariablesData(pseudocode.getRootPseudocode(), bindingContext, false);
         Map<Instruction, Edges<VariableInitReadOnlyControlFlowInfo>> variableInitializers =
                 pseudocodeVariablesData.getVariableInitializers();
         Map<Instruction, Edges<ReadOnlyControlFlowInfo<VariableDescriptor, VariableUseState>>> useStatusData =
                 pseudocodeVariablesData.getVariableUseStatusData();
         String initPrefix = "    INIT:";
         String usePrefix = "    USE:";
+
+        PackedVariablesAnalysisChecker.checkSameData(pseudocode, pseudocodeVariablesData, bindingContext);
+
         int initializersColumnWidth = countDataColumnWidth(initPrefix, pseudocode.getInstructionsIncludingDeadCode(), variableInitializers,
                                                            pseudocodeVariablesData);
 
@@ -57,14 +56,14 @@ public abstract class AbstractDataFlowTest extends AbstractPseudocodeTest {
             Edges<VariableInitReadOnlyControlFlowInfo> previousInitializersEdges = variableInitializers.get(prev);
             String initializersData = "";
             if (initializersEdges != null && !initializersEdges.equals(previousInitializersEdges)) {
-                initializersData = dumpEdgesData(initPrefix, initializersEdges, pseudocodeVariablesData);
+                initializersData = PackedVariablesAnalysisChecker.dumpEdgesData(initPrefix, initializersEdges, pseudocodeVariablesData);
             }
             result.append(String.format("%1$-" + initializersColumnWidth + "s", initializersData));
 
             Edges<ReadOnlyControlFlowInfo<VariableDescriptor, VariableUseState>> useStatusEdges = useStatusData.get(instruction);
             Edges<ReadOnlyControlFlowInfo<VariableDescriptor, VariableUseState>> nextUseStatusEdges = useStatusData.get(next);
             if (useStatusEdges != null && !useStatusEdges.equals(nextUseStatusEdges)) {
-                result.append(dumpEdgesData(usePrefix, useStatusEdges, pseudocodeVariablesData));
+                result.append(PackedVariablesAnalysisChecker.dumpEdgesData(usePrefix, useStatusEdges, pseudocodeVariablesData));
             }
             return result.toString();
         });
@@ -80,7 +79,7 @@ public abstract class AbstractDataFlowTest extends AbstractPseudocodeTest {
         for (Instruction instruction : instructions) {
             Edges<VariableInitReadOnlyControlFlowInfo> edges = data.get(instruction);
             if (edges == null) continue;
-            int length = dumpEdgesData(prefix, edges, variablesData).length();
+            int length = PackedVariablesAnalysisChecker.dumpEdgesData(prefix, edges, variablesData).length();
             if (maxWidth < length) {
                 maxWidth = length;
             }
@@ -88,32 +87,4 @@ public abstract class AbstractDataFlowTest extends AbstractPseudocodeTest {
 
         return maxWidth;
     }
-
-    @NotNull
-    private static <S, I extends ReadOnlyControlFlowInfo<VariableDescriptor, S>> String dumpEdgesData(
-            String prefix,
-            @NotNull Edges<I> edges,
-            @NotNull PseudocodeVariablesData variablesData
-    ) {
-        return prefix +
-               " in: " + renderVariableMap(edges.getIncoming().asMap(), variablesData) +
-               " out: " + renderVariableMap(edges.getOutgoing().asMap(), variablesData);
-    }
-
-    private static <S> String renderVariableMap(
-            javaslang.collection.Map<VariableDescriptor, S> map,
-            PseudocodeVariablesData variablesData
-    ) {
-        List<String> result = Lists.newArrayList();
-        for (Tuple2<VariableDescriptor, S> entry : map) {
-            VariableDescriptor variable = entry._1;
-            S state = entry._2;
-
-            if (variablesData.isVariableWithTrivialInitializer(variable)) continue;
-
-            result.add(variable.getName() + "=" + state);
-        }
-        Collections.sort(result);
-        return "{" + StringUtil.join(result, ", ") + "}";
-    }
 }
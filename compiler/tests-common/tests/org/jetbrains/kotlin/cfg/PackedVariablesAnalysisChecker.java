@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cfg;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.util.PsiTreeUtil;
+import javaslang.Tuple2;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cfg.pseudocode.Pseudocode;
+import org.jetbrains.kotlin.cfg.pseudocode.PseudocodeUtil;
+import org.jetbrains.kotlin.cfg.pseudocode.instructions.Instruction;
+import org.jetbrains.kotlin.cfg.pseudocode.instructions.special.LocalFunctionDeclarationInstruction;
+import org.jetbrains.kotlin.cfg.pseudocodeTraverser.Edges;
+import org.jetbrains.kotlin.cfg.variable.PseudocodeVariablesData;
+import org.jetbrains.kotlin.descriptors.VariableDescriptor;
+import org.jetbrains.kotlin.psi.*;
+import org.jetbrains.kotlin.resolve.AnalyzingUtils;
+import org.jetbrains.kotlin.resolve.BindingContext;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.TestCase.assertEquals;
+
+/**
+ * Checks that the packed variable analysis (see {@code PackedVariablesAnalysis}) computes the same data
+ * as the persistent map based one for every instruction.
+ */
+public class PackedVariablesAnalysisChecker {
+    private PackedVariablesAnalysisChecker() {
+    }
+
+    /**
+     * Checks the pseudocode of every non-local class, constructor, function and property accessor of the file, as control flow
+     * analysis of the compiler does. Local declarations are checked as a part of the pseudocode they are declared in.
+     * Files with syntax errors are skipped.
+     */
+    public static void checkFile(@NotNull KtFile file, @NotNull BindingContext bindingContext) {
+        if (!AnalyzingUtils.getSyntaxErrorRanges(file).isEmpty()) return;
+
+        for (KtDeclaration declaration : PsiTreeUtil.findChildrenOfAnyType(
+                file, KtClassOrObject.class, KtSecondaryConstructor.class, KtNamedFunction.class, KtPropertyAccessor.class
+        )) {
+            if (KtPsiUtil.isLocal(declaration)) continue;
+
+            Pseudocode pseudocode = PseudocodeUtil.generatePseudocode(declaration, bindingContext);
+            checkWithLocalDeclarations(
+                    pseudocode,
+                    new PseudocodeVariablesData(pseudocode, bindingContext, false),
+                    new PseudocodeVariablesData(pseudocode, bindingContext, true)
+            );
+        }
+    }
+
+    /**
+     * Checks the instructions of the pseudocode, which may be a local declaration, with the data of its root pseudocode.
+     */
+    public static void checkSameData(
+            @NotNull Pseudocode pseudocode,
+            @NotNull PseudocodeVariablesData mapBasedData,
+            @NotNull BindingContext bindingContext
+    ) {
+        checkSameData(pseudocode, mapBasedData, new PseudocodeVariablesData(pseudocode.getRootPseudocode(), bindingContext, true));
+    }
+
+    // Data of the root pseudocode covers the instructions of its local declarations as well
+    private static void checkWithLocalDeclarations(
+            @NotNull Pseudocode pseudocode,
+            @NotNull PseudocodeVariablesData mapBasedData,
+            @NotNull PseudocodeVariablesData packedData
+    ) {
+        checkSameData(pseudocode, mapBasedData, packedData);
+        for (LocalFunctionDeclarationInstruction instruction : pseudocode.getLocalDeclarations()) {
+            checkWithLocalDeclarations(instruction.getBody(), mapBasedData, packedData);
+        }
+    }
+
+    private static void checkSameData(
+            @NotNull Pseudocode pseudocode,
+            @NotNull PseudocodeVariablesData mapBasedData,
+            @NotNull PseudocodeVariablesData packedData
+    ) {
+        checkSameData("INIT:", pseudocode, mapBasedData.getVariableInitializers(), packedData.getVariableInitializers(), mapBasedData);
+        checkSameData("USE:", pseudocode, mapBasedData.getVariableUseStatusData(), packedData.getVariableUseStatusData(), mapBasedData);
+    }
+
+    private static <S, I extends ReadOnlyControlFlowInfo<VariableDescriptor, S>> void checkSameData(
+            @NotNull String prefix,
+            @NotNull Pseudocode pseudocode,
+            @NotNull Map<Instruction, Edges<I>> expected,
+            @NotNull Map<Instruction, Edges<I>> actual,
+            @NotNull PseudocodeVariablesData variablesData
+    ) {
+        for (Instruction instruction : pseudocode.getInstructionsIncludingDeadCode()) {
+            Edges<I> expectedEdges = expected.get(instruction);
+            Edges<I> actualEdges = actual.get(instruction);
+            assertEquals("Packed analysis data differs for " + instruction + " in " + pseudocode.getCorrespondingElement().getText(),
+                         expectedEdges == null ? null : dumpEdgesData(prefix, expectedEdges, variablesData),
+                         actualEdges == null ? null : dumpEdgesData(prefix, actualEdges, variablesData));
+        }
+    }
+
+    @NotNull
+    static <S, I extends ReadOnlyControlFlowInfo<VariableDescriptor, S>> String dumpEdgesData(
+            String prefix,
+            @NotNull Edges<I> edges,
+            @NotNull PseudocodeVariablesData variablesData
+    ) {
+        return prefix +
+               " in: " + renderVariableMap(edges.getIncoming().asMap(), variablesData) +
+               " out: " + renderVariableMap(edges.getOutgoing().asMap(), variablesData);
+    }
+
+    private static <S> String renderVariableMap(
+            javaslang.collection.Map<VariableDescriptor, S> map,
+            PseudocodeVariablesData variablesData
+    ) {
+        List<String> result = Lists.newArrayList();
+        for (Tuple2<VariableDescriptor, S> entry : map) {
+            VariableDescriptor variable = entry._1;
+            S state = entry._2;
+
+            if (variablesData.isVariableWithTrivialInitializer(variable)) continue;
+
+            result.add(variable.getName() + "=" + state);
+        }
+        Collections.sort(result);
+        return "{" + StringUtil.join(result, ", ") + "}";
+    }
+}
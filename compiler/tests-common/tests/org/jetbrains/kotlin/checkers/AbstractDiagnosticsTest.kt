@@ -14,6 +14,7 @@ import org.jetbrains.kotlin.TestsCompilerError
 import org.jetbrains.kotlin.analyzer.AnalysisResult
 import org.jetbrains.kotlin.analyzer.common.CommonAnalyzerFacade
 import org.jetbrains.kotlin.builtins.jvm.JvmBuiltIns
+import org.jetbrains.kotlin.cfg.PackedVariablesAnalysisChecker
 import org.jetbrains.kotlin.cli.jvm.compiler.NoScopeRecordCliBindingTrace
 import org.jetbrains.kotlin.cli.jvm.compiler.TopDownAnalyzerFacadeForJVM
 import org.jetbrains.kotlin.config.*
@@ -140,6 +141,7 @@ abstract class AbstractDiagnosticsTest : BaseDiagnosticsTest() {
 
             moduleBindings[testModule] = result.bindingContext
             checkAllResolvedCallsAreCompleted(ktFiles, result.bindingContext, languageVersionSettings)
+            ktFiles.forEach { PackedVariablesAnalysisChecker.checkFile(it, result.bindingContext) }
         }
 
         // We want to always create a test data file (txt) if it was missing,
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import org.jetbrains.kotlin.backend.common.output.OutputFile
+import org.jetbrains.kotlin.backend.common.output.SimpleOutputBinaryFile
+import org.jetbrains.kotlin.backend.common.output.SimpleOutputFileCollection
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import org.jetbrains.kotlin.cli.common.output.writeAllTo
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.testFramework.KtUsefulTestCase
+import java.io.File
+import java.util.jar.JarFile
+
+class StreamingOutputWriterTest : KtUsefulTestCase() {
+    private lateinit var tmpDir: File
+
+    override fun setUp() {
+        super.setUp()
+        tmpDir = KotlinTestUtils.tmpDirForTest(this)
+    }
+
+    fun testNotEnabledByDefault() {
+        val configuration = CompilerConfiguration().apply {
+            put(JVMConfigurationKeys.OUTPUT_DIRECTORY, File(tmpDir, "out"))
+        }
+        assertNull(StreamingOutputWriter.createIfEnabled(configuration, mainClass = null))
+    }
+
+    fun testDirectoryOutputIsTheSameAsBuffered() {
+        val files = outputFiles(20)
+        val streamedDir = File(tmpDir, "streamed")
+        val bufferedDir = File(tmpDir, "buffered")
+
+        val messages = ArrayList<String>()
+        createWriter(outputDir = streamedDir, messages = messages).use { writer ->
+            files.chunked(3).forEach { writer.write(SimpleOutputFileCollection(it)) }
+        }
+        SimpleOutputFileCollection(files).writeAllTo(bufferedDir)
+
+        assertEquals(directoryContents(bufferedDir), directoryContents(streamedDir))
+        // Every file is reported with its sources, as incremental compilation relies on it
+        assertEquals(files.size, messages.size)
+        assertTrue(messages.all { "Source.kt" in it })
+    }
+
+    fun testJarOutputIsTheSameAsBuffered() {
+        val files = outputFiles(20)
+        val streamedJar = File(tmpDir, "streamed.jar")
+        val bufferedJar = File(tmpDir, "buffered.jar")
+        val mainClass = FqName("p.MainKt")
+
+        val messages = ArrayList<String>()
+        createWriter(jar = streamedJar, mainClass = mainClass, messages = messages).use { writer ->
+            files.chunked(3).forEach { writer.write(SimpleOutputFileCollection(it)) }
+        }
+        CompileEnvironmentUtil.writeToJar(bufferedJar, false, mainClass, SimpleOutputFileCollection(files))
+
+        assertEquals(jarContents(bufferedJar), jarContents(streamedJar))
+        assertEquals(mainClass.asString(), JarFile(streamedJar).use { it.manifest.mainAttributes.getValue("Main-Class") })
+        // The jar is reported once, when it is complete
+        assertEquals(1, messages.size)
+        assertNoTemporaryFiles()
+    }
+
+    fun testFilesLargerThanPendingLimitAreWritten() {
+        val large = SimpleOutputBinaryFile(listOf(File("Source.kt")), "p/Large.class", ByteArray(40 * 1024 * 1024) { it.toByte() })
+        val outputDir = File(tmpDir, "out")
+
+        createWriter(outputDir = outputDir).use { writer ->
+            writer.write(SimpleOutputFileCollection(listOf(large)))
+            writer.write(SimpleOutputFileCollection(listOf(large)))
+        }
+
+        assertTrue(large.asByteArray().contentEquals(File(outputDir, "p/Large.class").readBytes()))
+    }
+
+    fun testFailedJarOutputKeepsPreviousJar() {
+        val jar = File(tmpDir, "out.jar").apply { writeText("previous") }
+        val duplicate = outputFiles(1)
+
+        val writer = createWriter(jar = jar)
+        try {
+            writer.write(SimpleOutputFileCollection(duplicate))
+            writer.write(SimpleOutputFileCollection(duplicate))
+            writer.close()
+            fail("Writing a duplicate jar entry must fail")
+        } catch (e: CompileEnvironmentException) {
+            // expected, the failure is rethrown either by write or by close
+        } finally {
+            writer.abort()
+        }
+
+        assertEquals("previous", jar.readText())
+        assertNoTemporaryFiles()
+    }
+
+    fun testAbortedJarOutputIsNotCreated() {
+        val jar = File(tmpDir, "out.jar")
+
+        val writer = createWriter(jar = jar)
+        writer.write(SimpleOutputFileCollection(outputFiles(5)))
+        writer.abort()
+        // Closing after abort does nothing
+        writer.close()
+
+        assertFalse(jar.exists())
+        assertNoTemporaryFiles()
+    }
+
+    fun testFailedDirectoryOutputIsReported() {
+        val outputDir = File(tmpDir, "out").apply { mkdirs() }
+        // A file where a package directory is expected
+        File(outputDir, "p").writeText("")
+
+        val writer = createWriter(outputDir = outputDir)
+        try {
+            writer.write(SimpleOutputFileCollection(outputFiles(1)))
+            writer.close()
+            fail("Writing to a path with a file instead of a directory must fail")
+        } catch (e: CompileEnvironmentException) {
+            // expected
+        } finally {
+            writer.abort()
+        }
+    }
+
+    fun testInvalidJarPath() {
+        try {
+            createWriter(jar = File(tmpDir, "missing/out.jar"))
+            fail("Jar in a missing directory must not be created")
+        } catch (e: CompileEnvironmentException) {
+            // expected
+        }
+        assertFalse(File(tmpDir, "missing").exists())
+    }
+
+    private fun createWriter(
+        outputDir: File? = null,
+        jar: File? = null,
+        mainClass: FqName? = null,
+        messages: MutableList<String>? = null
+    ): StreamingOutputWriter {
+        val configuration = CompilerConfiguration().apply {
+            put(JVMConfigurationKeys.STREAM_OUTPUT, true)
+            outputDir?.let { put(JVMConfigurationKeys.OUTPUT_DIRECTORY, it) }
+            jar?.let { put(JVMConfigurationKeys.OUTPUT_JAR, it) }
+            if (messages != null) {
+                put(CommonConfigurationKeys.REPORT_OUTPUT_FILES, true)
+                put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, object : MessageCollector {
+                    override fun report(severity: CompilerMessageSeverity, message: String, location: CompilerMessageLocation?) {
+                        if (severity == CompilerMessageSeverity.OUTPUT) messages.add(message)
+                    }
+
+                    override fun clear() {}
+                    override fun hasErrors() = false
+                })
+            }
+        }
+        return StreamingOutputWriter.createIfEnabled(configuration, mainClass)!!
+    }
+
+    private fun outputFiles(count: Int): List<OutputFile> =
+        (0 until count).map { i ->
+            SimpleOutputBinaryFile(listOf(File("Source.kt")), "p/C$i.class", ByteArray(1000 + i) { (it * i).toByte() })
+        }
+
+    private fun directoryContents(dir: File): Map<String, List<Byte>> =
+        dir.walkTopDown().filter { it.isFile }.associate { it.relativeTo(dir).invariantSeparatorsPath to it.readBytes().toList() }
+
+    private fun jarContents(jar: File): List<Pair<String, List<Byte>>> =
+        JarFile(jar).use { jarFile ->
+            jarFile.entries().toList().map { entry -> entry.name to jarFile.getInputStream(entry).readBytes().toList() }
+        }
+
+    private fun assertNoTemporaryFiles() {
+        assertEquals(emptyList<String>(), tmpDir.list().filter { it.endsWith(".tmp") })
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.index
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
+import com.intellij.util.io.URLUtil
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironment
+import org.jetbrains.kotlin.test.TestJdkKind
+import java.io.File
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class JarPackagesCacheTest : KotlinTestWithEnvironment() {
+    private lateinit var tmpDir: File
+
+    override fun createEnvironment(): KotlinCoreEnvironment {
+        tmpDir = KotlinTestUtils.tmpDir("jar-packages-cache-test")
+
+        val configuration = KotlinTestUtils.newConfiguration(ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK)
+        return KotlinCoreEnvironment.createForTests(testRootDisposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES)
+    }
+
+    fun testPackageDirectoriesOfJar() {
+        val jar = createJar("lib.jar", "a/b/C.class", "a/D.class", "x/y/z/E.class")
+        val cache = JarPackagesCache()
+
+        assertEquals(setOf("a", "a/b", "x", "x/y", "x/y/z"), cache.getPackageDirectories(jarRoot(jar)))
+        assertEquals(0L, cache.hits.get())
+        assertEquals(1L, cache.misses.get())
+
+        assertEquals(setOf("a", "a/b", "x", "x/y", "x/y/z"), cache.getPackageDirectories(jarRoot(jar)))
+        assertEquals(1L, cache.hits.get())
+        assertEquals(1L, cache.misses.get())
+    }
+
+    fun testChangedJarIsIndexedAgain() {
+        val jar = createJar("lib.jar", "a/C.class")
+        val cache = JarPackagesCache()
+        assertEquals(setOf("a"), cache.getPackageDirectories(jarRoot(jar)))
+
+        createJar("lib.jar", "b/C.class", "b/c/D.class")
+        jar.setLastModified(jar.lastModified() + 10000)
+        // The daemon resets the jar file system between compilations in the same way
+        (StandardFileSystems.jar() as CoreJarFileSystem).clearHandlersCache()
+
+        assertEquals(setOf("b", "b/c"), cache.getPackageDirectories(jarRoot(jar)))
+        assertEquals(2L, cache.misses.get())
+    }
+
+    fun testOnlyJarRootsAreCached() {
+        val dir = File(tmpDir, "classes").apply { mkdirs() }
+        val dirRoot = StandardFileSystems.local().findFileByPath(dir.path)!!
+        val jar = createJar("lib.jar", "a/C.class")
+        val cache = JarPackagesCache()
+
+        assertNull(cache.getPackageDirectories(JavaRoot(dirRoot, JavaRoot.RootType.BINARY)))
+        assertNull(cache.getPackageDirectories(JavaRoot(jarFileSystemRoot(jar), JavaRoot.RootType.BINARY, FqName("a"))))
+        assertEquals(0L, cache.misses.get())
+    }
+
+    fun testLeastRecentlyUsedJarsAreEvicted() {
+        val first = createJar("first.jar", "a/C.class")
+        val second = createJar("second.jar", "b/C.class")
+        val cache = JarPackagesCache(maxCachedBytes = 1)
+
+        cache.getPackageDirectories(jarRoot(first))
+        cache.getPackageDirectories(jarRoot(second))
+        assertEquals(1L, cache.evictions.get())
+
+        // The most recently added jar is kept even if it alone exceeds the budget
+        cache.getPackageDirectories(jarRoot(second))
+        assertEquals(1L, cache.hits.get())
+
+        cache.getPackageDirectories(jarRoot(first))
+        assertEquals(3L, cache.misses.get())
+    }
+
+    fun testSeveralJarsAreEvictedForLargeOne() {
+        val first = createJar("first.jar", "a/C.class")
+        val second = createJar("second.jar", "b/C.class")
+        val large = createJar("large.jar", *Array(10) { "p$it/C.class" })
+        val cache = JarPackagesCache(maxCachedBytes = 200)
+
+        cache.getPackageDirectories(jarRoot(first))
+        cache.getPackageDirectories(jarRoot(second))
+        assertEquals(0L, cache.evictions.get())
+
+        cache.getPackageDirectories(jarRoot(large))
+        assertEquals(2L, cache.evictions.get())
+
+        cache.getPackageDirectories(jarRoot(large))
+        assertEquals(1L, cache.hits.get())
+    }
+
+    fun testIndexSkipsJarsWithoutPackage() {
+        val withoutPackage = createJar("without.jar", "other/C.class")
+        val withPackage = createJar("with.jar", "foo/bar/C.class")
+        val cache = JarPackagesCache()
+        val index = JvmDependenciesIndexImpl(listOf(jarRoot(withoutPackage), jarRoot(withPackage)), cache)
+
+        val found = ArrayList<VirtualFile>()
+        index.traverseDirectoriesInPackage(FqName("foo.bar"), JavaRoot.OnlyBinary) { dir, _ ->
+            found.add(dir)
+            true
+        }
+
+        assertEquals(listOf(jarFileSystemRoot(withPackage).findFileByRelativePath("foo/bar")), found)
+        assertEquals(2L, cache.misses.get())
+    }
+
+    fun testConcurrentLookups() {
+        val jars = (0 until 8).map { createJar("lib$it.jar", "p$it/q/C.class") }
+        val cache = JarPackagesCache()
+        val roots = jars.map(this::jarRoot)
+
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val results = (0 until 64).map { i ->
+                executor.submit(Callable { cache.getPackageDirectories(roots[i % roots.size]) })
+            }.map { it.get(30, TimeUnit.SECONDS) }
+
+            for ((i, result) in results.withIndex()) {
+                assertEquals(setOf("p${i % roots.size}", "p${i % roots.size}/q"), result)
+            }
+            assertEquals(64L, cache.hits.get() + cache.misses.get())
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    private fun jarRoot(jar: File): JavaRoot = JavaRoot(jarFileSystemRoot(jar), JavaRoot.RootType.BINARY)
+
+    private fun jarFileSystemRoot(jar: File): VirtualFile =
+        StandardFileSystems.jar().findFileByPath(jar.path + URLUtil.JAR_SEPARATOR)!!
+
+    private fun createJar(name: String, vararg classFiles: String): File {
+        val jar = File(tmpDir, name)
+        ZipOutputStream(jar.outputStream().buffered()).use { output ->
+            for (classFile in classFiles) {
+                output.putNextEntry(ZipEntry(classFile))
+                output.write(byteArrayOf(0xCA.toByte(), 0xFE.toByte(), 0xBA.toByte(), 0xBE.toByte()))
+                output.closeEntry()
+            }
+        }
+        return jar
+    }
+}
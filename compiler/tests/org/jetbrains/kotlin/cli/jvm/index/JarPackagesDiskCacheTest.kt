@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.index
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import java.io.File
+
+class JarPackagesDiskCacheTest : TestCase() {
+    private lateinit var tmpDir: File
+    private lateinit var cacheDir: File
+    private lateinit var jar: File
+
+    override fun setUp() {
+        super.setUp()
+        tmpDir = KotlinTestUtils.tmpDir("jar-packages-disk-cache-test")
+        cacheDir = File(tmpDir, "cache")
+        jar = File(tmpDir, "lib.jar").apply { writeBytes(ByteArray(16)) }
+    }
+
+    fun testWrittenDirectoriesAreReadBack() {
+        val directories = setOf("a", "a/b", "x/y/z", "unicode/é")
+        JarPackagesDiskCache(cacheDir).write(jar, jar.length(), jar.lastModified(), directories)
+
+        // A new instance simulates another compiler process
+        assertEquals(directories, JarPackagesDiskCache(cacheDir).read(jar, jar.length(), jar.lastModified()))
+        assertTrue(cacheDir.listFiles().none { it.name.endsWith(".tmp") })
+    }
+
+    fun testEmptyDirectoriesAreReadBack() {
+        JarPackagesDiskCache(cacheDir).write(jar, jar.length(), jar.lastModified(), emptySet())
+        assertEquals(emptySet<String>(), JarPackagesDiskCache(cacheDir).read(jar, jar.length(), jar.lastModified()))
+    }
+
+    fun testNothingIsReadForUnknownJar() {
+        assertNull(JarPackagesDiskCache(cacheDir).read(jar, jar.length(), jar.lastModified()))
+    }
+
+    fun testChangedJarIsInvalidated() {
+        val cache = JarPackagesDiskCache(cacheDir)
+        cache.write(jar, jar.length(), jar.lastModified(), setOf("a"))
+
+        assertNull(cache.read(jar, jar.length() + 1, jar.lastModified()))
+        assertNull(cache.read(jar, jar.length(), jar.lastModified() + 1000))
+
+        cache.write(jar, jar.length() + 1, jar.lastModified(), setOf("b"))
+        assertEquals(setOf("b"), cache.read(jar, jar.length() + 1, jar.lastModified()))
+        assertNull(cache.read(jar, jar.length(), jar.lastModified()))
+    }
+
+    fun testJarsWithSameNameAreKeptApart() {
+        val otherJar = File(tmpDir, "other/lib.jar").apply {
+            parentFile.mkdirs()
+            writeBytes(ByteArray(16))
+            setLastModified(jar.lastModified())
+        }
+        val cache = JarPackagesDiskCache(cacheDir)
+        cache.write(jar, jar.length(), jar.lastModified(), setOf("a"))
+        cache.write(otherJar, otherJar.length(), otherJar.lastModified(), setOf("b"))
+
+        assertEquals(setOf("a"), cache.read(jar, jar.length(), jar.lastModified()))
+        assertEquals(setOf("b"), cache.read(otherJar, otherJar.length(), otherJar.lastModified()))
+    }
+
+    fun testCorruptedFileIsIgnoredAndRewritten() {
+        val cache = JarPackagesDiskCache(cacheDir)
+        cache.write(jar, jar.length(), jar.lastModified(), setOf("a", "b"))
+
+        val cacheFile = cacheDir.listFiles().single()
+        cacheFile.writeBytes(cacheFile.readBytes().copyOf(cacheFile.length().toInt() - 3))
+        assertNull(cache.read(jar, jar.length(), jar.lastModified()))
+
+        cache.write(jar, jar.length(), jar.lastModified(), setOf("c"))
+        assertEquals(setOf("c"), cache.read(jar, jar.length(), jar.lastModified()))
+    }
+
+    fun testSharedInstanceIsReusedForSameDirectory() {
+        val first = JarPackagesCache.sharedWithDiskCache(cacheDir)
+        assertSame(first, JarPackagesCache.sharedWithDiskCache(File(cacheDir.path)))
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import com.intellij.openapi.util.Disposer
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.TestJdkKind
+import org.jetbrains.kotlin.test.testFramework.KtUsefulTestCase
+
+class ParallelClassPostProcessingTest : KtUsefulTestCase() {
+    fun testOutputDoesNotDependOnThreadCount() {
+        val sequential = compile(threads = 1)
+        assertTrue(sequential.size > 10)
+
+        for (threads in listOf(2, 4)) {
+            val parallel = compile(threads)
+            assertEquals("Output files with $threads threads", sequential.map { it.first }, parallel.map { it.first })
+            for ((expected, actual) in sequential.zip(parallel)) {
+                assertTrue("Class file ${expected.first} differs with $threads threads", expected.second.contentEquals(actual.second))
+            }
+        }
+    }
+
+    private fun compile(threads: Int): List<Pair<String, ByteArray>> {
+        val configuration = KotlinTestUtils.newConfiguration(ConfigurationKind.NO_KOTLIN_REFLECT, TestJdkKind.MOCK_JDK)
+        configuration.put(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, threads)
+
+        val disposable = Disposer.newDisposable()
+        try {
+            val environment = KotlinCoreEnvironment.createForTests(disposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES)
+            val files = SOURCES.map { (name, text) -> KotlinTestUtils.createFile(name, text, environment.project) }
+            val state = GenerationUtils.compileFiles(files, environment, ClassBuilderFactories.BINARIES)
+            return state.factory.asList().map { it.relativePath to it.asByteArray() }
+        } finally {
+            Disposer.dispose(disposable)
+        }
+    }
+
+    companion object {
+        private val SOURCES = listOf(
+            "inline.kt" to """
+                package a
+
+                inline fun <T> measure(block: () -> T): T {
+                    val start = System.nanoTime()
+                    try {
+                        return block()
+                    } finally {
+                        println(System.nanoTime() - start)
+                    }
+                }
+
+                inline fun <reified T> Any?.castOrNull(): T? = this as? T
+            """,
+            "classes.kt" to """
+                package b
+
+                import a.*
+
+                data class Point(val x: Int, val y: Int)
+
+                sealed class Shape {
+                    class Circle(val r: Double) : Shape()
+                    class Rect(val w: Double, val h: Double) : Shape()
+                    object Empty : Shape()
+                }
+
+                fun area(shape: Shape): Double = measure {
+                    when (shape) {
+                        is Shape.Circle -> Math.PI * shape.r * shape.r
+                        is Shape.Rect -> shape.w * shape.h
+                        Shape.Empty -> 0.0
+                    }
+                }
+
+                class Registry {
+                    private val listeners = ArrayList<(Point) -> Unit>()
+
+                    fun add(listener: (Point) -> Unit) { listeners.add(listener) }
+
+                    fun fire(points: List<Point>) = points.filter { it.x > 0 }.forEach { p -> listeners.forEach { it(p) } }
+
+                    fun sum(points: List<Any?>): Int = points.sumBy { it.castOrNull<Point>()?.let { p -> p.x + p.y } ?: 0 }
+                }
+            """,
+            "facade1.kt" to """
+                @file:JvmMultifileClass
+                @file:JvmName("Utils")
+                package c
+
+                fun boxed(values: List<Int>): Int {
+                    var result: Int? = 0
+                    for (v in values) result = result!! + v
+                    return result!!
+                }
+
+                val lazyValue by lazy { listOf(1, 2, 3).map { it * 2 } }
+            """,
+            "facade2.kt" to """
+                @file:JvmMultifileClass
+                @file:JvmName("Utils")
+                package c
+
+                fun ranges(n: Int): Long {
+                    var sum = 0L
+                    for (i in 0 until n step 2) sum += i
+                    for (i in n downTo 0) sum -= i
+                    return sum
+                }
+
+                fun strings(xs: Array<String>) = xs.joinToString { "<${'$'}it>" }
+            """,
+            "objects.kt" to """
+                package d
+
+                import a.measure
+                import b.*
+
+                enum class Color { RED, GREEN, BLUE; fun next() = values()[(ordinal + 1) % values().size] }
+
+                object Cache {
+                    private val map = HashMap<String, Point>()
+                    fun get(key: String) = map.getOrPut(key) { measure { Point(key.length, key.hashCode()) } }
+                }
+
+                interface Visitor<R> { fun visit(color: Color): R }
+
+                fun visitAll(visitor: Visitor<String>) = Color.values().map { object : Runnable {
+                    override fun run() { println(visitor.visit(it)) }
+                } }
+
+                suspend fun delayed(x: Int): Int = x + 1
+            """
+        )
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.inline
+
+import com.intellij.testFramework.LightVirtualFile
+import junit.framework.TestCase
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.commons.Method
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class SharedInlineCacheTest : TestCase() {
+    private val classFile = SharedInlineCache.ClassFileKey("/lib.jar", 100, 1, "a/B.class")
+    private val methodId = MethodId("a/B", Method("f", "()V"))
+
+    fun testClassBytesAreComputedOnce() {
+        val cache = SharedInlineCache()
+        val computations = AtomicInteger()
+
+        val first = cache.getOrPutClassBytes(classFile) { computations.incrementAndGet(); ByteArray(10) }
+        val second = cache.getOrPutClassBytes(classFile) { computations.incrementAndGet(); ByteArray(10) }
+
+        assertSame(first, second)
+        assertEquals(1, computations.get())
+        assertEquals(1L, cache.hits.get())
+        assertEquals(1L, cache.misses.get())
+    }
+
+    fun testChangedJarIsReadAgain() {
+        val cache = SharedInlineCache()
+        cache.getOrPutClassBytes(classFile) { ByteArray(10) }
+
+        val changedJar = classFile.copy(jarLastModified = classFile.jarLastModified + 1)
+        val bytes = cache.getOrPutClassBytes(changedJar) { ByteArray(20) }
+
+        assertEquals(20, bytes.size)
+        assertEquals(2L, cache.misses.get())
+    }
+
+    fun testMethodNodeIsSharedWithoutCopying() {
+        val cache = SharedInlineCache()
+        val node = methodNode(3)
+
+        assertSame(node, cache.getOrPutMethodNode(classFile, methodId) { node })
+        assertSame(node, cache.getOrPutMethodNode(classFile, methodId) { fail("Must not be computed again"); null })
+    }
+
+    fun testMissingMethodIsNotCached() {
+        val cache = SharedInlineCache()
+
+        assertNull(cache.getOrPutMethodNode(classFile, methodId) { null })
+        val node = methodNode(1)
+        assertSame(node, cache.getOrPutMethodNode(classFile, methodId) { node })
+        assertEquals(2L, cache.misses.get())
+    }
+
+    fun testLeastRecentlyUsedEntriesAreEvictedToFitBudget() {
+        // Each entry of 100 bytes takes 228 bytes with the estimated overhead
+        val cache = SharedInlineCache(maxCachedBytes = 500)
+        val keys = (0 until 3).map { classFile.copy(entryPath = "a/B$it.class") }
+
+        cache.getOrPutClassBytes(keys[0]) { ByteArray(100) }
+        cache.getOrPutClassBytes(keys[1]) { ByteArray(100) }
+        assertEquals(0L, cache.evictions.get())
+
+        // Touch the first entry, so that the second one is the least recently used
+        cache.getOrPutClassBytes(keys[0]) { fail("Must be cached"); ByteArray(0) }
+        cache.getOrPutClassBytes(keys[2]) { ByteArray(100) }
+        assertEquals(1L, cache.evictions.get())
+
+        val recomputed = AtomicInteger()
+        cache.getOrPutClassBytes(keys[0]) { recomputed.incrementAndGet(); ByteArray(100) }
+        assertEquals(0, recomputed.get())
+
+        // An entry exceeding the budget evicts all others in one go
+        cache.getOrPutClassBytes(classFile) { ByteArray(1000) }
+        assertEquals(3L, cache.evictions.get())
+        cache.getOrPutClassBytes(classFile) { recomputed.incrementAndGet(); ByteArray(1000) }
+        assertEquals(0, recomputed.get())
+    }
+
+    fun testClear() {
+        val cache = SharedInlineCache()
+        cache.getOrPutClassBytes(classFile) { ByteArray(10) }
+        cache.clear()
+
+        val computations = AtomicInteger()
+        cache.getOrPutClassBytes(classFile) { computations.incrementAndGet(); ByteArray(10) }
+        assertEquals(1, computations.get())
+    }
+
+    fun testFilesOutsideOfJarsAreNotShared() {
+        assertNull(SharedInlineCache().keyFor(LightVirtualFile("B.class")))
+    }
+
+    fun testConcurrentCompilationsGetTheSameNode() {
+        val cache = SharedInlineCache()
+        val threads = 8
+        val start = CountDownLatch(1)
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            val futures = (0 until threads).map {
+                executor.submit(Callable {
+                    start.await()
+                    cache.getOrPutMethodNode(classFile, methodId) { methodNode(5) }
+                })
+            }
+            start.countDown()
+
+            val nodes = futures.map { it.get(30, TimeUnit.SECONDS) }
+            val first = nodes.first()
+            assertTrue(nodes.all { it === first })
+            assertEquals(threads.toLong(), cache.hits.get() + cache.misses.get())
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    private fun methodNode(instructions: Int): SMAPAndMethodNode {
+        val node = MethodNode(API_VERSION, ACC_STATIC, "f", "()V", null, null).apply {
+            repeat(instructions - 1) { visitInsn(NOP) }
+            visitInsn(RETURN)
+        }
+        return SMAPAndMethodNode(node, SMAP(listOf(FileMapping.SKIP)))
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.optimization.common.isMeaningful
+import org.jetbrains.org.objectweb.asm.Label
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+
+class LargeMethodOptimizationTest : TestCase() {
+    fun testTooLargeMethodIsOptimized() {
+        val method = MethodNode(API_VERSION, ACC_STATIC, "test", "()V", null, null).apply {
+            repeat(1000) {
+                // Removed by stack peephole optimizations
+                visitInsn(ICONST_1)
+                visitInsn(POP)
+                // Reduced to ICONST_2, POP by pop backward propagation
+                visitInsn(ICONST_2)
+                visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false)
+                visitTypeInsn(CHECKCAST, "java/lang/Integer")
+                visitInsn(POP)
+                // Removed as a redundant goto
+                val next = Label()
+                visitJumpInsn(GOTO, next)
+                visitLabel(next)
+            }
+            visitInsn(RETURN)
+            // Frames for the locals of each instruction would take too much memory
+            maxLocals = 0xFFFF
+            maxStack = 1
+        }
+        assertFalse(OptimizationMethodVisitor.canBeOptimized(method))
+
+        OptimizationMethodVisitor.createLargeMethodOptimizationTransformer(null).transform("Test", method)
+
+        val expected = List(1000) { listOf(ICONST_2, POP) }.flatten() + RETURN
+        assertEquals(expected, method.instructions.toArray().filter { it.isMeaningful }.map { it.opcode })
+    }
+}
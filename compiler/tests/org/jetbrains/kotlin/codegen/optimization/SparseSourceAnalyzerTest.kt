@@ -0,0 +1,174 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.inline.insnText
+import org.jetbrains.kotlin.codegen.optimization.common.SparseSourceAnalyzer
+import org.jetbrains.org.objectweb.asm.Label
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+import org.jetbrains.org.objectweb.asm.tree.analysis.Analyzer
+import org.jetbrains.org.objectweb.asm.tree.analysis.SourceInterpreter
+
+class SparseSourceAnalyzerTest : TestCase() {
+    fun testBranches() {
+        val method = method("(I)I", maxLocals = 1, maxStack = 1) {
+            val elseLabel = Label()
+            val endLabel = Label()
+            visitVarInsn(ILOAD, 0)
+            visitJumpInsn(IFEQ, elseLabel)
+            visitInsn(ICONST_1)
+            visitJumpInsn(GOTO, endLabel)
+            visitLabel(elseLabel)
+            visitInsn(ICONST_2)
+            visitLabel(endLabel)
+            visitInsn(IRETURN)
+        }
+
+        val analyzer = assertSameAsAnalyzer(method)
+
+        val returnInsn = method.instructions.last
+        val returnedValueSources = analyzer.getInputStack(returnInsn)!!.getStack(0).insns
+        assertEquals(
+            method.instructions.toArray().filter { it.opcode == ICONST_1 || it.opcode == ICONST_2 }.toSet(),
+            returnedValueSources
+        )
+    }
+
+    fun testLoop() {
+        assertSameAsAnalyzer(method("(I)I", maxLocals = 2, maxStack = 3) {
+            val loopLabel = Label()
+            val exitLabel = Label()
+            visitInsn(ICONST_0)
+            visitInsn(ICONST_0)
+            visitVarInsn(ISTORE, 1)
+            visitLabel(loopLabel)
+            visitVarInsn(ILOAD, 1)
+            visitVarInsn(ILOAD, 0)
+            visitJumpInsn(IF_ICMPGE, exitLabel)
+            visitIincInsn(1, 1)
+            visitJumpInsn(GOTO, loopLabel)
+            visitLabel(exitLabel)
+            visitVarInsn(ILOAD, 1)
+            visitInsn(IADD)
+            visitInsn(IRETURN)
+        })
+    }
+
+    fun testTableSwitch() {
+        assertSameAsAnalyzer(method("(I)I", maxLocals = 1, maxStack = 2) {
+            val labels = Array(2) { Label() }
+            val defaultLabel = Label()
+            val endLabel = Label()
+            visitInsn(ICONST_5)
+            visitVarInsn(ILOAD, 0)
+            visitTableSwitchInsn(0, 1, defaultLabel, *labels)
+            for ((i, label) in labels.withIndex()) {
+                visitLabel(label)
+                visitInsn(ICONST_0 + i)
+                visitJumpInsn(GOTO, endLabel)
+            }
+            visitLabel(defaultLabel)
+            visitInsn(ICONST_M1)
+            visitLabel(endLabel)
+            visitInsn(IADD)
+            visitInsn(IRETURN)
+            // Unreachable
+            visitInsn(ICONST_3)
+            visitInsn(IRETURN)
+        })
+    }
+
+    fun testLookupSwitch() {
+        assertSameAsAnalyzer(method("(I)I", maxLocals = 1, maxStack = 2) {
+            val labels = Array(2) { Label() }
+            val defaultLabel = Label()
+            visitVarInsn(ILOAD, 0)
+            visitInsn(DUP)
+            visitLookupSwitchInsn(defaultLabel, intArrayOf(10, 100), labels)
+            for (label in labels) {
+                visitLabel(label)
+                visitInsn(ICONST_1)
+                visitInsn(IADD)
+                visitInsn(IRETURN)
+            }
+            visitLabel(defaultLabel)
+            visitInsn(IRETURN)
+        })
+    }
+
+    fun testTryCatch() {
+        assertSameAsAnalyzer(method("(Ljava/lang/Object;)I", maxLocals = 1, maxStack = 2) {
+            val tryStart = Label()
+            val tryEnd = Label()
+            val handler = Label()
+            val unreachableStart = Label()
+            val unreachableEnd = Label()
+            val unreachableHandler = Label()
+            visitTryCatchBlock(tryStart, tryEnd, handler, "java/lang/RuntimeException")
+            visitTryCatchBlock(unreachableStart, unreachableEnd, unreachableHandler, null)
+
+            visitInsn(ICONST_1)
+            visitLabel(tryStart)
+            visitVarInsn(ALOAD, 0)
+            visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I", false)
+            visitLabel(tryEnd)
+            visitInsn(IADD)
+            visitInsn(IRETURN)
+
+            visitLabel(handler)
+            visitInsn(DUP)
+            visitInsn(POP)
+            visitVarInsn(ASTORE, 0)
+            visitInsn(ICONST_M1)
+            visitInsn(IRETURN)
+
+            visitLabel(unreachableStart)
+            visitInsn(ICONST_0)
+            visitInsn(IRETURN)
+            visitLabel(unreachableEnd)
+
+            visitLabel(unreachableHandler)
+            visitInsn(ATHROW)
+        })
+    }
+
+    private fun method(desc: String, maxLocals: Int, maxStack: Int, body: MethodNode.() -> Unit): MethodNode =
+        MethodNode(API_VERSION, ACC_STATIC, "test", desc, null, null).apply {
+            body()
+            this.maxLocals = maxLocals
+            this.maxStack = maxStack
+        }
+
+    private fun assertSameAsAnalyzer(method: MethodNode): SparseSourceAnalyzer {
+        val frames = Analyzer(SourceInterpreter(API_VERSION)).analyze("Test", method)
+        val analyzer = SparseSourceAnalyzer(method, SourceInterpreter(API_VERSION)) { true }
+        analyzer.analyze()
+
+        for ((index, insn) in method.instructions.toArray().withIndex()) {
+            val frame = frames[index]
+            val message = "Instruction #$index ${insn.insnText}"
+            assertEquals(message, frame != null, analyzer.isReachable(index))
+
+            if (frame == null || insn.type == AbstractInsnNode.LABEL) continue
+
+            val inputStack = analyzer.getInputStack(insn)
+            assertNotNull(message, inputStack)
+            val depth = minOf(frame.stackSize, SparseSourceAnalyzer.RECORDED_STACK_DEPTH)
+            assertEquals(message, depth, inputStack!!.stackSize)
+            for (i in 0 until depth) {
+                val expected = frame.getStack(frame.stackSize - depth + i)
+                val actual = inputStack.getStack(i)
+                assertEquals(message, expected.size, actual.size)
+                assertEquals(message, expected.insns, actual.insns)
+            }
+        }
+
+        return analyzer
+    }
+}
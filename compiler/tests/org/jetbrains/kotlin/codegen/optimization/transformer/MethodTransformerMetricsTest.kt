@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.transformer
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformerMetrics.Companion.INSTRUCTIONS_AFTER_COUNTER_PREFIX
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformerMetrics.Companion.INSTRUCTIONS_BEFORE_COUNTER_PREFIX
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformerMetrics.Companion.TIME_COUNTER_PREFIX
+import org.jetbrains.kotlin.util.CompilerMetrics
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+
+class MethodTransformerMetricsTest : TestCase() {
+    private class RemoveNops : MethodTransformer() {
+        override fun transform(internalClassName: String, methodNode: MethodNode) {
+            methodNode.instructions.toArray().filter { it.opcode == NOP }.forEach { methodNode.instructions.remove(it) }
+        }
+    }
+
+    private class DoNothing : MethodTransformer() {
+        override fun transform(internalClassName: String, methodNode: MethodNode) {
+        }
+    }
+
+    fun testInstructionsAreCountedPerTransformer() {
+        val metrics = CompilerMetrics()
+        val transformer = CompositeMethodTransformer(listOf(RemoveNops(), DoNothing()), metrics)
+
+        transformer.transform("A", methodNode(nops = 5))
+        transformer.transform("A", methodNode(nops = 3))
+
+        val counters = metrics.getCounters()
+        assertEquals(10L, counters[INSTRUCTIONS_BEFORE_COUNTER_PREFIX + "RemoveNops"])
+        assertEquals(2L, counters[INSTRUCTIONS_AFTER_COUNTER_PREFIX + "RemoveNops"])
+        // Transformers are measured in order, so the second one sees the result of the first one
+        assertEquals(2L, counters[INSTRUCTIONS_BEFORE_COUNTER_PREFIX + "DoNothing"])
+        assertEquals(2L, counters[INSTRUCTIONS_AFTER_COUNTER_PREFIX + "DoNothing"])
+        assertTrue(counters.getValue(TIME_COUNTER_PREFIX + "RemoveNops") >= 0)
+        assertTrue(counters.getValue(TIME_COUNTER_PREFIX + "DoNothing") >= 0)
+        assertEquals(6, counters.size)
+    }
+
+    fun testInstancesOfOneTransformerClassShareCounters() {
+        val metrics = CompilerMetrics()
+        CompositeMethodTransformer(listOf(RemoveNops()), metrics).transform("A", methodNode(nops = 1))
+        CompositeMethodTransformer(listOf(RemoveNops()), metrics).transform("B", methodNode(nops = 2))
+
+        assertEquals(5L, metrics.getCounters()[INSTRUCTIONS_BEFORE_COUNTER_PREFIX + "RemoveNops"])
+        assertEquals(2L, metrics.getCounters()[INSTRUCTIONS_AFTER_COUNTER_PREFIX + "RemoveNops"])
+    }
+
+    fun testTransformersAreNotMeasuredWithoutMetrics() {
+        val node = methodNode(nops = 4)
+        CompositeMethodTransformer(listOf(RemoveNops(), DoNothing())).transform("A", node)
+
+        // The transformers still run
+        assertEquals(1, node.instructions.size())
+    }
+
+    private fun methodNode(nops: Int): MethodNode =
+        MethodNode(API_VERSION, ACC_STATIC, "f", "()V", null, null).apply {
+            repeat(nops) { visitInsn(NOP) }
+            visitInsn(RETURN)
+        }
+}
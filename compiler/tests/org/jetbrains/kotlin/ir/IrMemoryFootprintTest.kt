@@ -0,0 +1,182 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.ir
+
+import org.jetbrains.kotlin.ir.declarations.IrModuleFragment
+import org.jetbrains.kotlin.ir.visitors.IrElementVisitorVoid
+import org.jetbrains.kotlin.ir.visitors.acceptChildrenVoid
+import org.jetbrains.kotlin.ir.visitors.acceptVoid
+import org.jetbrains.kotlin.test.InTextDirectivesUtils
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.TargetBackend
+import sun.misc.Unsafe
+import java.io.File
+import java.lang.reflect.Field
+import java.lang.reflect.Modifier
+import java.util.*
+
+/**
+ * Reports the memory taken by IR trees generated for a sample of the box tests, in bytes per IR element.
+ *
+ * The test only runs if the number of sampled tests is set by the `kotlin.ir.footprint.files` system property, e.g.
+ * `-Dkotlin.ir.footprint.files=100`. To compare implementations of the IR tree, run the test on both of them and compare
+ * the reported numbers.
+ */
+class IrMemoryFootprintTest : AbstractIrGeneratorTestCase() {
+    private val footprint = IrMemoryFootprint()
+
+    override fun doTest(wholeFile: File, testFiles: List<TestFile>) {
+        footprint.measure(generateIrModule(ignoreErrors = true))
+    }
+
+    fun testBoxTests() {
+        val fileCount = Integer.getInteger(FILE_COUNT_PROPERTY) ?: return
+
+        // Multi-module tests and tests not supported by the IR backend can't be compiled in this setup
+        val allFiles = File(KotlinTestUtils.getTestDataPathBase(), "codegen/box").walkTopDown()
+            .filter { it.isFile && it.extension == "kt" }
+            .filter { InTextDirectivesUtils.isPassingTarget(TargetBackend.JVM_IR, it) && "// MODULE:" !in it.readText() }
+            .sortedBy { it.path }
+            .toList()
+        val step = maxOf(1, allFiles.size / fileCount)
+        val files = allFiles.filterIndexed { i, _ -> i % step == 0 }.take(fileCount)
+
+        for (file in files) {
+            doTest(file.path)
+        }
+
+        assertTrue("No IR was generated for ${files.size} files", footprint.elementCount > 0)
+        println("IR memory footprint of ${files.size} box tests:")
+        println(footprint.render())
+    }
+
+    companion object {
+        private const val FILE_COUNT_PROPERTY = "kotlin.ir.footprint.files"
+    }
+}
+
+/**
+ * Estimates retained sizes of IR elements: the element itself, and the arrays and collections referenced from its fields
+ * together with their own arrays. Other referenced objects (child elements, symbols, types, descriptors) are not owned by
+ * the element and are not counted. Objects shared by several elements of a module, like empty arrays, are counted once.
+ *
+ * Sizes are computed from the field layout of the running JVM.
+ */
+private class IrMemoryFootprint {
+    private class ClassStatistics(var count: Int = 0, var bytes: Long = 0)
+
+    private val counted = Collections.newSetFromMap(IdentityHashMap<Any, Boolean>())
+    private val statistics = HashMap<Class<*>, ClassStatistics>()
+    private val fieldsCache = HashMap<Class<*>, List<Field>>()
+    private val sizeCache = HashMap<Class<*>, Long>()
+
+    var elementCount = 0
+        private set
+
+    var byteCount = 0L
+        private set
+
+    fun measure(module: IrModuleFragment) {
+        // Don't keep the measured trees alive
+        counted.clear()
+        module.acceptVoid(object : IrElementVisitorVoid {
+            override fun visitElement(element: IrElement) {
+                if (counted.add(element)) {
+                    val bytes = instanceSize(element.javaClass) + ownedDataSize(element)
+                    val classStatistics = statistics.getOrPut(element.javaClass) { ClassStatistics() }
+                    classStatistics.count++
+                    classStatistics.bytes += bytes
+                    elementCount++
+                    byteCount += bytes
+                }
+                element.acceptChildrenVoid(this)
+            }
+        })
+    }
+
+    fun render(): String = buildString {
+        appendln("Elements: $elementCount, bytes: $byteCount, bytes per element: ${"%.1f".format(byteCount.toDouble() / elementCount)}")
+        for ((klass, classStatistics) in statistics.entries.sortedByDescending { it.value.bytes }.take(TOP_CLASSES)) {
+            appendln(
+                "  ${klass.simpleName}: ${classStatistics.count} elements, ${classStatistics.bytes} bytes, " +
+                        "${"%.1f".format(classStatistics.bytes.toDouble() / classStatistics.count)} bytes per element"
+            )
+        }
+    }
+
+    private fun ownedDataSize(element: IrElement): Long {
+        var result = 0L
+        for (field in fieldsOf(element.javaClass)) {
+            val value = field.get(element) ?: continue
+            if (value.javaClass.isArray || value is Collection<*>) {
+                result += containerSize(value)
+            }
+        }
+        return result
+    }
+
+    private fun containerSize(container: Any): Long {
+        if (!counted.add(container)) return 0
+        if (container.javaClass.isArray) return arraySize(container)
+
+        // Backing arrays of collections, like elementData of ArrayList
+        var result = instanceSize(container.javaClass)
+        for (field in fieldsOf(container.javaClass)) {
+            val value = field.get(container) ?: continue
+            if (value.javaClass.isArray && counted.add(value)) {
+                result += arraySize(value)
+            }
+        }
+        return result
+    }
+
+    private fun fieldsOf(klass: Class<*>): List<Field> = fieldsCache.getOrPut(klass) {
+        generateSequence(klass) { it.superclass }
+            .flatMap { it.declaredFields.asSequence() }
+            .filter { !Modifier.isStatic(it.modifiers) && !it.type.isPrimitive }
+            .onEach { it.isAccessible = true }
+            .toList()
+    }
+
+    private fun instanceSize(klass: Class<*>): Long = sizeCache.getOrPut(klass) {
+        val end = generateSequence(klass) { it.superclass }
+            .flatMap { it.declaredFields.asSequence() }
+            .filter { !Modifier.isStatic(it.modifiers) }
+            .map { UNSAFE.objectFieldOffset(it) + typeSize(it.type) }
+            .max() ?: HEADER_SIZE
+        align(end)
+    }
+
+    private fun arraySize(array: Any): Long {
+        val klass = array.javaClass
+        return align(UNSAFE.arrayBaseOffset(klass).toLong() + java.lang.reflect.Array.getLength(array).toLong() * UNSAFE.arrayIndexScale(klass))
+    }
+
+    private fun typeSize(type: Class<*>): Long = when (type) {
+        java.lang.Long.TYPE, java.lang.Double.TYPE -> 8
+        java.lang.Integer.TYPE, java.lang.Float.TYPE -> 4
+        java.lang.Short.TYPE, java.lang.Character.TYPE -> 2
+        java.lang.Byte.TYPE, java.lang.Boolean.TYPE -> 1
+        else -> REFERENCE_SIZE
+    }
+
+    private fun align(size: Long): Long = (size + 7) and 7L.inv()
+
+    private class HeaderProbe {
+        @JvmField
+        var value = 0
+    }
+
+    companion object {
+        private const val TOP_CLASSES = 20
+
+        private val UNSAFE = Unsafe::class.java.getDeclaredField("theUnsafe").apply { isAccessible = true }.get(null) as Unsafe
+
+        private val HEADER_SIZE = UNSAFE.objectFieldOffset(HeaderProbe::class.java.getDeclaredField("value"))
+
+        private val REFERENCE_SIZE = UNSAFE.arrayIndexScale(Array<Any>::class.java).toLong()
+    }
+}
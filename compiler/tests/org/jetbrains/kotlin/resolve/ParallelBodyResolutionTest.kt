@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.resolve
+
+import com.intellij.openapi.util.Disposer
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.codegen.ClassBuilderFactories
+import org.jetbrains.kotlin.codegen.GenerationUtils
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.diagnostics.DiagnosticUtils
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.resolve.lazy.JvmResolveUtil
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.TestJdkKind
+import org.jetbrains.kotlin.test.testFramework.KtUsefulTestCase
+
+class ParallelBodyResolutionTest : KtUsefulTestCase() {
+    fun testDiagnosticsDoNotDependOnThreadCount() {
+        val sequential = withFiles(threads = 1, sources = SOURCES_WITH_WARNINGS, ::reportedDiagnostics)
+        assertTrue(sequential.size > 5)
+
+        repeat(3) {
+            assertEquals(sequential, withFiles(threads = 4, sources = SOURCES_WITH_WARNINGS, ::reportedDiagnostics))
+        }
+    }
+
+    fun testOutputDoesNotDependOnThreadCount() {
+        val sequential = withFiles(threads = 1, sources = SOURCES, ::compiledClasses)
+        assertTrue(sequential.size > 10)
+
+        val parallel = withFiles(threads = 4, sources = SOURCES, ::compiledClasses)
+        assertEquals(sequential.map { it.first }, parallel.map { it.first })
+        for ((expected, actual) in sequential.zip(parallel)) {
+            assertTrue("Class file ${expected.first} differs", expected.second.contentEquals(actual.second))
+        }
+    }
+
+    // Diagnostics are rendered in the order the CLI reports them in, see AnalyzerWithCompilerReport
+    private fun reportedDiagnostics(files: List<KtFile>, environment: KotlinCoreEnvironment): List<String> {
+        val bindingContext = JvmResolveUtil.analyze(files, environment).bindingContext
+        return DiagnosticUtils.sortedDiagnostics(bindingContext.diagnostics.all()).map { diagnostic ->
+            "${diagnostic.psiFile.name}${diagnostic.textRanges}: ${diagnostic.factory.name}"
+        }
+    }
+
+    private fun compiledClasses(files: List<KtFile>, environment: KotlinCoreEnvironment): List<Pair<String, ByteArray>> =
+        GenerationUtils.compileFiles(files, environment, ClassBuilderFactories.BINARIES).factory.asList().map {
+            it.relativePath to it.asByteArray()
+        }
+
+    private fun <T> withFiles(threads: Int, sources: List<Pair<String, String>>, block: (List<KtFile>, KotlinCoreEnvironment) -> T): T {
+        val configuration = KotlinTestUtils.newConfiguration(ConfigurationKind.NO_KOTLIN_REFLECT, TestJdkKind.MOCK_JDK)
+        configuration.put(JVMConfigurationKeys.PARALLEL_BODY_RESOLUTION_THREADS, threads)
+
+        val disposable = Disposer.newDisposable()
+        try {
+            val environment = KotlinCoreEnvironment.createForTests(disposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES)
+            val files = sources.map { (name, text) -> KotlinTestUtils.createFile(name, text, environment.project) }
+            return block(files, environment)
+        } finally {
+            Disposer.dispose(disposable)
+        }
+    }
+
+    companion object {
+        // Declarations of different files use each other and the same Java classes, so that their lazy resolution
+        // and the lookup of Java classes are triggered by several threads at once
+        private val SOURCES = listOf(
+            "a.kt" to """
+                package a
+
+                import java.util.*
+
+                open class Base(val items: List<String>) {
+                    open fun describe(): String = items.joinToString()
+                }
+
+                fun sorted(values: Collection<Int>): List<Int> {
+                    val result = ArrayList(values)
+                    Collections.sort(result)
+                    return result
+                }
+
+                inline fun <T> withLock(lock: Any, block: () -> T): T = synchronized(lock) { block() }
+            """,
+            "b.kt" to """
+                package b
+
+                import a.*
+                import java.util.concurrent.ConcurrentHashMap
+
+                class Derived(items: List<String>) : Base(items) {
+                    private val cache = ConcurrentHashMap<String, Int>()
+
+                    override fun describe() = withLock(this) { super.describe() + cache.size }
+
+                    fun count(key: String) = cache.getOrPut(key) { key.length }
+                }
+
+                fun total(xs: List<Derived>) = xs.sumBy { it.count(it.describe()) }
+            """,
+            "c.kt" to """
+                package c
+
+                import a.*
+                import b.*
+                import java.util.LinkedHashMap
+
+                object Registry {
+                    val byName = LinkedHashMap<String, Derived>()
+
+                    fun register(name: String) = byName.getOrPut(name) { Derived(sorted(listOf(3, 1, 2)).map { it.toString() }) }
+                }
+
+                enum class Kind { A, B; fun derived() = Registry.register(name) }
+            """,
+            "d.kt" to """
+                package d
+
+                import a.Base
+                import c.*
+                import java.io.File
+                import java.util.Comparator
+
+                fun files(paths: List<String>): List<File> = paths.map(::File).sortedWith(Comparator { x, y -> x.path.compareTo(y.path) })
+
+                fun kinds(): Map<Kind, Base> = Kind.values().associate { it to it.derived() }
+
+                val all by lazy { kinds().values.map { it.describe() } }
+            """
+        )
+
+        private val SOURCES_WITH_WARNINGS = SOURCES + listOf(
+            "warnings1.kt" to """
+                package w
+
+                import a.*
+                import c.Registry
+
+                fun unused(x: Int?) {
+                    val y = 1
+                    var z = x!!
+                    if (x != null) println(x!!)
+                    Registry.register("" as String)
+                }
+
+                fun size(base: Base) = base.items.size
+            """,
+            "warnings2.kt" to """
+                package w
+
+                import java.util.ArrayList
+
+                fun casts(a: Any) {
+                    val list = a as ArrayList<String>
+                    val unusedList = list
+                    var s: String? = "s"
+                    s = s!!
+                }
+            """
+        )
+    }
+}
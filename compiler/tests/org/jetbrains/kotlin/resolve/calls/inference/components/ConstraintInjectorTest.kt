@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.resolve.calls.inference.components
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.builtins.DefaultBuiltIns
+import org.jetbrains.kotlin.builtins.KotlinBuiltIns
+import org.jetbrains.kotlin.descriptors.annotations.Annotations
+import org.jetbrains.kotlin.descriptors.impl.TypeParameterDescriptorImpl
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.calls.inference.model.*
+import org.jetbrains.kotlin.types.TypeApproximator
+import org.jetbrains.kotlin.types.UnwrappedType
+import org.jetbrains.kotlin.types.Variance
+
+class ConstraintInjectorTest : TestCase() {
+    private val builtIns = DefaultBuiltIns.Instance
+
+    private val system = NewConstraintSystemImpl(
+        ConstraintInjector(ConstraintIncorporator(TypeApproximator(), TrivialConstraintTypeInferenceOracle()), TypeApproximator()),
+        builtIns
+    )
+
+    private val t = typeVariable("T", 0)
+    private val s = typeVariable("S", 1)
+
+    override fun setUp() {
+        super.setUp()
+        system.registerVariable(t)
+        system.registerVariable(s)
+        // Int <: T is then incorporated into Int <: S twice: directly, and into the lower constraint T of S
+        addSubtypeConstraint(t.defaultType, s.defaultType)
+    }
+
+    fun testRepeatedIncorporatedConstraintIsCheckedOnce() {
+        system.counters.reset()
+        addSubtypeConstraint(builtIns.intType, t.defaultType)
+
+        assertTrue(system.counters.repeatedIncorporationStepsSkipped > 0)
+        assertTrue(system.diagnostics.isEmpty())
+        assertEquals(listOf(builtIns.intType), lowerConstraintTypes(t))
+        assertEquals(listOf(builtIns.intType, t.defaultType).toSet(), lowerConstraintTypes(s).toSet())
+    }
+
+    fun testFailedIncorporatedConstraintIsReported() {
+        addSubtypeConstraint(s.defaultType, builtIns.stringType)
+        addSubtypeConstraint(builtIns.intType, t.defaultType)
+
+        assertTrue(system.diagnostics.any {
+            it is NewConstraintError && KotlinBuiltIns.isInt(it.lowerType) && KotlinBuiltIns.isString(it.upperType)
+        })
+    }
+
+    private fun typeVariable(name: String, index: Int) = TypeVariableFromCallableDescriptor(
+        TypeParameterDescriptorImpl.createWithDefaultBound(
+            builtIns.any, Annotations.EMPTY, false, Variance.INVARIANT, Name.identifier(name), index
+        )
+    )
+
+    private fun addSubtypeConstraint(lowerType: UnwrappedType, upperType: UnwrappedType) {
+        system.addSubtypeConstraint(lowerType, upperType, KnownTypeParameterConstraintPosition(upperType))
+    }
+
+    private fun lowerConstraintTypes(variable: NewTypeVariable): List<UnwrappedType> =
+        system.notFixedTypeVariables.getValue(variable.freshTypeConstructor).constraints
+            .filter { it.kind == ConstraintKind.LOWER }
+            .map { it.type }
+}
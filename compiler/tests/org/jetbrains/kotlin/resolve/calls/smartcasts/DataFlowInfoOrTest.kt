@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.resolve.calls.smartcasts
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.builtins.DefaultBuiltIns
+import org.jetbrains.kotlin.config.LanguageVersionSettingsImpl
+import org.jetbrains.kotlin.types.KotlinType
+
+class DataFlowInfoOrTest : TestCase() {
+    private data class Local(val name: String) : IdentifierInfo {
+        override val kind: DataFlowValue.Kind
+            get() = DataFlowValue.Kind.STABLE_VALUE
+    }
+
+    private val builtIns = DefaultBuiltIns.Instance
+    private val settings = LanguageVersionSettingsImpl.DEFAULT
+    private val x = DataFlowValue(Local("x"), builtIns.nullableAnyType)
+    private val y = DataFlowValue(Local("y"), builtIns.nullableAnyType)
+    private val string = builtIns.stringType
+    private val charSequence = builtIns.charSequence.defaultType
+
+    fun testEqualInfoIsReused() {
+        val first = notNull(x).subtype(y, string)
+        val second = notNull(x).subtype(y, string)
+
+        assertSame(first, first.or(second))
+        assertSame(second, second.or(first))
+    }
+
+    fun testWeakerInfoIsReused() {
+        val weak = notNull(x)
+        val strong = notNull(x).subtype(x, string).notNull(y)
+
+        assertSame(weak, weak.or(strong))
+        assertSame(weak, strong.or(weak))
+    }
+
+    fun testWeakerTypeInfoIsReused() {
+        val weak = DataFlowInfo.EMPTY.subtype(x, charSequence)
+        val strong = DataFlowInfo.EMPTY.subtype(x, charSequence).subtype(x, string)
+
+        assertSame(weak, weak.or(strong))
+        assertSame(weak, strong.or(weak))
+    }
+
+    fun testInfoOfOneValueOnlyIsDropped() {
+        val onlyX = notNull(x)
+        val onlyY = notNull(y)
+
+        assertSame(DataFlowInfo.EMPTY, onlyX.or(onlyY))
+    }
+
+    fun testNewInfoIsCreatedIfNeitherIsWeaker() {
+        val first = notNull(x).subtype(y, string)
+        val second = notNull(x).subtype(y, charSequence).notNull(y)
+
+        val result = first.or(second)
+        assertNotSame(first, result)
+        assertNotSame(second, result)
+        assertEquals(Nullability.NOT_NULL, result.getCollectedNullability(x))
+        assertEquals(Nullability.NOT_NULL, result.getCollectedNullability(y))
+        val typesOfY = result.getCollectedTypes(y, settings)
+        assertFalse(string in typesOfY || charSequence in typesOfY)
+    }
+
+    fun testResultIsIntersectionOfInfos() {
+        val infos = ArrayList<DataFlowInfo>()
+        val updates = listOf<(DataFlowInfo, DataFlowValue) -> DataFlowInfo>(
+            { info, _ -> info },
+            { info, value -> info.notNull(value) },
+            { info, value -> info.subtype(value, string) },
+            { info, value -> info.subtype(value, charSequence) },
+            { info, value -> info.subtype(value, string).subtype(value, charSequence) }
+        )
+        for (updateX in updates) {
+            for (updateY in updates) {
+                infos.add(updateY(updateX(DataFlowInfo.EMPTY, x), y))
+            }
+        }
+
+        for (first in infos) {
+            for (second in infos) {
+                val result = first.or(second)
+                for (value in listOf(x, y)) {
+                    assertEquals(
+                        first.getCollectedNullability(value).or(second.getCollectedNullability(value)),
+                        result.getCollectedNullability(value)
+                    )
+                    assertEquals(
+                        first.getCollectedTypes(value, settings).intersect(second.getCollectedTypes(value, settings)),
+                        result.getCollectedTypes(value, settings)
+                    )
+                }
+            }
+        }
+    }
+
+    private fun notNull(value: DataFlowValue): DataFlowInfo = DataFlowInfo.EMPTY.notNull(value)
+
+    private fun DataFlowInfo.notNull(value: DataFlowValue): DataFlowInfo =
+        disequate(value, DataFlowValue.nullValue(builtIns), settings)
+
+    private fun DataFlowInfo.subtype(value: DataFlowValue, type: KotlinType): DataFlowInfo =
+        establishSubtyping(value, type, settings)
+}
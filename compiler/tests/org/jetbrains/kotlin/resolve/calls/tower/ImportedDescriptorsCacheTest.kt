@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.resolve.calls.tower
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.calls.tower.ImportedDescriptorsCache.Kind
+import org.jetbrains.kotlin.resolve.scopes.BaseImportingScope
+import org.jetbrains.kotlin.resolve.scopes.ImportingScope
+import org.jetbrains.kotlin.resolve.scopes.SyntheticScope
+import org.jetbrains.kotlin.resolve.scopes.SyntheticScopes
+import org.jetbrains.kotlin.utils.Printer
+
+class ImportedDescriptorsCacheTest : TestCase() {
+    private val cache = ImportedDescriptorsCache()
+    private val scope = TestImportingScope()
+    private val name = Name.identifier("foo")
+
+    private var computations = 0
+    private var cacheHits = 0
+
+    private fun get(
+        scope: ImportingScope = this.scope,
+        kind: Kind = Kind.FUNCTIONS,
+        name: Name = this.name,
+        syntheticScopes: SyntheticScopes? = SyntheticScopes.Empty
+    ): List<String> =
+        cache.getOrCompute(scope, kind, name, syntheticScopes, { cacheHits++ }) {
+            computations++
+            listOf("$kind ${name.asString()} #$computations")
+        }
+
+    fun testCacheHit() {
+        val first = get()
+        val second = get()
+
+        assertSame(first, second)
+        assertEquals(1, computations)
+    }
+
+    fun testLookupIsRecordedOnCacheHitsOnly() {
+        get()
+        assertEquals(0, cacheHits)
+
+        get()
+        get()
+        assertEquals(2, cacheHits)
+    }
+
+    fun testDifferentNamesAndKinds() {
+        get()
+        get(name = Name.identifier("bar"))
+        get(kind = Kind.VARIABLES)
+        get(kind = Kind.CLASSIFIER, syntheticScopes = null)
+
+        assertEquals(4, computations)
+        assertEquals(0, cacheHits)
+    }
+
+    fun testNewScopeInvalidatesDescriptors() {
+        get()
+        get(scope = TestImportingScope())
+
+        assertEquals(2, computations)
+        assertEquals(0, cacheHits)
+    }
+
+    fun testDifferentSyntheticScopesInvalidateFunctions() {
+        val otherSyntheticScopes = object : SyntheticScopes {
+            override val scopes: Collection<SyntheticScope> = emptyList()
+        }
+
+        val first = get()
+        val second = get(syntheticScopes = otherSyntheticScopes)
+
+        assertNotSame(first, second)
+        assertEquals(2, computations)
+        assertSame(second, get(syntheticScopes = otherSyntheticScopes))
+    }
+
+    private class TestImportingScope : BaseImportingScope(null) {
+        override fun printStructure(p: Printer) {
+            p.println("TestImportingScope")
+        }
+
+        override fun computeImportedNames(): Set<Name>? = null
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.serialization
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.builtins.DefaultBuiltIns
+import org.jetbrains.kotlin.descriptors.CallableMemberDescriptor
+import org.jetbrains.kotlin.descriptors.PropertyDescriptor
+import org.jetbrains.kotlin.descriptors.SimpleFunctionDescriptor
+import org.jetbrains.kotlin.incremental.components.NoLookupLocation
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
+import org.jetbrains.kotlin.resolve.scopes.MemberScope
+import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedMemberScope
+
+// Built-in classes are deserialized, so their member scopes are DeserializedMemberScope
+class DeserializedMemberScopeTest : TestCase() {
+    private fun newIntScope(): MemberScope = DefaultBuiltIns().int.unsubstitutedMemberScope
+
+    private fun newStringScope(): MemberScope = DefaultBuiltIns().string.unsubstitutedMemberScope
+
+    fun testOverloadsAreFoundByName() {
+        val scope = newIntScope()
+        val plus = scope.getContributedFunctions(Name.identifier("plus"), NoLookupLocation.FROM_TEST)
+
+        assertEquals(
+            setOf("Byte", "Short", "Int", "Long", "Float", "Double"),
+            plus.map { it.valueParameters.single().type.toString() }.toSet()
+        )
+        assertSame(plus, scope.getContributedFunctions(Name.identifier("plus"), NoLookupLocation.FROM_TEST))
+    }
+
+    fun testNamesOfEachKind() {
+        val scope = newStringScope()
+
+        assertTrue(Name.identifier("plus") in scope.getFunctionNames())
+        assertTrue(Name.identifier("get") in scope.getFunctionNames())
+        assertTrue(Name.identifier("length") in scope.getVariableNames())
+        assertFalse(Name.identifier("plus") in scope.getVariableNames())
+        assertFalse(Name.identifier("length") in scope.getFunctionNames())
+
+        val missing = Name.identifier("noSuchMember")
+        assertTrue(scope.getContributedFunctions(missing, NoLookupLocation.FROM_TEST).isEmpty())
+        assertTrue(scope.getContributedVariables(missing, NoLookupLocation.FROM_TEST).isEmpty())
+        assertTrue(scope.definitelyDoesNotContainName(missing))
+    }
+
+    fun testAllDescriptorsAreTheSameAsFoundByName() {
+        val scope = newStringScope()
+        val all = scope.getContributedDescriptors(DescriptorKindFilter.CALLABLES, MemberScope.ALL_NAME_FILTER)
+        assertTrue(all.any { it is PropertyDescriptor })
+        assertTrue(all.any { it is SimpleFunctionDescriptor })
+
+        for (descriptor in all) {
+            descriptor as CallableMemberDescriptor
+            val byName = when (descriptor) {
+                is SimpleFunctionDescriptor -> scope.getContributedFunctions(descriptor.name, NoLookupLocation.FROM_TEST)
+                is PropertyDescriptor -> scope.getContributedVariables(descriptor.name, NoLookupLocation.FROM_TEST)
+                else -> throw AssertionError("Unexpected descriptor: $descriptor")
+            }
+            assertTrue("$descriptor is not found by name", byName.any { it === descriptor })
+        }
+    }
+
+    fun testProtoListsAreReleasedOnceGrouped() {
+        val scope = newStringScope()
+
+        assertNotNull(ungrouped(scope, "ungroupedFunctions"))
+        assertNotNull(ungrouped(scope, "ungroupedProperties"))
+
+        scope.getFunctionNames()
+        assertNull(ungrouped(scope, "ungroupedFunctions"))
+        assertNotNull(ungrouped(scope, "ungroupedProperties"))
+
+        scope.getContributedVariables(Name.identifier("length"), NoLookupLocation.FROM_TEST)
+        assertNull(ungrouped(scope, "ungroupedProperties"))
+    }
+
+    private fun ungrouped(scope: MemberScope, fieldName: String): Any? =
+        DeserializedMemberScope::class.java.getDeclaredField(fieldName).apply { isAccessible = true }.get(scope)
+}
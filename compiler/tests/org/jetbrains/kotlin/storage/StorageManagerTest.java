@@ -26,6 +26,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
 public class StorageManagerTest extends TestCase {
 
@@ -445,6 +448,101 @@ public class StorageManagerTest extends TestCase {
         }
     }
 
+    // Striped locks
+
+    public void testStripedLocksComputeOnceConcurrently() throws Exception {
+        LockBasedStorageManager m = LockBasedStorageManager.createWithStripedLocks(
+                "StorageManagerTest", LockBasedStorageManager.ExceptionHandlingStrategy.THROW, 4
+        );
+        AtomicInteger computations = new AtomicInteger();
+        MemoizedFunctionToNotNull<Integer, String> f = m.createMemoizedFunction(i -> {
+            computations.incrementAndGet();
+            return "ok" + i;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        assertEquals("ok" + i, f.invoke(i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(100, computations.get());
+    }
+
+    public void testLockCycleDetected() throws Exception {
+        LockStripes stripes = new LockStripes(2);
+        Lock first = stripes.getStripe(0);
+        Lock second = stripes.getStripe(1);
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        AtomicInteger cycles = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Lock[] order : new Lock[][] {{first, second}, {second, first}}) {
+                futures.add(executor.submit(() -> {
+                    order[0].lock();
+                    try {
+                        barrier.await();
+                        order[1].lock();
+                        order[1].unlock();
+                    }
+                    catch (LockCycleDetectedException e) {
+                        cycles.incrementAndGet();
+                    }
+                    finally {
+                        order[0].unlock();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue("Expected a detected cycle, got " + cycles.get(), cycles.get() >= 1);
+    }
+
+    public void testLockCycleDetectedExceptionIsNotStored() throws Exception {
+        LockBasedStorageManager m = LockBasedStorageManager.createWithStripedLocks(
+                "StorageManagerTest", LockBasedStorageManager.ExceptionHandlingStrategy.THROW, 4
+        );
+        AtomicInteger attempts = new AtomicInteger();
+        NotNullLazyValue<String> v = m.createLazyValue(() -> {
+            if (attempts.incrementAndGet() == 1) throw new LockCycleDetectedException("test");
+            return "ok";
+        });
+        MemoizedFunctionToNotNull<String, String> f = m.createMemoizedFunction(s -> s + v.invoke());
+
+        try {
+            f.invoke("");
+            fail("Exception should have occurred");
+        }
+        catch (LockCycleDetectedException ignored) {
+        }
+
+        assertFalse(v.isComputed());
+        assertFalse(f.isComputed(""));
+        assertEquals("ok", f.invoke(""));
+        assertEquals(2, attempts.get());
+    }
+
     // Utilities
 
     private static <K, V> Function0<V> apply(Function1<K, V> f, K x) {
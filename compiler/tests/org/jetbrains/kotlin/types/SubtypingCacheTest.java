@@ -0,0 +1,48 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.types;
+
+import junit.framework.TestCase;
+import org.jetbrains.kotlin.types.model.KotlinTypeMarker;
+
+public class SubtypingCacheTest extends TestCase {
+    private static KotlinTypeMarker newType() {
+        return new KotlinTypeMarker() {};
+    }
+
+    public void testResultsAreKeyedByIdentityOfBothTypes() {
+        SubtypingCache cache = new SubtypingCache(16);
+        KotlinTypeMarker a = newType();
+        KotlinTypeMarker b = newType();
+
+        assertNull(cache.get(a, b));
+        cache.put(a, b, true);
+        cache.put(b, a, false);
+
+        assertEquals(Boolean.TRUE, cache.get(a, b));
+        assertEquals(Boolean.FALSE, cache.get(b, a));
+        assertNull(cache.get(a, newType()));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testCacheIsBounded() {
+        SubtypingCache cache = new SubtypingCache(4);
+        KotlinTypeMarker superType = newType();
+        KotlinTypeMarker[] subTypes = new KotlinTypeMarker[100];
+        for (int i = 0; i < subTypes.length; i++) {
+            subTypes[i] = newType();
+            cache.put(subTypes[i], superType, true);
+        }
+
+        int cached = 0;
+        for (KotlinTypeMarker subType : subTypes) {
+            if (cache.get(subType, superType) != null) cached++;
+        }
+        assertTrue(cached > 0);
+        assertTrue(cached <= 4);
+    }
+}
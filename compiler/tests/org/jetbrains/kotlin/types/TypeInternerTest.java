@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.types;
+
+import junit.framework.TestCase;
+import org.jetbrains.kotlin.builtins.DefaultBuiltIns;
+import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
+import org.jetbrains.kotlin.descriptors.annotations.Annotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class TypeInternerTest extends TestCase {
+    private final KotlinBuiltIns builtIns = DefaultBuiltIns.getInstance();
+
+    private SimpleType internListOf(TypeInterner interner, KotlinType argument, boolean nullable) {
+        TypeConstructor constructor = builtIns.getList().getTypeConstructor();
+        List<TypeProjection> arguments = Collections.singletonList(new TypeProjectionImpl(argument));
+        return interner.intern(constructor, arguments, nullable, () -> KotlinTypeFactory.simpleTypeWithNonTrivialMemberScope(
+                Annotations.Companion.getEMPTY(), constructor, arguments, nullable, builtIns.getList().getDefaultType().getMemberScope()
+        ));
+    }
+
+    public void testSameTypesAreInterned() {
+        TypeInterner interner = new TypeInterner();
+        SimpleType listOfString = internListOf(interner, builtIns.getStringType(), false);
+
+        assertSame(listOfString, internListOf(interner, builtIns.getStringType(), false));
+        assertNotSame(listOfString, internListOf(interner, builtIns.getStringType(), true));
+        assertNotSame(listOfString, internListOf(interner, builtIns.getIntType(), false));
+    }
+
+    public void testArgumentsAreComparedByIdentity() {
+        TypeInterner interner = new TypeInterner();
+        SimpleType stringType = builtIns.getStringType();
+        SimpleType equalStringType = KotlinTypeFactory.simpleTypeWithNonTrivialMemberScope(
+                Annotations.Companion.getEMPTY(), stringType.getConstructor(), stringType.getArguments(), false, stringType.getMemberScope()
+        );
+        assertEquals(stringType, equalStringType);
+
+        assertNotSame(internListOf(interner, stringType, false), internListOf(interner, equalStringType, false));
+    }
+
+    public void testTypeIsCreatedOutsideOfLock() throws Exception {
+        TypeInterner interner = new TypeInterner();
+        TypeConstructor constructor = builtIns.getList().getTypeConstructor();
+        List<TypeProjection> arguments = Collections.singletonList(new TypeProjectionImpl(builtIns.getStringType()));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Another thread interns the same type while this one is creating it, and would wait forever if the segment were locked
+            Future<SimpleType> concurrent = executor.submit(() -> internListOf(interner, builtIns.getStringType(), false));
+            SimpleType result = interner.intern(constructor, arguments, false, () -> {
+                try {
+                    concurrent.get(30, TimeUnit.SECONDS);
+                }
+                catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return internListOf(new TypeInterner(), builtIns.getStringType(), false);
+            });
+
+            // The type which was interned first wins
+            assertSame(concurrent.get(), result);
+            assertSame(result, internListOf(interner, builtIns.getStringType(), false));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testConcurrentInterningReturnsOneInstance() throws Exception {
+        TypeInterner interner = new TypeInterner();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<SimpleType>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<SimpleType> types = new ArrayList<>();
+                    for (KotlinType argument : Arrays.asList(builtIns.getStringType(), builtIns.getIntType(), builtIns.getAnyType())) {
+                        types.add(internListOf(interner, argument, false));
+                        types.add(internListOf(interner, argument, true));
+                    }
+                    return types;
+                }));
+            }
+            start.countDown();
+
+            List<SimpleType> first = futures.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<List<SimpleType>> future : futures) {
+                List<SimpleType> types = future.get(30, TimeUnit.SECONDS);
+                for (int i = 0; i < types.size(); i++) {
+                    assertSame(first.get(i), types.get(i));
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
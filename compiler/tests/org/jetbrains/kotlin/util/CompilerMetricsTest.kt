@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util
+
+import junit.framework.TestCase
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class CompilerMetricsTest : TestCase() {
+    fun testRunsOfPhaseAreAggregated() {
+        val metrics = CompilerMetrics()
+        metrics.addPhase(PhaseMeasurement("Analysis", 1, 10, 5, 1, 100))
+        metrics.addPhase(PhaseMeasurement("Code generation", 1, 20, 15, 0, 200))
+        metrics.addPhase(PhaseMeasurement("Analysis", 1, 30, 25, 2, 300))
+
+        val phases = metrics.getPhases()
+        assertEquals(listOf("Analysis", "Code generation"), phases.map { it.phase })
+        with(phases[0]) {
+            assertEquals(2, runs)
+            assertEquals(40L, wallNanos)
+            assertEquals(30L, cpuNanos)
+            assertEquals(3L, gcMillis)
+            assertEquals(400L, allocatedBytes)
+        }
+    }
+
+    fun testNestedPhasesAreMeasuredSeparately() {
+        val metrics = CompilerMetrics()
+        val result = metrics.measurePhase("Outer") {
+            repeat(3) {
+                metrics.measurePhase("Inner") { Thread.sleep(1) }
+            }
+            42
+        }
+
+        assertEquals(42, result)
+        val (outer, inner) = metrics.getPhases()
+        assertEquals("Outer", outer.phase)
+        assertEquals(1, outer.runs)
+        assertEquals("Inner", inner.phase)
+        assertEquals(3, inner.runs)
+        assertTrue(outer.wallNanos >= inner.wallNanos)
+    }
+
+    fun testPhaseIsRecordedOnException() {
+        val metrics = CompilerMetrics()
+        try {
+            metrics.measurePhase("Failing") { throw IllegalStateException() }
+        } catch (e: IllegalStateException) {
+        }
+        assertEquals(listOf("Failing"), metrics.getPhases().map { it.phase })
+    }
+
+    fun testCounters() {
+        val metrics = CompilerMetrics()
+        metrics.addCounter("Lookups", 10)
+        metrics.addCounter("Inline calls")
+        metrics.addCounter("Inline calls")
+
+        assertEquals(mapOf("Inline calls" to 2L, "Lookups" to 10L), metrics.getCounters())
+        assertEquals(listOf("Inline calls", "Lookups"), metrics.getCounters().keys.toList())
+    }
+
+    fun testConcurrentUpdates() {
+        val metrics = CompilerMetrics()
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            (0 until 100).map {
+                executor.submit {
+                    metrics.addCounter("Counter")
+                    metrics.measurePhase("Phase") {}
+                }
+            }.forEach { it.get(30, TimeUnit.SECONDS) }
+        } finally {
+            executor.shutdown()
+        }
+
+        assertEquals(100L, metrics.getCounters()["Counter"])
+        assertEquals(100, metrics.getPhases().single().runs)
+    }
+
+    fun testListenerReceivesEveryRun() {
+        val metrics = CompilerMetrics()
+        val events = ArrayList<String>()
+        val listener = object : CompilerMetricsListener {
+            override fun phaseFinished(measurement: PhaseMeasurement) {
+                events.add("${measurement.phase} ${measurement.runs}")
+            }
+
+            override fun counterUpdated(counter: String, value: Long) {
+                events.add("$counter = $value")
+            }
+        }
+        metrics.addListener(listener)
+
+        metrics.measurePhase("Lowering") {}
+        metrics.measurePhase("Lowering") {}
+        metrics.addCounter("Inline calls", 2)
+        metrics.addCounter("Inline calls", 3)
+        metrics.removeListener(listener)
+        metrics.measurePhase("Lowering") {}
+
+        assertEquals(listOf("Lowering 1", "Lowering 1", "Inline calls = 2", "Inline calls = 5"), events)
+        assertEquals(3, metrics.getPhases().single().runs)
+    }
+
+    fun testRenderJson() {
+        val metrics = CompilerMetrics()
+        metrics.addPhase(PhaseMeasurement("Analysis", 2, 1000, 900, 3, 4096))
+        metrics.addPhase(PhaseMeasurement("Lowering \"inline\"\\\n", 1, 10, 9, 0, 0))
+        metrics.addCounter("Lookups", 7)
+        metrics.addCounter("Inline calls", 1)
+
+        assertEquals(
+            """
+            {
+              "phases": [
+                {"name": "Analysis", "runs": 2, "wallNanos": 1000, "cpuNanos": 900, "gcMillis": 3, "allocatedBytes": 4096},
+                {"name": "Lowering \"inline\"\\\u000a", "runs": 1, "wallNanos": 10, "cpuNanos": 9, "gcMillis": 0, "allocatedBytes": 0}
+              ],
+              "counters": {
+                "Inline calls": 1,
+                "Lookups": 7
+              }
+            }
+
+            """.trimIndent().replace("\r\n", "\n"),
+            metrics.renderJson().replace(System.lineSeparator(), "\n")
+        )
+    }
+
+    fun testRenderJsonWithoutMeasurements() {
+        assertEquals(
+            "{\n  \"phases\": [\n\n  ],\n  \"counters\": {\n\n  }\n}\n",
+            CompilerMetrics().renderJson().replace(System.lineSeparator(), "\n")
+        )
+    }
+}
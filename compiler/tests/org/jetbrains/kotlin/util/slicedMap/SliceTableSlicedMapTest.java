@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SliceTableSlicedMapTest extends TestCase {
+    private static final WritableSlice<String, Integer> LENGTH =
+            Slices.<String, Integer>sliceBuilder().setDebugName("LENGTH").build();
+    private static final WritableSlice<String, String> UPPER_CASE =
+            Slices.<String, String>sliceBuilder().setDebugName("UPPER_CASE").build();
+    private static final WritableSlice<String, Boolean> COLLECTED =
+            new SetSlice<>(RewritePolicy.DO_NOTHING, true);
+
+    public void testManyKeysInSeveralSlices() {
+        SliceTableSlicedMap map = new SliceTableSlicedMap(false);
+        for (int i = 0; i < 1000; i++) {
+            String key = "key" + i;
+            map.put(LENGTH, key, key.length());
+            if (i % 2 == 0) {
+                map.put(UPPER_CASE, key, key.toUpperCase());
+            }
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            String key = "key" + i;
+            assertEquals(Integer.valueOf(key.length()), map.get(LENGTH, key));
+            assertEquals(i % 2 == 0 ? key.toUpperCase() : null, map.get(UPPER_CASE, key));
+        }
+        assertNull(map.get(LENGTH, "absent"));
+        assertEquals(1000, map.getSliceContents(LENGTH).size());
+        assertEquals(500, map.getSliceContents(UPPER_CASE).size());
+
+        List<Object> visited = new ArrayList<>();
+        map.forEach((slice, key, value) -> {
+            visited.add(key);
+            return null;
+        });
+        assertEquals(1500, visited.size());
+    }
+
+    public void testCollectiveSliceKeysAreInInsertionOrder() {
+        SliceTableSlicedMap map = new SliceTableSlicedMap(false);
+        map.put(COLLECTED, "c", true);
+        map.put(COLLECTED, "a", true);
+        map.put(COLLECTED, "b", true);
+
+        assertEquals(Arrays.asList("c", "a", "b"), new ArrayList<>(map.getKeys(COLLECTED)));
+        assertTrue(map.get(COLLECTED, "a"));
+        assertFalse(map.get(COLLECTED, "d"));
+    }
+
+    public void testRemoveSlices() {
+        List<MutableSlicedMap> maps = Arrays.asList(new SliceTableSlicedMap(false), new SlicedMapImpl(false));
+        for (MutableSlicedMap map : maps) {
+            map.put(LENGTH, "a", 1);
+            map.put(UPPER_CASE, "a", "A");
+            map.put(UPPER_CASE, "b", "B");
+            map.put(COLLECTED, "a", true);
+
+            map.removeSlices(Arrays.asList(UPPER_CASE, COLLECTED));
+
+            assertEquals(Integer.valueOf(1), map.get(LENGTH, "a"));
+            assertNull(map.get(UPPER_CASE, "a"));
+            assertNull(map.get(UPPER_CASE, "b"));
+            assertFalse(map.get(COLLECTED, "a"));
+            assertTrue(map.getKeys(COLLECTED).isEmpty());
+        }
+    }
+
+    public void testSliceStatistics() {
+        SliceTableSlicedMap map = new SliceTableSlicedMap(false);
+        for (int i = 0; i < 100; i++) {
+            map.put(LENGTH, "key" + i, i);
+        }
+        map.put(UPPER_CASE, "key", "KEY");
+
+        List<SliceStatistics> statistics = map.getSliceStatistics();
+        assertEquals(2, statistics.size());
+        assertEquals("LENGTH", statistics.get(0).getSliceName());
+        assertEquals(100, statistics.get(0).getEntries());
+        assertEquals(1, statistics.get(1).getEntries());
+        assertTrue(statistics.get(0).getEstimatedBytes() > statistics.get(1).getEstimatedBytes());
+
+        map.clear();
+        assertTrue(map.getSliceStatistics().isEmpty());
+        assertNull(map.get(LENGTH, "key1"));
+    }
+
+    public void testArraySlotsPerValue() {
+        // See CompactHashTable.estimateShallowSize
+        int tableOverheadBytes = 24 + 16;
+        int referenceBytes = 4;
+
+        SliceTableSlicedMap map = new SliceTableSlicedMap(false);
+        for (int i = 1; i <= 5000; i++) {
+            map.put(LENGTH, "key" + i, i);
+
+            SliceStatistics statistics = map.getSliceStatistics().get(0);
+            assertEquals(i, statistics.getEntries());
+            long slots = (statistics.getEstimatedBytes() - tableOverheadBytes) / referenceBytes;
+            assertTrue("" + slots + " slots for " + i + " values", slots >= 4L * i && slots <= 8L * i);
+        }
+    }
+}
@@ -23,6 +23,8 @@ import java.util.List;
 public class IncrementalCompilation {
     public static final String INCREMENTAL_COMPILATION_JVM_PROPERTY = "kotlin.incremental.compilation";
     public static final String INCREMENTAL_COMPILATION_JS_PROPERTY = "kotlin.incremental.compilation.js";
+    public static final String APPEND_ONLY_CACHES_PROPERTY = "kotlin.incremental.caches.append.only";
+    public static final String IN_MEMORY_LOOKUP_INDEX_PROPERTY = "kotlin.incremental.lookups.in.memory";
 
     public static boolean isEnabledForJvm() {
         return "true".equals(System.getProperty(INCREMENTAL_COMPILATION_JVM_PROPERTY));
@@ -32,6 +34,14 @@ public class IncrementalCompilation {
         return "true".equals(System.getProperty(INCREMENTAL_COMPILATION_JS_PROPERTY));
     }
 
+    public static boolean isAppendOnlyCachesEnabled() {
+        return "true".equals(System.getProperty(APPEND_ONLY_CACHES_PROPERTY));
+    }
+
+    public static boolean isInMemoryLookupIndexEnabled() {
+        return "true".equals(System.getProperty(IN_MEMORY_LOOKUP_INDEX_PROPERTY));
+    }
+
     @TestOnly
     public static void setIsEnabledForJvm(boolean value) {
         System.setProperty(INCREMENTAL_COMPILATION_JVM_PROPERTY, String.valueOf(value));
@@ -42,9 +52,16 @@ public class IncrementalCompilation {
         System.setProperty(INCREMENTAL_COMPILATION_JS_PROPERTY, String.valueOf(value));
     }
 
+    @TestOnly
+    public static void setIsAppendOnlyCachesEnabled(boolean value) {
+        System.setProperty(APPEND_ONLY_CACHES_PROPERTY, String.valueOf(value));
+    }
+
     public static void toJvmArgs(List<String> jvmArgs) {
         if (isEnabledForJvm()) addJvmSystemFlag(jvmArgs, INCREMENTAL_COMPILATION_JVM_PROPERTY);
         if (isEnabledForJs()) addJvmSystemFlag(jvmArgs, INCREMENTAL_COMPILATION_JS_PROPERTY);
+        if (isAppendOnlyCachesEnabled()) addJvmSystemFlag(jvmArgs, APPEND_ONLY_CACHES_PROPERTY);
+        if (isInMemoryLookupIndexEnabled()) addJvmSystemFlag(jvmArgs, IN_MEMORY_LOOKUP_INDEX_PROPERTY);
     }
 
     private static void addJvmSystemFlag(List<String> jvmArgs, String name) {
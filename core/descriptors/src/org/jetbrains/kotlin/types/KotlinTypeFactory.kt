@@ -38,6 +38,11 @@ object KotlinTypeFactory {
         }
     }
 
+    private fun isInternable(constructor: TypeConstructor): Boolean {
+        val descriptor = constructor.declarationDescriptor
+        return descriptor is ClassDescriptor && !ErrorUtils.isError(descriptor)
+    }
+
     @JvmStatic
     fun simpleType(
         annotations: Annotations,
@@ -49,6 +54,13 @@ object KotlinTypeFactory {
             return constructor.declarationDescriptor!!.defaultType
         }
 
+        val interner = TypeInterner.SHARED
+        if (interner != null && annotations.isEmpty() && isInternable(constructor)) {
+            return interner.intern(constructor, arguments, nullable) {
+                SimpleTypeImpl(constructor, arguments, nullable, computeMemberScope(constructor, arguments))
+            }
+        }
+
         return simpleTypeWithNonTrivialMemberScope(
             annotations,
             constructor,
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.types
+
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.WeakReference
+
+/**
+ * Weak set of annotation-free simple types, used by [KotlinTypeFactory] to return the same instance for the same type.
+ *
+ * Types are considered the same if they have the same constructor instance, nullability and arguments of the same kinds
+ * with the same type instances. Identity is deliberately used instead of [KotlinType.equals]: the latter treats classes with
+ * the same FQ name from different modules as equal, and computes a deep hash code on each call. Since argument types are
+ * interned before the types containing them, identity of arguments is enough to find most duplicates.
+ *
+ * Types are held weakly, so the interner doesn't prolong the life of descriptors of modules which are no longer used.
+ */
+class TypeInterner {
+    private class Ref(type: SimpleType, val hash: Int, queue: ReferenceQueue<SimpleType>) : WeakReference<SimpleType>(type, queue)
+
+    private class Segment {
+        val queue = ReferenceQueue<SimpleType>()
+        val refsByHash = HashMap<Int, ArrayList<Ref>>()
+    }
+
+    private val segments = Array(SEGMENT_COUNT) { Segment() }
+
+    /**
+     * Returns the interned type, or the one created by [create] if there's none. [create] is called outside of the lock of the segment,
+     * since creating a type may intern other types and, in lazy resolution, wait for the storage manager of another thread;
+     * if another thread interns the same type meanwhile, its instance is returned instead of the created one.
+     */
+    fun intern(constructor: TypeConstructor, arguments: List<TypeProjection>, nullable: Boolean, create: () -> SimpleType): SimpleType {
+        val hash = hash(constructor, arguments, nullable)
+        val segment = segments[hash and (SEGMENT_COUNT - 1)]
+        synchronized(segment) {
+            find(segment, hash, constructor, arguments, nullable)?.let { return it }
+        }
+
+        val created = create()
+        synchronized(segment) {
+            find(segment, hash, constructor, arguments, nullable)?.let { return it }
+            segment.refsByHash.getOrPut(hash) { ArrayList(1) }.add(Ref(created, hash, segment.queue))
+        }
+        return created
+    }
+
+    private fun find(segment: Segment, hash: Int, constructor: TypeConstructor, arguments: List<TypeProjection>, nullable: Boolean): SimpleType? {
+        removeCollected(segment)
+
+        val refs = segment.refsByHash[hash] ?: return null
+        for (ref in refs) {
+            val type = ref.get() ?: continue
+            if (type.constructor === constructor && type.isMarkedNullable == nullable && sameArguments(type.arguments, arguments)) {
+                return type
+            }
+        }
+        return null
+    }
+
+    private fun removeCollected(segment: Segment) {
+        while (true) {
+            val ref = segment.queue.poll() as Ref? ?: return
+            val refs = segment.refsByHash[ref.hash] ?: continue
+            refs.remove(ref)
+            if (refs.isEmpty()) {
+                segment.refsByHash.remove(ref.hash)
+            }
+        }
+    }
+
+    companion object {
+        private const val SEGMENT_COUNT = 16
+
+        private val ENABLED = "true" == System.getProperty("kotlin.types.interning")
+
+        /**
+         * Interner shared by all type factories, or `null` if interning is disabled.
+         * It is enabled by setting the `kotlin.types.interning` system property to `true`.
+         */
+        @JvmField
+        val SHARED: TypeInterner? = if (ENABLED) TypeInterner() else null
+
+        private fun hash(constructor: TypeConstructor, arguments: List<TypeProjection>, nullable: Boolean): Int {
+            var result = System.identityHashCode(constructor)
+            for (argument in arguments) {
+                result = 31 * result + if (argument.isStarProjection) 0 else
+                    argument.projectionKind.ordinal + 1 + 31 * System.identityHashCode(argument.type)
+            }
+            result = 31 * result + if (nullable) 1 else 0
+            return result xor (result ushr 16)
+        }
+
+        private fun sameArguments(first: List<TypeProjection>, second: List<TypeProjection>): Boolean {
+            if (first === second) return true
+            if (first.size != second.size) return false
+            for (i in first.indices) {
+                val a = first[i]
+                val b = second[i]
+                if (a === b) continue
+                // Star projections at the same position of the same constructor are the same projection
+                if (a.isStarProjection || b.isStarProjection) {
+                    if (a.isStarProjection && b.isStarProjection) continue
+                    return false
+                }
+                if (a.projectionKind != b.projectionKind || a.type !== b.type) return false
+            }
+            return true
+        }
+    }
+}
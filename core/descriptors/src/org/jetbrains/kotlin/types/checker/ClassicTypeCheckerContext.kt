@@ -62,6 +62,12 @@ open class ClassicTypeCheckerContext(val errorTypeEqualsToAnything: Boolean, val
 
 
     override val KotlinTypeMarker.isAllowedTypeVariable: Boolean get() = this is UnwrappedType && allowedTypeVariable && constructor is NewTypeVariableConstructor
+
+    // Subclasses change how types are checked, so only the results of this class itself are shared
+    override val subtypingCache: SubtypingCache?
+        get() =
+            if (javaClass == ClassicTypeCheckerContext::class.java) SubtypingCache.getCurrent(errorTypeEqualsToAnything, allowedTypeVariable)
+            else null
 }
 
 private fun Any.errorMessage(): String {
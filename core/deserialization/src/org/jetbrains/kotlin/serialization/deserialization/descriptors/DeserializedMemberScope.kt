@@ -21,9 +21,7 @@ import org.jetbrains.kotlin.incremental.components.LookupLocation
 import org.jetbrains.kotlin.metadata.ProtoBuf
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.Name
-import org.jetbrains.kotlin.protobuf.AbstractMessageLite
 import org.jetbrains.kotlin.protobuf.MessageLite
-import org.jetbrains.kotlin.protobuf.Parser
 import org.jetbrains.kotlin.resolve.MemberComparator
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
 import org.jetbrains.kotlin.resolve.scopes.MemberScopeImpl
@@ -33,8 +31,6 @@ import org.jetbrains.kotlin.storage.getValue
 import org.jetbrains.kotlin.utils.Printer
 import org.jetbrains.kotlin.utils.addIfNotNull
 import org.jetbrains.kotlin.utils.compact
-import java.io.ByteArrayInputStream
-import java.io.ByteArrayOutputStream
 import java.util.*
 
 abstract class DeserializedMemberScope protected constructor(
@@ -45,22 +41,36 @@ abstract class DeserializedMemberScope protected constructor(
     classNames: () -> Collection<Name>
 ) : MemberScopeImpl() {
 
-    private val functionProtosBytes = functionList.groupByName { it.name }.packToByteArray()
+    // Member protos are grouped by name on the first access to the members of the corresponding kind, since many scopes
+    // (e.g. of supertypes or of huge library facades) are only asked for a few names, or for classifiers only.
+    // The lists passed to the constructor are only held until then, so that the scope doesn't retain the protos twice
+    private var ungroupedFunctions: Collection<ProtoBuf.Function>? = functionList
+    private var ungroupedProperties: Collection<ProtoBuf.Property>? = propertyList
+    private var ungroupedTypeAliases: Collection<ProtoBuf.TypeAlias>? = typeAliasList
 
-    private val propertyProtosBytes = propertyList.groupByName { it.name }.packToByteArray()
+    private val functionProtos by c.storageManager.createLazyValue {
+        ungroupedFunctions!!.groupByName { it.name }.also { ungroupedFunctions = null }
+    }
+
+    private val propertyProtos by c.storageManager.createLazyValue {
+        ungroupedProperties!!.groupByName { it.name }.also { ungroupedProperties = null }
+    }
 
-    private val typeAliasBytes =
-        if (c.components.configuration.typeAliasesAllowed)
-            typeAliasList.groupByName { it.name }.packToByteArray()
-        else
-            emptyMap()
+    private val typeAliasProtos by c.storageManager.createLazyValue {
+        val protos = if (c.components.configuration.typeAliasesAllowed) ungroupedTypeAliases!!.groupByName { it.name } else emptyMap()
+        ungroupedTypeAliases = null
+        protos
+    }
 
-    private fun Map<Name, Collection<AbstractMessageLite>>.packToByteArray(): Map<Name, ByteArray> =
-        mapValues { entry ->
-            val byteArrayOutputStream = ByteArrayOutputStream()
-            entry.value.map { proto -> proto.writeDelimitedTo(byteArrayOutputStream) }
-            byteArrayOutputStream.toByteArray()
+    private inline fun <M : MessageLite> Collection<M>.groupByName(getNameIndex: (M) -> Int): Map<Name, List<M>> {
+        if (isEmpty()) return emptyMap()
+
+        val protosByName = LinkedHashMap<Name, MutableList<M>>()
+        for (proto in this) {
+            protosByName.getOrPut(c.nameResolver.getName(getNameIndex(proto))) { ArrayList(1) }.add(proto)
         }
+        return protosByName
+    }
 
     private val functions =
         c.storageManager.createMemoizedFunction<Name, Collection<SimpleFunctionDescriptor>> { computeFunctions(it) }
@@ -70,14 +80,14 @@ abstract class DeserializedMemberScope protected constructor(
         c.storageManager.createMemoizedFunctionWithNullableValues<Name, TypeAliasDescriptor> { createTypeAlias(it) }
 
     private val functionNamesLazy by c.storageManager.createLazyValue {
-        functionProtosBytes.keys + getNonDeclaredFunctionNames()
+        functionProtos.keys + getNonDeclaredFunctionNames()
     }
 
     private val variableNamesLazy by c.storageManager.createLazyValue {
-        propertyProtosBytes.keys + getNonDeclaredVariableNames()
+        propertyProtos.keys + getNonDeclaredVariableNames()
     }
 
-    private val typeAliasNames: Set<Name> get() = typeAliasBytes.keys
+    private val typeAliasNames: Set<Name> get() = typeAliasProtos.keys
 
     internal val classNames by c.storageManager.createLazyValue { classNames().toSet() }
 
@@ -89,37 +99,13 @@ abstract class DeserializedMemberScope protected constructor(
         return name !in functionNamesLazy && name !in variableNamesLazy && name !in classNames && name !in typeAliasNames
     }
 
-    private inline fun <M : MessageLite> Collection<M>.groupByName(
-        getNameIndex: (M) -> Int
-    ) = groupBy { c.nameResolver.getName(getNameIndex(it)) }
-
     private fun computeFunctions(name: Name) =
         computeDescriptors(
-            name,
-            functionProtosBytes,
-            ProtoBuf.Function.PARSER,
+            functionProtos[name].orEmpty(),
             { c.memberDeserializer.loadFunction(it) },
             { computeNonDeclaredFunctions(name, it) }
         )
 
-    private inline fun <M : MessageLite, D : DeclarationDescriptor> computeDescriptors(
-        name: Name,
-        bytesByName: Map<Name, ByteArray>,
-        parser: Parser<M>,
-        factory: (M) -> D,
-        computeNonDeclared: (MutableCollection<D>) -> Unit
-    ): Collection<D> =
-        computeDescriptors(
-            bytesByName[name]?.let {
-                val inputStream = ByteArrayInputStream(it)
-                generateSequence {
-                    parser.parseDelimitedFrom(inputStream, c.components.extensionRegistryLite)
-                }.toList()
-            } ?: emptyList(),
-            factory,
-            computeNonDeclared
-        )
-
     private inline fun <M : MessageLite, D : DeclarationDescriptor> computeDescriptors(
         protos: Collection<M>,
         factory: (M) -> D,
@@ -141,9 +127,7 @@ abstract class DeserializedMemberScope protected constructor(
 
     private fun computeProperties(name: Name) =
         computeDescriptors(
-            name,
-            propertyProtosBytes,
-            ProtoBuf.Property.PARSER,
+            propertyProtos[name].orEmpty(),
             { c.memberDeserializer.loadProperty(it) },
             { computeNonDeclaredProperties(name, it) }
         )
@@ -152,11 +136,7 @@ abstract class DeserializedMemberScope protected constructor(
     }
 
     private fun createTypeAlias(name: Name): TypeAliasDescriptor? {
-        val byteArray = typeAliasBytes[name] ?: return null
-        val proto =
-            ProtoBuf.TypeAlias.parseDelimitedFrom(
-                ByteArrayInputStream(byteArray), c.components.extensionRegistryLite
-            ) ?: return null
+        val proto = typeAliasProtos[name]?.firstOrNull() ?: return null
         return c.memberDeserializer.loadTypeAlias(proto)
     }
 
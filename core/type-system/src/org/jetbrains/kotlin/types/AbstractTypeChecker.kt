@@ -143,12 +143,37 @@ abstract class AbstractTypeCheckerContext : TypeSystemContext {
     }
 
     abstract val KotlinTypeMarker.isAllowedTypeVariable: Boolean
+
+    /**
+     * Cache for results of [AbstractTypeChecker.isSubtypeOf] with this context. It must be `null` unless the results depend only on
+     * the types, and are the same for all contexts which share the cache, for the types accepted by [isCacheableForSubtyping].
+     */
+    open val subtypingCache: SubtypingCache?
+        get() = null
+
+    // Captured types, flexible types and type variables are checked differently depending on where they come from
+    open fun isCacheableForSubtyping(type: KotlinTypeMarker): Boolean {
+        val simpleType = type.asSimpleType() ?: return false
+        return !simpleType.isError() && simpleType.asCapturedType() == null && !simpleType.isStubType() && !simpleType.isAllowedTypeVariable
+    }
 }
 
 object AbstractTypeChecker {
     fun isSubtypeOf(context: AbstractTypeCheckerContext, subType: KotlinTypeMarker, superType: KotlinTypeMarker): Boolean {
         if (subType === superType) return true
-        return context.completeIsSubTypeOf(context.prepareType(subType), context.prepareType(superType))
+
+        val preparedSubType = context.prepareType(subType)
+        val preparedSuperType = context.prepareType(superType)
+
+        val cache = context.subtypingCache
+        if (cache == null || !context.isCacheableForSubtyping(preparedSubType) || !context.isCacheableForSubtyping(preparedSuperType)) {
+            return context.completeIsSubTypeOf(preparedSubType, preparedSuperType)
+        }
+
+        cache.get(preparedSubType, preparedSuperType)?.let { return it }
+        return context.completeIsSubTypeOf(preparedSubType, preparedSuperType).also {
+            cache.put(preparedSubType, preparedSuperType, it)
+        }
     }
 
     fun equalTypes(context: AbstractTypeCheckerContext, a: KotlinTypeMarker, b: KotlinTypeMarker): Boolean = with(context) {
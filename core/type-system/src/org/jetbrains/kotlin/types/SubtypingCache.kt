@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.types
+
+import org.jetbrains.kotlin.types.model.KotlinTypeMarker
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Bounded cache of [AbstractTypeChecker.isSubtypeOf] results, keyed by identity of the types.
+ *
+ * The cache is direct-mapped: each pair of types has a single slot, and a new result replaces the previous one in that slot,
+ * so lookups and updates don't need locking. Only results of checks which don't depend on anything but the two types
+ * may be cached, see [AbstractTypeCheckerContext.subtypingCache].
+ */
+class SubtypingCache(capacity: Int) {
+    private class Entry(val subType: KotlinTypeMarker, val superType: KotlinTypeMarker, val result: Boolean)
+
+    private val entries = arrayOfNulls<Entry>(Integer.highestOneBit(maxOf(capacity, 2) - 1) shl 1)
+
+    private val hitCount = AtomicLong()
+    private val missCount = AtomicLong()
+
+    val hits: Long get() = hitCount.get()
+    val misses: Long get() = missCount.get()
+
+    fun get(subType: KotlinTypeMarker, superType: KotlinTypeMarker): Boolean? {
+        val entry = entries[indexFor(subType, superType)]
+        if (entry != null && entry.subType === subType && entry.superType === superType) {
+            hitCount.incrementAndGet()
+            return entry.result
+        }
+        missCount.incrementAndGet()
+        return null
+    }
+
+    fun put(subType: KotlinTypeMarker, superType: KotlinTypeMarker, result: Boolean) {
+        entries[indexFor(subType, superType)] = Entry(subType, superType, result)
+    }
+
+    private fun indexFor(subType: KotlinTypeMarker, superType: KotlinTypeMarker): Int {
+        val hash = System.identityHashCode(subType) * 31 + System.identityHashCode(superType)
+        return (hash * MAGIC ushr 16 xor hash) and (entries.size - 1)
+    }
+
+    /**
+     * Caches of one compilation, one for each combination of type checker settings.
+     *
+     * Type checkers use the caches of the session which is current on their thread, see [withSession]. A session is dropped
+     * together with the compilation, so cached types don't outlive it, and its statistics count only this compilation.
+     */
+    class Session private constructor(capacity: Int) {
+        private val caches = Array(4) { SubtypingCache(capacity) }
+
+        val hits: Long get() = caches.fold(0L) { sum, cache -> sum + cache.hits }
+        val misses: Long get() = caches.fold(0L) { sum, cache -> sum + cache.misses }
+
+        internal fun get(errorTypeEqualsToAnything: Boolean, allowedTypeVariable: Boolean): SubtypingCache =
+            caches[(if (errorTypeEqualsToAnything) 2 else 0) + (if (allowedTypeVariable) 1 else 0)]
+
+        companion object {
+            /**
+             * New session, or `null` if the cache is disabled.
+             * It is enabled by setting the `kotlin.type.checker.cache.size` system property to the number of results to keep.
+             */
+            @JvmStatic
+            fun createIfEnabled(): Session? = if (CAPACITY > 0) Session(CAPACITY) else null
+        }
+    }
+
+    companion object {
+        // binary representation of fractional part of phi = (sqrt(5) - 1) / 2
+        private const val MAGIC: Int = 0x9E3779B9L.toInt()
+
+        private val CAPACITY = Integer.getInteger("kotlin.type.checker.cache.size", 0)
+
+        private val sessionOfThread = ThreadLocal<Session>()
+
+        /**
+         * Cache for type checker contexts with the given settings in the current session, or `null` if there is none.
+         */
+        @JvmStatic
+        fun getCurrent(errorTypeEqualsToAnything: Boolean, allowedTypeVariable: Boolean): SubtypingCache? =
+            if (CAPACITY > 0) sessionOfThread.get()?.get(errorTypeEqualsToAnything, allowedTypeVariable) else null
+
+        @JvmStatic
+        fun currentSession(): Session? = sessionOfThread.get()
+
+        /**
+         * Runs [block] with [session] as the current session of this thread.
+         */
+        @JvmStatic
+        fun <T> withSession(session: Session?, block: () -> T): T {
+            val previous = sessionOfThread.get()
+            if (session === previous) return block()
+
+            sessionOfThread.set(session)
+            try {
+                return block()
+            } finally {
+                sessionOfThread.set(previous)
+            }
+        }
+    }
+}
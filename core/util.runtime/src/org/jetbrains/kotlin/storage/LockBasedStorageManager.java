@@ -63,12 +63,34 @@ public class LockBasedStorageManager implements StorageManager {
         }
     };
 
+    public static final int DEFAULT_LOCK_STRIPES = 64;
+
     @NotNull
     public static LockBasedStorageManager createWithExceptionHandling(@NotNull String debugText, @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy) {
         return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, new ReentrantLock());
     }
 
+    /**
+     * Creates a storage manager whose lazy values and memoized functions are guarded by {@code stripeCount} locks instead of a single one,
+     * so that they can be computed in several threads at the same time.
+     *
+     * A computation which would deadlock with computations in other threads throws {@link LockCycleDetectedException},
+     * so all code computing values of such storage manager concurrently must be ready to catch it and repeat the computation.
+     * {@link #compute(Function0)} is guarded by a separate lock.
+     */
+    @NotNull
+    public static LockBasedStorageManager createWithStripedLocks(
+            @NotNull String debugText,
+            @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy,
+            int stripeCount
+    ) {
+        LockStripes stripes = new LockStripes(stripeCount);
+        return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, stripes.createLock(), stripes);
+    }
+
     protected final Lock lock;
+    @Nullable
+    private final LockStripes stripes;
     private final ExceptionHandlingStrategy exceptionHandlingStrategy;
     private final String debugText;
 
@@ -76,8 +98,18 @@ public class LockBasedStorageManager implements StorageManager {
             @NotNull String debugText,
             @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy,
             @NotNull Lock lock
+    ) {
+        this(debugText, exceptionHandlingStrategy, lock, null);
+    }
+
+    private LockBasedStorageManager(
+            @NotNull String debugText,
+            @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy,
+            @NotNull Lock lock,
+            @Nullable LockStripes stripes
     ) {
         this.lock = lock;
+        this.stripes = stripes;
         this.exceptionHandlingStrategy = exceptionHandlingStrategy;
         this.debugText = debugText;
     }
@@ -216,6 +248,28 @@ public class LockBasedStorageManager implements StorageManager {
         };
     }
 
+    public boolean hasStripedLocks() {
+        return stripes != null;
+    }
+
+    /**
+     * Returns the lock guarding the value of {@code owner} (a lazy value or a memoized function) for {@code key}.
+     */
+    @NotNull
+    private Lock lockFor(@NotNull Object owner, @Nullable Object key) {
+        if (stripes == null) return lock;
+
+        int hash = System.identityHashCode(owner);
+        if (key != null) {
+            hash = 31 * hash + key.hashCode();
+        }
+        return stripes.getStripe(hash);
+    }
+
+    private static boolean isCancellation(@NotNull Throwable throwable) {
+        return throwable instanceof LockCycleDetectedException || ExceptionUtilsKt.isProcessCanceledException(throwable);
+    }
+
     @Override
     public <T> T compute(@NotNull Function0<? extends T> computable) {
         lock.lock();
@@ -288,7 +342,7 @@ public class LockBasedStorageManager implements StorageManager {
      * This implementation publishes value **BEFORE** calling postCompute on it.
      *
      * It means that thread-safety of actions in postCompute() and recursion prevention
-     * rely *solely* on the `storageManager.lock()`.
+     * rely *solely* on the lock of the value: `storageManager.lock()`, or one of its lock stripes if it has them.
      *
      * And yes, there are a LockBasedStorageManager.NO_LOCKS, which doesn't have lock at all,
      * so if you have some `StorageManager` (or even if it is an instanceof `LockBasedStorageManager`),
@@ -321,7 +375,8 @@ public class LockBasedStorageManager implements StorageManager {
             Object _value = value;
             if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
 
-            storageManager.lock.lock();
+            Lock lock = storageManager.lockFor(this, null);
+            lock.lock();
             try {
                 _value = value;
                 if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
@@ -349,7 +404,7 @@ public class LockBasedStorageManager implements StorageManager {
                     return typedValue;
                 }
                 catch (Throwable throwable) {
-                    if (ExceptionUtilsKt.isProcessCanceledException(throwable)) {
+                    if (isCancellation(throwable)) {
                         value = NotValue.NOT_COMPUTED;
                         //noinspection ConstantConditions
                         throw (RuntimeException)throwable;
@@ -363,7 +418,7 @@ public class LockBasedStorageManager implements StorageManager {
                 }
             }
             finally {
-                storageManager.lock.unlock();
+                lock.unlock();
             }
         }
 
@@ -426,7 +481,8 @@ public class LockBasedStorageManager implements StorageManager {
             Object value = cache.get(input);
             if (value != null && value != NotValue.COMPUTING) return WrappedValues.unescapeExceptionOrNull(value);
 
-            storageManager.lock.lock();
+            Lock lock = storageManager.lockFor(this, input);
+            lock.lock();
             try {
                 value = cache.get(input);
                 if (value == NotValue.COMPUTING) {
@@ -452,7 +508,7 @@ public class LockBasedStorageManager implements StorageManager {
                     return typedValue;
                 }
                 catch (Throwable throwable) {
-                    if (ExceptionUtilsKt.isProcessCanceledException(throwable)) {
+                    if (isCancellation(throwable)) {
                         cache.remove(input);
                         //noinspection ConstantConditions
                         throw (RuntimeException)throwable;
@@ -470,7 +526,7 @@ public class LockBasedStorageManager implements StorageManager {
                 }
             }
             finally {
-                storageManager.lock.unlock();
+                lock.unlock();
             }
         }
 
@@ -0,0 +1,21 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thrown by a storage manager with striped locks instead of waiting for a lock if waiting would never end,
+ * because the owner of the lock (directly or through other threads) waits for a lock held by the current thread.
+ *
+ * Lazy values and memoized functions do not store this exception as their result: they are reset to the not computed state,
+ * so the computation which has caught it can be safely repeated later, e.g. after other threads have finished.
+ */
+public class LockCycleDetectedException extends RuntimeException {
+    public LockCycleDetectedException(@NotNull String message) {
+        super(message);
+    }
+}
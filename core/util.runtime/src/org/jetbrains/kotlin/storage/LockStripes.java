@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license
+ * that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of reentrant locks which lazy values and memoized functions are distributed among by hash,
+ * so that unrelated computations can run in different threads at the same time.
+ *
+ * Computations are nested arbitrarily, so threads can wait for each other in a cycle. Every thread waiting for a lock
+ * is registered, and a waiting thread periodically follows the chain of lock owners and the locks they wait for:
+ * if the chain leads back to the thread itself, it throws {@link LockCycleDetectedException} instead of waiting forever.
+ */
+/*package*/ class LockStripes {
+    private static final long CYCLE_CHECK_INTERVAL_MS = 10;
+
+    private final CycleDetectingLock[] stripes;
+    private final ConcurrentMap<Thread, CycleDetectingLock> waitingThreads = new ConcurrentHashMap<Thread, CycleDetectingLock>();
+
+    /*package*/ LockStripes(int stripeCount) {
+        int size = 1;
+        while (size < stripeCount) {
+            size <<= 1;
+        }
+        stripes = new CycleDetectingLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new CycleDetectingLock();
+        }
+    }
+
+    @NotNull
+    /*package*/ Lock getStripe(int hash) {
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Creates a lock which does not belong to the stripes but takes part in the cycle detection together with them.
+     */
+    @NotNull
+    /*package*/ Lock createLock() {
+        return new CycleDetectingLock();
+    }
+
+    private class CycleDetectingLock extends ReentrantLock {
+        @Override
+        public void lock() {
+            if (tryLock()) return;
+
+            Thread current = Thread.currentThread();
+            boolean interrupted = false;
+            waitingThreads.put(current, this);
+            try {
+                while (true) {
+                    if (isWaitCycle(current)) {
+                        throw new LockCycleDetectedException("Lock cycle detected in thread " + current.getName());
+                    }
+                    try {
+                        if (tryLock(CYCLE_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) return;
+                    }
+                    catch (InterruptedException e) {
+                        // Like ReentrantLock.lock(), keep waiting and restore the interrupted status afterwards
+                        interrupted = true;
+                    }
+                }
+            }
+            finally {
+                waitingThreads.remove(current);
+                if (interrupted) {
+                    current.interrupt();
+                }
+            }
+        }
+
+        private boolean isWaitCycle(@NotNull Thread current) {
+            Thread owner = getOwner();
+            // Every thread appears in the chain at most once unless there is a cycle, so the chain is never longer than this
+            int maxLength = waitingThreads.size() + 1;
+            for (int i = 0; owner != null && i < maxLength; i++) {
+                if (owner == current) return true;
+
+                CycleDetectingLock awaitedLock = waitingThreads.get(owner);
+                if (awaitedLock == null) return false;
+
+                owner = awaitedLock.getOwner();
+            }
+            return false;
+        }
+    }
+}